@@ -0,0 +1,233 @@
+package project.io;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A BlockInputStream reads the bytes written by a BlockOutputStream, decompressing its blocks in parallel.<br>
+ * Blocks are read from the stream in order and handed to a pool with one thread per processor, which
+ * decompresses them and checks their CRC32 while the reader consumes the blocks before them. Up to two
+ * blocks per thread are read ahead, so memory use does not depend on the size of the stream.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see BlockOutputStream
+ * @see ProjectIO#open
+ */
+public class BlockInputStream extends InputStream {
+
+	/** Threads decompressing the blocks */
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
+	private static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "BlockInputStream");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private final DataInputStream in;
+	private final int codec;
+	private final int blockSize;
+	/** Blocks read ahead and being decompressed, in order */
+	private final ArrayDeque<Future<byte[]>> ahead = new ArrayDeque<Future<byte[]>>();
+	/** The block being read */
+	private byte[] block = new byte[0];
+	private int pos;
+	/** true once the end marker has been read from the stream */
+	private boolean end;
+
+	/**
+	 * Creates a stream and reads the header.
+	 * @param is	the InputStream holding the blocks
+	 * @throws IOException when the stream was not written by a BlockOutputStream
+	 */
+	public BlockInputStream(InputStream is) throws IOException {
+		in = new DataInputStream(is);
+		byte[] magic = new byte[BlockOutputStream.MAGIC.length];
+		in.readFully(magic);
+		if (!Arrays.equals(magic, BlockOutputStream.MAGIC)) {
+			throw new IOException("Not a compressed file");
+		}
+		int version = in.readUnsignedByte();
+		if (version < 1 || version > BlockOutputStream.VERSION) {
+			throw new IOException("Unsupported compressed file version: " + version);
+		}
+		codec = in.readUnsignedByte();
+		if (codec != BlockOutputStream.DEFLATE && codec != BlockOutputStream.LZ) {
+			throw new IOException("Unsupported codec: " + codec);
+		}
+		blockSize = in.readInt();
+		if (blockSize < 1) {
+			throw new IOException("Corrupt compressed file: block size " + blockSize);
+		}
+	}
+
+	/**
+	 * Tells whether a stream starts with the MAGIC bytes of a BlockOutputStream, without consuming them.
+	 * @param is	an InputStream supporting mark and reset
+	 * @return true if the stream is compressed
+	 * @throws IOException when the stream cannot be read
+	 */
+	public static boolean isCompressed(InputStream is) throws IOException {
+		byte[] magic = new byte[BlockOutputStream.MAGIC.length];
+		is.mark(magic.length);
+		int n = 0;
+		try {
+			while (n < magic.length) {
+				int r = is.read(magic, n, magic.length - n);
+				if (r < 0) {
+					return false;
+				}
+				n += r;
+			}
+		} finally {
+			is.reset();
+		}
+		return Arrays.equals(magic, BlockOutputStream.MAGIC);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (pos == block.length && !nextBlock()) {
+			return -1;
+		}
+		return block[pos++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (pos == block.length && !nextBlock()) {
+			return -1;
+		}
+		int n = Math.min(len, block.length - pos);
+		System.arraycopy(block, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return block.length - pos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Future<byte[]> f : ahead) {
+			f.cancel(false);
+		}
+		ahead.clear();
+		in.close();
+	}
+
+	/**
+	 * Moves to the next block, reading more blocks ahead.
+	 * @return false at the end of the stream
+	 */
+	private boolean nextBlock() throws IOException {
+		while (!end && ahead.size() < THREADS * 2) {
+			readAhead();
+		}
+		Future<byte[]> f = ahead.poll();
+		if (f == null) {
+			return false;
+		}
+		try {
+			block = f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while decompressing", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Cannot decompress block", e.getCause());
+		}
+		pos = 0;
+		return true;
+	}
+
+	/**
+	 * Reads the next block from the stream and starts decompressing it.
+	 */
+	private void readAhead() throws IOException {
+		try {
+			final int length = in.readInt();
+			if (length == 0) {
+				end = true;
+				return;
+			}
+			final int stored = in.readInt();
+			final int sum = in.readInt();
+			if (length < 0 || length > blockSize || stored < 0 || stored > length) {
+				throw new IOException("Corrupt compressed file: block of " + stored + " bytes for " + length);
+			}
+			final byte[] bytes = new byte[stored];
+			in.readFully(bytes);
+			ahead.add(POOL.submit(new Callable<byte[]>() {
+				@Override
+				public byte[] call() throws IOException {
+					return decompress(bytes, length, sum);
+				}
+			}));
+		} catch (EOFException e) {
+			throw new IOException("Corrupt compressed file: unexpected end", e);
+		}
+	}
+
+	/**
+	 * Decompresses a block and checks its CRC32.
+	 */
+	private byte[] decompress(byte[] bytes, int length, int sum) throws IOException {
+		byte[] b;
+		if (bytes.length == length) {
+			b = bytes;
+		} else if (codec == BlockOutputStream.LZ) {
+			b = new byte[length];
+			LZCodec.decompress(bytes, 0, bytes.length, b, length);
+		} else {
+			b = new byte[length];
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(bytes);
+				int n = 0;
+				while (n < length && !inflater.finished()) {
+					int r = inflater.inflate(b, n, length - n);
+					if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						break;
+					}
+					n += r;
+				}
+				if (n != length) {
+					throw new IOException("Corrupt block: " + n + " bytes decompressed, " + length + " expected");
+				}
+			} catch (DataFormatException e) {
+				throw new IOException("Corrupt block", e);
+			} finally {
+				inflater.end();
+			}
+		}
+		CRC32 crc = new CRC32();
+		crc.update(b, 0, length);
+		if ((int) crc.getValue() != sum) {
+			throw new IOException("Corrupt block: CRC32 mismatch");
+		}
+		return b;
+	}
+}
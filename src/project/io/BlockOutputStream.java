@@ -0,0 +1,188 @@
+package project.io;
+
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A BlockOutputStream compresses the bytes written to it in blocks that can each be decompressed on
+ * their own.<br>
+ * The stream starts with a header holding the MAGIC bytes, the format VERSION, the codec and the block
+ * size. Each block then holds its length before and after compression, the CRC32 of its bytes and the
+ * compressed bytes, or the bytes themselves when compressing them does not make them shorter. A block
+ * of length 0 marks the end. No block depends on another one, so a BlockInputStream can decompress
+ * several blocks at the same time.<br>
+ * Bytes are compressed once a block is full, and the last block is written by <i>finish</i> or
+ * <i>close</i>. <i>flush</i> does not cut the current block short.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see BlockInputStream
+ * @see ProjectIO#save
+ */
+public class BlockOutputStream extends FilterOutputStream {
+
+	/** First bytes of every compressed stream */
+	static final byte[] MAGIC = {'J', 'P', 'R', 'Z'};
+	/** Version of the format written */
+	static final int VERSION = 1;
+	/** Codecs */
+	public static final int NONE = 0;
+	public static final int DEFLATE = 1;
+	public static final int LZ = 2;
+	/** Names of the codecs, by codec */
+	public static final String[] CODECS = {"None", "Deflate", "LZ"};
+	/** Default number of bytes per block */
+	public static final int DEFAULT_BLOCK = 256 * 1024;
+
+	private final DataOutputStream data;
+	private final int codec;
+	/** Bytes of the current block */
+	private final byte[] block;
+	private int count;
+	/** Buffer for the compressed bytes of a block */
+	private final byte[] compressed;
+	private final CRC32 crc = new CRC32();
+	private Deflater deflater;
+	private boolean finished;
+
+	/**
+	 * Creates a stream with blocks of DEFAULT_BLOCK bytes and writes the header.
+	 * @param os	the OutputStream to write the blocks to
+	 * @param c	the codec: DEFLATE or LZ
+	 * @throws IOException when the header cannot be written
+	 */
+	public BlockOutputStream(OutputStream os, int c) throws IOException {
+		this(os, c, DEFAULT_BLOCK);
+	}
+
+	/**
+	 * Creates a stream and writes the header.
+	 * @param os	the OutputStream to write the blocks to
+	 * @param c	the codec: DEFLATE or LZ
+	 * @param size	an Integer representing the number of bytes per block
+	 * @throws IOException when the header cannot be written
+	 * @throws IllegalArgumentException when the codec is unknown or the size is not positive
+	 */
+	public BlockOutputStream(OutputStream os, int c, int size) throws IOException, IllegalArgumentException {
+		super(os);
+		if (c != DEFLATE && c != LZ) {
+			throw new IllegalArgumentException("Unknown codec: " + c);
+		}
+		if (size < 1) {
+			throw new IllegalArgumentException("Block size must be positive: " + size);
+		}
+		codec = c;
+		block = new byte[size];
+		compressed = new byte[size];
+		if (c == DEFLATE) {
+			deflater = new Deflater();
+		}
+		data = new DataOutputStream(os);
+		data.write(MAGIC);
+		data.writeByte(VERSION);
+		data.writeByte(c);
+		data.writeInt(size);
+	}
+
+	/**
+	 * @param name	the name of a codec, as in CODECS, ignoring case
+	 * @return the codec, or NONE if the name is unknown or null
+	 */
+	public static int codecOf(String name) {
+		for (int i=0; i<CODECS.length; i++) {
+			if (CODECS[i].equalsIgnoreCase(name)) {
+				return i;
+			}
+		}
+		return NONE;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (count == block.length) {
+			writeBlock();
+		}
+		block[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (count == block.length) {
+				writeBlock();
+			}
+			int n = Math.min(len, block.length - count);
+			System.arraycopy(b, off, block, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Writes the last block and the end marker, and flushes the stream without closing it.
+	 * @throws IOException when the stream cannot be written
+	 */
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		if (count > 0) {
+			writeBlock();
+		}
+		data.writeInt(0);
+		data.flush();
+		if (deflater != null) {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Finishes the stream and closes it.
+	 * @throws IOException when the stream cannot be written or closed
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Compresses and writes the current block.
+	 */
+	private void writeBlock() throws IOException {
+		crc.reset();
+		crc.update(block, 0, count);
+		int n;
+		if (codec == LZ) {
+			n = LZCodec.compress(block, count, compressed);
+		} else {
+			deflater.reset();
+			deflater.setInput(block, 0, count);
+			deflater.finish();
+			n = deflater.deflate(compressed);
+			if (!deflater.finished()) {
+				n = -1;
+			}
+		}
+		data.writeInt(count);
+		if (n < 0 || n >= count) {
+			// Stored as it is
+			data.writeInt(count);
+			data.writeInt((int) crc.getValue());
+			data.write(block, 0, count);
+		} else {
+			data.writeInt(n);
+			data.writeInt((int) crc.getValue());
+			data.write(compressed, 0, n);
+		}
+		count = 0;
+	}
+}
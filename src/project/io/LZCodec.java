@@ -0,0 +1,182 @@
+package project.io;
+
+import java.io.IOException;
+
+/**
+ * LZCodec compresses blocks of bytes with a fast LZ77 codec in the style of LZ4.<br>
+ * A block is a sequence of literal runs, each followed by a match copying bytes already decoded. A
+ * token byte holds the length of the run in its high nibble and the length of the match minus 4 in its
+ * low nibble, either of them followed by extra bytes of 255 while it does not fit; the run comes next,
+ * then the offset of the match as 2 bytes, lowest first. The last run has no match.<br>
+ * Matches are found through a hash table of the last position of each 4-byte sequence, so compressing
+ * costs one pass over the block and decompressing is little more than copying.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see BlockOutputStream
+ */
+final class LZCodec {
+
+	private static final int MIN_MATCH = 4;
+	private static final int MAX_OFFSET = 0xFFFF;
+	private static final int HASH_BITS = 14;
+
+	private LZCodec() {
+	}
+
+	/**
+	 * Compresses a block.
+	 * @param src	the bytes to compress
+	 * @param length	the number of bytes to compress
+	 * @param dst	the buffer for the compressed bytes
+	 * @return the number of compressed bytes, or -1 if they do not fit in the buffer
+	 */
+	static int compress(byte[] src, int length, byte[] dst) {
+		int[] table = new int[1 << HASH_BITS];
+		int anchor = 0;
+		int ip = 0;
+		int op = 0;
+		int limit = length - MIN_MATCH;
+		while (ip <= limit) {
+			int seq = readInt(src, ip);
+			int h = (seq * -1640531535) >>> (32 - HASH_BITS);
+			int ref = table[h] - 1;
+			table[h] = ip + 1;
+			if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+				// Skips faster through data that does not compress
+				ip += 1 + ((ip - anchor) >>> 6);
+				continue;
+			}
+			int match = MIN_MATCH;
+			while (ip + match < length && src[ref + match] == src[ip + match]) {
+				match++;
+			}
+			int token = op;
+			op = writeSequence(src, anchor, ip - anchor, dst, op);
+			if (op < 0 || op + 2 > dst.length) {
+				return -1;
+			}
+			int offset = ip - ref;
+			dst[op++] = (byte) offset;
+			dst[op++] = (byte) (offset >>> 8);
+			int extra = match - MIN_MATCH;
+			if (extra >= 15) {
+				op = writeLength(extra - 15, dst, op);
+				if (op < 0) {
+					return -1;
+				}
+			}
+			dst[token] |= (byte) Math.min(extra, 15);
+			ip += match;
+			anchor = ip;
+		}
+		op = writeSequence(src, anchor, length - anchor, dst, op);
+		return op;
+	}
+
+	/**
+	 * Writes the token and the literal run of a sequence. The match length is added to the token later.
+	 * @return the position after the run, or -1 if it does not fit
+	 */
+	private static int writeSequence(byte[] src, int from, int run, byte[] dst, int op) {
+		if (op >= dst.length) {
+			return -1;
+		}
+		dst[op++] = (byte) (Math.min(run, 15) << 4);
+		if (run >= 15) {
+			op = writeLength(run - 15, dst, op);
+			if (op < 0) {
+				return -1;
+			}
+		}
+		if (op + run > dst.length) {
+			return -1;
+		}
+		System.arraycopy(src, from, dst, op, run);
+		return op + run;
+	}
+
+	private static int writeLength(int n, byte[] dst, int op) {
+		while (n >= 255) {
+			if (op >= dst.length) {
+				return -1;
+			}
+			dst[op++] = (byte) 255;
+			n -= 255;
+		}
+		if (op >= dst.length) {
+			return -1;
+		}
+		dst[op++] = (byte) n;
+		return op;
+	}
+
+	/**
+	 * Decompresses a block.
+	 * @param src	the buffer holding the compressed bytes
+	 * @param off	the position of the compressed bytes
+	 * @param length	the number of compressed bytes
+	 * @param dst	the buffer for the bytes decompressed
+	 * @param expected	the number of bytes the block decompresses to
+	 * @throws IOException when the block is corrupt
+	 */
+	static void decompress(byte[] src, int off, int length, byte[] dst, int expected) throws IOException {
+		int ip = off;
+		int end = off + length;
+		int op = 0;
+		try {
+			while (ip < end) {
+				int token = src[ip++] & 0xFF;
+				int run = token >>> 4;
+				if (run == 15) {
+					int b;
+					do {
+						b = src[ip++] & 0xFF;
+						run += b;
+					} while (b == 255);
+				}
+				if (run > end - ip || run > expected - op) {
+					throw new IOException("Corrupt block: literals past the end");
+				}
+				System.arraycopy(src, ip, dst, op, run);
+				ip += run;
+				op += run;
+				if (ip == end) {
+					break;
+				}
+				int offset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+				ip += 2;
+				int match = token & 15;
+				if (match == 15) {
+					int b;
+					do {
+						b = src[ip++] & 0xFF;
+						match += b;
+					} while (b == 255);
+				}
+				match += MIN_MATCH;
+				int ref = op - offset;
+				if (offset == 0 || ref < 0 || match > expected - op) {
+					throw new IOException("Corrupt block: invalid match");
+				}
+				if (offset >= match) {
+					System.arraycopy(dst, ref, dst, op, match);
+					op += match;
+				} else {
+					// The match overlaps the bytes it produces
+					for (int i=0; i<match; i++) {
+						dst[op++] = dst[ref++];
+					}
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Corrupt block: truncated", e);
+		}
+		if (op != expected) {
+			throw new IOException("Corrupt block: " + op + " bytes decompressed, " + expected + " expected");
+		}
+	}
+
+	private static int readInt(byte[] b, int i) {
+		return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | b[i + 3] << 24;
+	}
+}
@@ -0,0 +1,406 @@
+package project.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+import project.logic.*;
+
+/**
+ * A MappedProjectFile gives access to the projects of a portfolio file without reading it.<br>
+ * The file is mapped in memory with FileChannel.map and only the footer is read when it is opened. The
+ * trailer written by ProjectWriter gives the offset of every record sorted by code, so the file is a
+ * List&#60;Project&#62; sorted by code in which a Project object is only decoded the first time it is read
+ * with <i>get</i>. Codes can be looked up by binary search reading only the codes of the records on the
+ * way, and the OngoingProjects and FinishedProjects are available as lists of their own.<br>
+ * Decoded projects are kept in pages allocated on first use, so the same Project object is returned
+ * every time and both the time taken and the memory used depend on the projects read, not on the size
+ * of the file. The operating system loads the pages of the file the same way.<br>
+ * The file must not be overwritten while it is mapped. <i>loadAll</i> decodes every project and releases
+ * the mapping, after which the list no longer depends on the file.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see ProjectWriter
+ * @see MappedPortfolio
+ */
+public class MappedProjectFile extends AbstractList<Project> implements RandomAccess {
+
+	/** Number of decoded projects per cache page, as a power of 2 */
+	private static final int PAGE_BITS = 10;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+	/** The mapped file, or null once every project has been decoded */
+	private ByteBuffer buffer;
+	/** Number of projects */
+	private int size;
+	/** Offset of the table of client String offsets */
+	private int clientTable;
+	/** Number of clients in the table */
+	private int clientCount;
+	/** Offset of the table of record offsets, sorted by code */
+	private int recordTable;
+	/** Offsets of the tables of positions of the OngoingProjects and of the FinishedProjects */
+	private int ongoingTable;
+	private int finishedTable;
+	private int ongoingCount;
+	private int finishedCount;
+	/** Positions of the partitions, copied from the file by loadAll */
+	private int[] ongoingPositions;
+	private int[] finishedPositions;
+	/** Decoded projects by position, in pages */
+	private Project[][] pages;
+	/** Decoded clients by id */
+	private String[] clients;
+	/** Milliseconds of the local midnight of each epoch day seen, as computed by Project.fromEpochDay */
+	private HashMap<Integer, Long> midnights = new HashMap<Integer, Long>();
+	/** Position of the next byte to decode */
+	private int pos;
+	/** Read-only lists of the OngoingProjects and of the FinishedProjects */
+	private List<Project> ongoingList = new Partition(true);
+	private List<Project> finishedList = new Partition(false);
+
+	private MappedProjectFile(ByteBuffer b) throws IOException {
+		buffer = b;
+		if (b.capacity() < 6 + ProjectWriter.FOOTER || !hasMagic(0) || !hasMagic(b.capacity() - 4)) {
+			throw new IOException("Not an indexed portfolio file");
+		}
+		int version = b.get(4) & 0xFF;
+		if (version < 2 || version > ProjectWriter.VERSION) {
+			throw new IOException("Unsupported portfolio file version for mapping: " + version);
+		}
+		long trailer = b.getLong(b.capacity() - ProjectWriter.FOOTER);
+		if (trailer < 6 || trailer > b.capacity() - ProjectWriter.FOOTER - 16) {
+			throw new IOException("Corrupt portfolio file: trailer at " + trailer);
+		}
+		clientTable = (int) trailer + 4;
+		clientCount = b.getInt((int) trailer);
+		recordTable = checked(clientTable + 8L * clientCount) + 4;
+		size = b.getInt(recordTable - 4);
+		ongoingTable = checked(recordTable + 8L * size) + 4;
+		ongoingCount = b.getInt(ongoingTable - 4);
+		finishedTable = checked(ongoingTable + 4L * ongoingCount) + 4;
+		finishedCount = b.getInt(finishedTable - 4);
+		if (clientCount < 0 || size < 0 || ongoingCount < 0 || finishedCount < 0 || ongoingCount + finishedCount != size
+				|| finishedTable + 4L * finishedCount != b.capacity() - ProjectWriter.FOOTER) {
+			throw new IOException("Corrupt portfolio file: inconsistent trailer");
+		}
+		pages = new Project[(size + PAGE_SIZE - 1) >>> PAGE_BITS][];
+		clients = new String[clientCount];
+	}
+
+	/**
+	 * Maps a portfolio file.
+	 * @param f	the File to map, written by a ProjectWriter in version 2 or later
+	 * @return a new MappedProjectFile
+	 * @throws IOException when the file cannot be mapped or has no trailer
+	 */
+	public static MappedProjectFile open(File f) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+		try {
+			long length = raf.length();
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("File too large to map: " + f);
+			}
+			// The mapping stays valid after the channel is closed
+			return new MappedProjectFile(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/** @return the number of projects in the file */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns a project, decoding it the first time it is read.
+	 * @param index	the position of the project in the file, sorted by code
+	 * @return the Project object, always the same one for a position
+	 * @throws IndexOutOfBoundsException when the position is out of range
+	 * @throws IllegalStateException when the record is corrupt
+	 */
+	@Override
+	public synchronized Project get(int index) throws IndexOutOfBoundsException, IllegalStateException {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		Project[] page = pages[index >>> PAGE_BITS];
+		if (page == null) {
+			page = new Project[Math.min(PAGE_SIZE, size - (index & ~(PAGE_SIZE - 1)))];
+			pages[index >>> PAGE_BITS] = page;
+		}
+		Project p = page[index & (PAGE_SIZE - 1)];
+		if (p == null) {
+			p = decode(index);
+			page[index & (PAGE_SIZE - 1)] = p;
+		}
+		return p;
+	}
+
+	/**
+	 * Returns the code of a project without decoding the rest of it.
+	 * @param index	the position of the project in the file, sorted by code
+	 * @return a String representing the project code
+	 * @throws IndexOutOfBoundsException when the position is out of range
+	 */
+	public synchronized String getCode(int index) throws IndexOutOfBoundsException {
+		Project p = cached(index);
+		if (p != null) {
+			return p.getCode();
+		}
+		pos = record(index) + 1;
+		return readString();
+	}
+
+	/**
+	 * Binary searches the projects by code, ignoring case, reading only the codes on the way.
+	 * @param c	String representing the required project code
+	 * @return	the position of a project with the given code, or -(insertion point)-1 if the code is not found
+	 */
+	public int indexOf(String c) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = getCode(mid).compareToIgnoreCase(c);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/** @return a read-only List of the OngoingProjects, sorted by code, decoded as they are read */
+	public List<Project> getOngoingProjects() {
+		return ongoingList;
+	}
+
+	/** @return a read-only List of the FinishedProjects, sorted by code, decoded as they are read */
+	public List<Project> getFinishedProjects() {
+		return finishedList;
+	}
+
+	/** @return the number of projects decoded so far */
+	public synchronized int getDecodedCount() {
+		int n = 0;
+		for (int i=0; i<pages.length; i++) {
+			if (pages[i] != null) {
+				for (int j=0; j<pages[i].length; j++) {
+					if (pages[i][j] != null) {
+						n++;
+					}
+				}
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Decodes every project not decoded yet and releases the mapping. The list then keeps working from memory.
+	 * @throws IllegalStateException when a record is corrupt
+	 */
+	public synchronized void loadAll() throws IllegalStateException {
+		if (buffer == null) {
+			return;
+		}
+		for (int i=0; i<size; i++) {
+			get(i);
+		}
+		// Positions of the partitions are the last thing read from the file
+		int[] on = new int[ongoingCount];
+		for (int i=0; i<ongoingCount; i++) {
+			on[i] = buffer.getInt(ongoingTable + 4 * i);
+		}
+		int[] fin = new int[finishedCount];
+		for (int i=0; i<finishedCount; i++) {
+			fin[i] = buffer.getInt(finishedTable + 4 * i);
+		}
+		ongoingPositions = on;
+		finishedPositions = fin;
+		buffer = null;
+		midnights = null;
+	}
+
+	/**
+	 * @return the position in the file of the <i>i</i>-th project of a partition
+	 */
+	private synchronized int position(boolean ongoing, int i) {
+		if (buffer == null) {
+			return ongoing ? ongoingPositions[i] : finishedPositions[i];
+		}
+		return buffer.getInt((ongoing ? ongoingTable : finishedTable) + 4 * i);
+	}
+
+	/**
+	 * @return the decoded project at a position, or null if it has not been decoded
+	 */
+	private Project cached(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		Project[] page = pages[index >>> PAGE_BITS];
+		return page == null ? null : page[index & (PAGE_SIZE - 1)];
+	}
+
+	/**
+	 * @return the offset of the record of a project
+	 */
+	private int record(int index) {
+		long offset = buffer.getLong(recordTable + 8 * index);
+		if (offset < 6 || offset >= buffer.capacity()) {
+			throw new IllegalStateException("Corrupt portfolio file: record " + index + " at " + offset);
+		}
+		return (int) offset;
+	}
+
+	/**
+	 * Decodes the record of a project, as ProjectReader does.
+	 */
+	private Project decode(int index) {
+		pos = record(index);
+		try {
+			int type = buffer.get(pos++) & 0xFF;
+			String code = readString();
+			String name = readString();
+			String client = readClient();
+			Date start = readDate();
+			Date date = readDate();
+			double amount = buffer.getDouble(pos);
+			pos += 8;
+			if (type == ProjectWriter.ONGOING) {
+				return new OngoingProject(code, name, start, client, date, amount, buffer.getInt(pos));
+			} else if (type == ProjectWriter.FINISHED) {
+				return new FinishedProject(code, name, start, client, date, amount);
+			}
+			throw new IllegalStateException("Corrupt portfolio file: unknown record type " + type);
+		} catch (IndexOutOfBoundsException e) {
+			throw new IllegalStateException("Corrupt portfolio file: record " + index, e);
+		}
+	}
+
+	/**
+	 * Reads a client reference. New dictionary entries hold the client, others are found in the client table.
+	 */
+	private String readClient() {
+		long ref = readVarint();
+		if (ref == 0) {
+			return readString();
+		}
+		if (ref > clientCount) {
+			throw new IllegalStateException("Corrupt portfolio file: unknown client " + (ref - 1));
+		}
+		int id = (int) ref - 1;
+		if (clients[id] == null) {
+			int at = pos;
+			pos = (int) buffer.getLong(clientTable + 8 * id);
+			clients[id] = readString();
+			pos = at;
+		}
+		return clients[id];
+	}
+
+	private String readString() {
+		long n = readVarint();
+		if (n == 0) {
+			return null;
+		}
+		int len = (int) (n - 1);
+		if (n - 1 > buffer.capacity() - pos) {
+			throw new IllegalStateException("Corrupt portfolio file: string of " + (n - 1) + " bytes");
+		}
+		byte[] bytes = new byte[len];
+		for (int i=0; i<len; i++) {
+			bytes[i] = buffer.get(pos + i);
+		}
+		pos += len;
+		return new String(bytes, ProjectWriter.UTF8);
+	}
+
+	private Date readDate() {
+		long v = readVarint();
+		long value = (v >>> 3) ^ -((v >>> 2) & 1);
+		switch ((int) (v & 3)) {
+		case ProjectWriter.NO_DATE:
+			return null;
+		case ProjectWriter.DAY:
+			Long ms = midnights.get((int) value);
+			if (ms == null) {
+				ms = Project.fromEpochDay((int) value).getTime();
+				midnights.put((int) value, ms);
+			}
+			return new Date(ms);
+		case ProjectWriter.MILLIS:
+			return new Date(value);
+		default:
+			throw new IllegalStateException("Corrupt portfolio file: unknown date tag " + (v & 3));
+		}
+	}
+
+	private long readVarint() {
+		long v = 0;
+		for (int shift=0; shift<64; shift+=7) {
+			int b = buffer.get(pos++);
+			v |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return v;
+			}
+		}
+		throw new IllegalStateException("Corrupt portfolio file: varint too long");
+	}
+
+	private boolean hasMagic(int at) {
+		byte[] magic = new byte[ProjectWriter.MAGIC.length];
+		for (int i=0; i<magic.length; i++) {
+			magic[i] = buffer.get(at + i);
+		}
+		return Arrays.equals(magic, ProjectWriter.MAGIC);
+	}
+
+	/**
+	 * @return an offset of the trailer, checked to be inside the file
+	 */
+	private int checked(long offset) throws IOException {
+		if (offset < 0 || offset > buffer.capacity() - ProjectWriter.FOOTER - 4) {
+			throw new IOException("Corrupt portfolio file: table at " + offset);
+		}
+		return (int) offset;
+	}
+
+	/**
+	 * The projects of one type, read through the table of their positions.
+	 */
+	private class Partition extends AbstractList<Project> implements RandomAccess {
+		private final boolean ongoing;
+
+		Partition(boolean isOngoing) {
+			ongoing = isOngoing;
+		}
+
+		@Override
+		public Project get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			}
+			return MappedProjectFile.this.get(position(ongoing, index));
+		}
+
+		@Override
+		public int size() {
+			return ongoing ? ongoingCount : finishedCount;
+		}
+	}
+}
@@ -3,6 +3,7 @@ package project.io;
 import java.sql.*;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.List;
 
 import project.logic.*;
 /**
@@ -111,6 +112,41 @@ public class ProjectDB {
 	 * @param p The Project object to be added in the database.
 	 */
 	public static void add(Project p){
+		String query = addQuery(p);
+
+		try {
+			sql.executeUpdate(query);
+			System.out.println("** Record added **");
+		} catch (Exception e) {
+			System.out.println("** Could not add record **");
+			e.printStackTrace();
+		}
+
+	}
+
+	/**
+	 * Adds a new record in the database for each Project object, in a single transaction.
+	 * The statements are sent to the database in one batch.
+	 * @param projects The Project objects to be added in the database.
+	 */
+	public static void addAll(List<? extends Project> projects) {
+		ArrayList<String> queries = new ArrayList<String>(projects.size());
+		for (Project p : projects) {
+			queries.add(addQuery(p));
+		}
+		if (executeBatch(queries)) {
+			System.out.println("** " + queries.size() + " records added **");
+		} else {
+			System.out.println("** Could not add records **");
+		}
+	}
+
+	/**
+	 * Builds the statements adding a Project object to the database.
+	 * @param p The Project object to be added.
+	 * @return A String with the SQL statements, empty for unknown project types.
+	 */
+	private static String addQuery(Project p) {
 		String query = "";
 		
 		if(p instanceof OngoingProject) {
@@ -128,23 +164,52 @@ public class ProjectDB {
 					+ "VALUES ('"+p.getCode()+"','"+df.format(((FinishedProject) p).getEndDate())
 					+ "',"+((FinishedProject)p).getTotalCost()+");";
 		}
+		return query;
+	}
 
+	/**
+	 * Updates a record in the database with data from a Project object.
+	 * @param p The project object with the new data to be updated in the database.
+	 * @param change A boolean value indicating if the Project object changed type. 
+	 */
+	public static void update(Project p, boolean change) {
+		String query = updateQuery(p, change);
+		
 		try {
 			sql.executeUpdate(query);
-			System.out.println("** Record added **");
-		} catch (Exception e) {
-			System.out.println("** Could not add record **");
+			System.out.println("** Record Updated **");
+		} catch (SQLException e) {
+			System.out.println("** Could not update record **");
 			e.printStackTrace();
 		}
+		
+	}
 
+	/**
+	 * Updates a record in the database for each Project object, in a single transaction.
+	 * The statements are sent to the database in one batch.
+	 * @param projects The Project objects with the new data to be updated in the database.
+	 * @param changes A boolean value for each Project object indicating if it changed type.
+	 */
+	public static void updateAll(List<? extends Project> projects, boolean[] changes) {
+		ArrayList<String> queries = new ArrayList<String>(projects.size());
+		for (int i=0; i<projects.size(); i++) {
+			queries.add(updateQuery(projects.get(i), changes[i]));
+		}
+		if (executeBatch(queries)) {
+			System.out.println("** " + queries.size() + " records updated **");
+		} else {
+			System.out.println("** Could not update records **");
+		}
 	}
 
 	/**
-	 * Updates a record in the database with data from a Project object.
-	 * @param p The project object with the new data to be updated in the database.
-	 * @param change A boolean value indicating if the Project object changed type. 
+	 * Builds the statements updating the record of a Project object.
+	 * @param p The project object with the new data.
+	 * @param change A boolean value indicating if the Project object changed type.
+	 * @return A String with the SQL statements.
 	 */
-	public static void update(Project p, boolean change) {
+	static String updateQuery(Project p, boolean change) {
 		String query = "UPDATE PROJECT "
 				+ "SET ProjectName = '" + p.getName() + "'"
 				+ ", ProjectClient = '" + p.getClient() + "'"
@@ -152,11 +217,22 @@ public class ProjectDB {
 		
 		if(p instanceof OngoingProject) {
 			query += ", ProjectStatus = 'O' WHERE ProjectCode = '" + p.getCode()+"';";
-			query += "UPDATE ONGOING_PROJECT "
-					+ "SET Deadline = '" + df.format(((OngoingProject)p).getDeadline()) + "'"
-					+ ", Budget = " + ((OngoingProject)p).getBudget()
-					+ ", Completion = " + ((OngoingProject)p).getCompletion()
-					+ " WHERE ProjectCode = '" + p.getCode() + "';";
+			if(change) {
+				query += "INSERT INTO ONGOING_PROJECT (Deadline, Budget, Completion, ProjectCode) "
+						+ "VALUES ('" + df.format(((OngoingProject)p).getDeadline()) + "'"
+						+ "," + ((OngoingProject)p).getBudget()
+						+ "," + ((OngoingProject)p).getCompletion()
+						+ ", '" + p.getCode() + "');";
+				
+				query += "DELETE FROM FINISHED_PROJECT WHERE ProjectCode = '" + p.getCode() + "';";
+			
+			} else {
+				query += "UPDATE ONGOING_PROJECT "
+						+ "SET Deadline = '" + df.format(((OngoingProject)p).getDeadline()) + "'"
+						+ ", Budget = " + ((OngoingProject)p).getBudget()
+						+ ", Completion = " + ((OngoingProject)p).getCompletion()
+						+ " WHERE ProjectCode = '" + p.getCode() + "';";
+			}
 			
 		}else if(p instanceof FinishedProject) {
 			query += ", ProjectStatus = 'F' WHERE ProjectCode = '" + p.getCode()+"';";
@@ -175,37 +251,90 @@ public class ProjectDB {
 						+ " WHERE ProjectCode = '" + p.getCode() + "';";
 			}
 		}
+		return query;
+	}
+
+	/**
+	 * Deletes a Project record from the database.
+	 * @param project The Project object to be deleted.
+	 */
+	public static void delete(Project project) {
+		String query = deleteQuery(project);
 		
 		try {
 			sql.executeUpdate(query);
-			System.out.println("** Record Updated **");
+			System.out.println("** Record deleted **");
 		} catch (SQLException e) {
-			System.out.println("** Could not update record **");
+			System.out.println("** Could not delete record **");
 			e.printStackTrace();
 		}
 		
 	}
 
 	/**
-	 * Deletes a Project record from the database.
+	 * Deletes the record of each Project object from the database, in a single transaction.
+	 * The statements are sent to the database in one batch.
+	 * @param projects The Project objects to be deleted.
+	 */
+	public static void deleteAll(List<? extends Project> projects) {
+		ArrayList<String> queries = new ArrayList<String>(projects.size());
+		for (Project p : projects) {
+			queries.add(deleteQuery(p));
+		}
+		if (executeBatch(queries)) {
+			System.out.println("** " + queries.size() + " records deleted **");
+		} else {
+			System.out.println("** Could not delete records **");
+		}
+	}
+
+	/**
+	 * Builds the statements deleting the record of a Project object.
 	 * @param project The Project object to be deleted.
+	 * @return A String with the SQL statements.
 	 */
-	public static void delete(Project project) {
+	private static String deleteQuery(Project project) {
 		String query = "DELETE FROM PROJECT WHERE ProjectCode = '"+project.getCode()+"';";
 		if(project instanceof OngoingProject) {
 			query += "DELETE FROM ONGOING_PROJECT WHERE ProjectCode = '"+project.getCode()+"';";
 		} else if(project instanceof FinishedProject) {
 			query += "DELETE FROM FINISHED_PROJECT WHERE ProjectCode = '"+project.getCode()+"';";
 		}
-		
+		return query;
+	}
+
+	/**
+	 * Sends several statements to the database in one batch and commits them together.
+	 * Nothing is changed if any of them fails.
+	 * @param queries The SQL statements to execute.
+	 * @return true if the statements were committed, false if they were rolled back.
+	 */
+	private static boolean executeBatch(List<String> queries) {
+		if (queries.isEmpty()) {
+			return true;
+		}
 		try {
-			sql.executeUpdate(query);
-			System.out.println("** Record deleted **");
+			boolean autoCommit = con.getAutoCommit();
+			con.setAutoCommit(false);
+			try {
+				for (int i=0; i<queries.size(); i++) {
+					sql.addBatch(queries.get(i));
+				}
+				sql.executeBatch();
+				con.commit();
+				return true;
+			} catch (SQLException e) {
+				con.rollback();
+				e.printStackTrace();
+				return false;
+			} finally {
+				sql.clearBatch();
+				con.setAutoCommit(autoCommit);
+			}
 		} catch (SQLException e) {
-			System.out.println("** Could not delete record **");
 			e.printStackTrace();
+			return false;
 		}
-		
 	}
 	
 }
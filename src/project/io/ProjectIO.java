@@ -1,14 +1,19 @@
 package project.io;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.util.ArrayList;
+import java.util.List;
 
 import project.logic.*;
 
 /**
  * This class performs all I/O functions of the application.
  * @author Gabriel Skoropada
- * @version 1.1 - 16/sep/2014 - added readSettings() and saveSettings() methods
+ * @version 1.4 - added block compression
  * @see Portfolio
  */
 public class ProjectIO {
@@ -16,40 +21,168 @@ public class ProjectIO {
 	private final static String SETTINGS_FILE = "settings.cfg";
 	
 	/** 
-	 * This method stores the data passed in the ArrayList&#60;Project&#62; object into the file
-	 * specified in the <i>file</i> String parameter
+	 * This method stores the data passed in the List&#60;Project&#62; object into the file
+	 * specified in the <i>file</i> String parameter, in the compact binary format of ProjectWriter.
+	 * The data is written to a new temporary file in the same directory, forced to disk and renamed over
+	 * the file, so the file always holds either the previous data or the new data in full.
 	 * @param	file	a String representing the file where the data should be stored
-	 * @param	portfolio	an ArrayList&#60;Project&#62; object with the data to be saved
+	 * @param	portfolio	a List&#60;Project&#62; object with the data to be saved
 	 * @throws	IOException	when there is any critical error with the file
+	 * @see ProjectWriter
 	 */
-	public static void save (String file, ArrayList<Project> portfolio) throws IOException {
-		
-		
-			ObjectOutputStream objOut = new ObjectOutputStream (new FileOutputStream (file));
-			objOut.writeObject (portfolio);
-			objOut.close();
+	public static void save (String file, List<? extends Project> portfolio) throws IOException {
+		save (file, portfolio, BlockOutputStream.NONE);
+	}
+	
+	/** 
+	 * Stores the data passed in the List&#60;Project&#62; object into a file as <i>save</i> does,
+	 * compressing it in independent blocks with the given codec
+	 * @param	file	a String representing the file where the data should be stored
+	 * @param	portfolio	a List&#60;Project&#62; object with the data to be saved
+	 * @param	codec	the codec of BlockOutputStream to compress the file with, or BlockOutputStream.NONE
+	 * @throws	IOException	when there is any critical error with the file
+	 * @see BlockOutputStream
+	 */
+	public static void save (String file, List<? extends Project> portfolio, int codec) throws IOException {
+		// Each save has its own temporary file, so saves of the same file never write over each other
+		File target = new File (file).getAbsoluteFile();
+		File temp = createTemp (target, ".tmp");
+		try {
+			write (temp, portfolio, 0, codec);
+			replace (temp, target);
+		} finally {
+			temp.delete();
+		}
+	}
+	
+	/**
+	 * Writes projects to a file with a ProjectWriter and forces the file to disk.
+	 * @param	f	the File to write
+	 * @param	portfolio	a List&#60;Project&#62; object with the data to be saved
+	 * @param	tag	a Long identifying the snapshot, or 0 for none
+	 * @param	codec	the codec of BlockOutputStream to compress the file with, or BlockOutputStream.NONE
+	 * @throws	IOException	when there is any critical error with the file
+	 */
+	static void write (File f, List<? extends Project> portfolio, long tag, int codec) throws IOException {
+		FileOutputStream fos = new FileOutputStream (f);
+		try {
+			BlockOutputStream blocks = codec == BlockOutputStream.NONE ? null : new BlockOutputStream (fos, codec);
+			ProjectWriter out = new ProjectWriter (blocks == null ? fos : blocks, tag);
+			out.writeAll (portfolio);
+			out.finish();
+			if (blocks != null) {
+				blocks.finish();
+			}
+			fos.getChannel().force(true);
+		} finally {
+			fos.close();
+		}
+	}
+	
+	/**
+	 * Decompresses a stream if it was written by a BlockOutputStream.
+	 * @param	in	an InputStream supporting mark and reset
+	 * @return	a BlockInputStream reading the stream if it is compressed, or the stream itself
+	 * @throws	IOException when the stream cannot be read
+	 */
+	static InputStream decode (InputStream in) throws IOException {
+		return BlockInputStream.isCompressed(in) ? new BlockInputStream(in) : in;
+	}
+	
+	/**
+	 * Creates a new, empty temporary file with a unique name next to a file. The file is created with the
+	 * default permissions of the process, as any other file the application writes.
+	 * @param	target	the File the temporary file is written for
+	 * @param	suffix	the suffix of the temporary file's name
+	 * @return	the temporary File
+	 * @throws	IOException	when the file cannot be created
+	 */
+	static File createTemp (File target, String suffix) throws IOException {
+		File parent = target.getAbsoluteFile().getParentFile();
+		return File.createTempFile (target.getName() + ".", suffix, parent);
+	}
+	
+	/**
+	 * Renames a file over another one, atomically where the file system allows it. The file being replaced
+	 * keeps its permissions.
+	 * @param	from	the File to rename
+	 * @param	to	the File to replace
+	 * @throws	IOException	when the file cannot be renamed
+	 */
+	static void replace (File from, File to) throws IOException {
+		if (to.exists() && Files.getFileStore(to.toPath()).supportsFileAttributeView(PosixFileAttributeView.class)) {
+			Files.setPosixFilePermissions (from.toPath(), Files.getPosixFilePermissions(to.toPath()));
+		}
+		try {
+			Files.move (from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move (from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
 		}
+	}
 	
 	/** 
 	 * The 'open' method returns an ArrayList&#60;Project&#62; object from the file
-	 * specified in the 'file' String parameter
+	 * specified in the 'file' String parameter.
+	 * The format is detected from the first bytes of the file: files in the binary format of ProjectWriter
+	 * are read with a ProjectReader, decompressing them first if they were compressed, and files saved by
+	 * earlier versions with serialization are still read.
 	 * @param 	file	a String representing the file to open
 	 * @return an ArrayList&#60;Project&#62; with the information stored in the file
 	 * @throws	ClassNotFoundException When the classes stored in the file are not found 
 	 * @throws	IOException when there is any critical error with the file
 	 * @throws	FileNotFoundException When the file that must be opened is not found
+	 * @see ProjectReader
 	 */
 	@SuppressWarnings("unchecked")
 	public static ArrayList<Project> open (String file) throws ClassNotFoundException, IOException, FileNotFoundException {
 
-		
-		
-		ObjectInputStream objIn = new ObjectInputStream (new FileInputStream (file));
-		ArrayList<Project> portfolio = new ArrayList<Project>();
-		portfolio = (ArrayList<Project>) objIn.readObject();
-		objIn.close ();
+		InputStream in = new BufferedInputStream (new FileInputStream (file), ProjectWriter.BUFFER);
+		try {
+			if (BlockInputStream.isCompressed(in)) {
+				return new ProjectReader(new BlockInputStream(in)).readAll();
+			}
+			if (ProjectReader.isProjectFile(in)) {
+				return new ProjectReader(in).readAll();
+			}
+			ObjectInputStream objIn = new ObjectInputStream (in);
+			return (ArrayList<Project>) objIn.readObject();
+		} finally {
+			in.close ();
+		}
+	}
 
-		return portfolio;
+	/**
+	 * Reads the projects of a file straight into a ProjectArena, one at a time, so that only the project
+	 * being decoded is held on the heap. Files saved by earlier versions with serialization can only be
+	 * read whole, so their projects are read first and then copied into the arena.
+	 * @param 	file	a String representing the file to open
+	 * @return a ProjectArena with the projects stored in the file, in the order they were written
+	 * @throws	ClassNotFoundException When the classes stored in the file are not found 
+	 * @throws	IOException when there is any critical error with the file
+	 * @throws	FileNotFoundException When the file that must be opened is not found
+	 * @see ProjectArena
+	 */
+	@SuppressWarnings("unchecked")
+	public static ProjectArena openArena (String file) throws ClassNotFoundException, IOException, FileNotFoundException {
+
+		InputStream in = new BufferedInputStream (new FileInputStream (file), ProjectWriter.BUFFER);
+		try {
+			InputStream data = decode (in);
+			if (data == in && !ProjectReader.isProjectFile(in)) {
+				ObjectInputStream objIn = new ObjectInputStream (in);
+				return new ProjectArena ((ArrayList<Project>) objIn.readObject());
+			}
+			ProjectReader reader = new ProjectReader (data);
+			ProjectArena arena = new ProjectArena ();
+			Project p = reader.read();
+			while (p != null) {
+				arena.add(p);
+				p = reader.read();
+			}
+			return arena;
+		} finally {
+			in.close ();
+		}
 	}
 
 	/** 
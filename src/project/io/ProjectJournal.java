@@ -0,0 +1,788 @@
+package project.io;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+import project.logic.*;
+
+/**
+ * A ProjectJournal keeps a write-ahead journal of the changes made to a portfolio next to its file.<br>
+ * The portfolio file is the last snapshot, written by ProjectWriter with a tag, and the journal, named
+ * after it with the ".journal" extension, starts with the same tag followed by one record per change:
+ * projects added or replaced are written in full, removed projects by their code. Saving a portfolio
+ * whose file is up to date only appends the records of the changes made since the last save, so editing
+ * one project costs one small append instead of rewriting the whole file.<br>
+ * The journal listens to the portfolio and records each change when it is made, but only writes them
+ * when the portfolio is saved, so changes that are never saved are discarded as before. Saves made at
+ * the same time by several threads share one write and one call to <i>force</i> (group commit). The state
+ * to save can be taken with <i>checkpoint</i> and saved later on another thread: changes made after the
+ * checkpoint are left for the next save. Each record is checked with a CRC32, and a record torn by a
+ * crash is dropped when the journal is opened.<br>
+ * Opening a portfolio replays the journal over the snapshot when their tags match. Journals with another
+ * tag belong to an older snapshot and are ignored. Once the journal has grown past half the size of the
+ * snapshot, the snapshot is rewritten on a background thread from a snapshot of the portfolio and the
+ * records it includes are dropped from the journal. Replaying a record twice gives the same result, so a
+ * crash at any point of the compaction leaves a snapshot and a journal that replay to the saved portfolio.<br>
+ * Projects are identified by their case-folded code, so portfolios holding several projects with the same
+ * code, and reloaded portfolios, are saved as a new snapshot instead.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see ProjectWriter
+ * @see Portfolio#save
+ */
+public class ProjectJournal implements PortfolioListener {
+
+	/** First bytes of every journal */
+	static final byte[] MAGIC = {'J', 'P', 'J', 'L'};
+	/** Version of the journal format written */
+	static final int VERSION = 1;
+	/** Length of the header: MAGIC, VERSION and tag */
+	static final int HEADER = MAGIC.length + 1 + 8;
+	/** Record types */
+	static final int PUT = 1;
+	static final int DELETE = 2;
+	/** Size under which a journal is never compacted */
+	static final long COMPACT_MIN = 64 * 1024;
+
+	/** Thread compacting the journals in the background */
+	private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "ProjectJournal compactor");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	private static final Random TAGS = new Random();
+
+	/** The portfolio file holding the snapshot */
+	private final File file;
+	/** The journal file */
+	private final File journalFile;
+	/** Tag shared by the snapshot and the journal, or 0 if the snapshot is not tagged */
+	private long tag;
+	/** Identity of the portfolio file when the journal was opened */
+	private Object snapshotKey;
+	/** true when the next save must write a new snapshot */
+	private boolean snapshotNeeded;
+	/** Channel appending to the journal, opened by the first append */
+	private FileChannel channel;
+	/** Length of the valid records read when the journal was opened */
+	private long validLength;
+	/** Length of the snapshot file */
+	private long snapshotLength;
+	/** Records of the changes made since the last save */
+	private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+	/** Number of bytes of records made before the first pending one */
+	private long pendingStart;
+	/** Number of bytes of records made before the checkpoint of the last snapshot written, or -1 */
+	private long snapshotRecorded = -1;
+	/** Incremented each time the journal is invalidated */
+	private int generation;
+	/** Buffer used to encode one record */
+	private ByteArrayOutputStream record = new ByteArrayOutputStream();
+	private DataOutputStream recordOut = new DataOutputStream(record);
+	private CRC32 crc = new CRC32();
+	/** Changes read from the journal and not replayed yet, a null project meaning a removal */
+	private ArrayList<String> replayCodes = new ArrayList<String>();
+	private ArrayList<Project> replayProjects = new ArrayList<Project>();
+	/** Number of appends made, and number of them forced to disk. Guarded by syncLock */
+	private long appended;
+	private long synced;
+	/** Held while the journal is forced or replaced, before the lock of the journal itself */
+	private final Object syncLock = new Object();
+	/** Codec of BlockOutputStream the snapshots are compressed with */
+	private volatile int codec = BlockOutputStream.NONE;
+	/** Compaction running in the background, or null */
+	private Future<?> compaction;
+	private boolean closed;
+
+	private ProjectJournal(File f) {
+		file = f;
+		journalFile = journalFile(f);
+	}
+
+	/**
+	 * Opens the journal of a portfolio file and reads the changes it holds.
+	 * Nothing is written until the portfolio is saved.
+	 * @param file	String containing the name of the portfolio file
+	 * @return a new ProjectJournal, holding the changes to replay if the journal belongs to the snapshot
+	 * @throws IOException when the journal exists and cannot be read
+	 */
+	public static ProjectJournal open(String file) throws IOException {
+		ProjectJournal j = new ProjectJournal(new File(file));
+		j.snapshotKey = fileKey(j.file);
+		j.tag = ProjectReader.readTag(j.file);
+		j.snapshotLength = j.file.length();
+		j.snapshotNeeded = j.tag == 0 || !j.journalFile.exists() || !j.read();
+		return j;
+	}
+
+	/**
+	 * Tells whether a portfolio file has changes in its journal that have not been written to the snapshot.
+	 * Only the header and the first record of the journal are read.
+	 * @param file	String containing the name of the portfolio file
+	 * @return true if opening the file must replay its journal
+	 */
+	public static boolean hasRecords(String file) {
+		File f = new File(file);
+		File jf = journalFile(f);
+		if (jf.length() <= HEADER) {
+			return false;
+		}
+		long t = ProjectReader.readTag(f);
+		if (t == 0) {
+			return false;
+		}
+		try {
+			FileInputStream fis = new FileInputStream(jf);
+			long size = fis.getChannel().size();
+			DataInputStream in = new DataInputStream(new BufferedInputStream(fis));
+			try {
+				byte[] magic = new byte[MAGIC.length];
+				in.readFully(magic);
+				if (!Arrays.equals(magic, MAGIC) || in.readUnsignedByte() != VERSION || in.readLong() != t) {
+					return false;
+				}
+				int length = in.readInt();
+				int sum = in.readInt();
+				if (length <= 0 || length > size) {
+					return false;
+				}
+				byte[] b = new byte[length];
+				in.readFully(b);
+				CRC32 c = new CRC32();
+				c.update(b, 0, length);
+				return (int) c.getValue() == sum;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			// A missing journal, or a first record torn by a crash
+			return false;
+		}
+	}
+
+	/**
+	 * Tells whether the portfolio file is still the one the journal was opened with. A compaction or a
+	 * new snapshot written by another portfolio replaces the file and then its journal, so a portfolio
+	 * read after opening the journal must be read again, with a new journal, if the file was replaced.
+	 * @return true if the portfolio file has not been replaced since the journal was opened
+	 */
+	public boolean isCurrent() {
+		Object key = fileKey(file);
+		return snapshotKey == null ? key == null : snapshotKey.equals(key);
+	}
+
+	/**
+	 * @return the identity of a file on disk, which changes when it is replaced, or null if it does not exist.
+	 * The size and modification time are part of it, as the inode of a replaced file can be reused at once
+	 */
+	private static Object fileKey(File f) {
+		try {
+			BasicFileAttributes a = Files.readAttributes(f.toPath(), BasicFileAttributes.class);
+			return Arrays.asList(a.fileKey(), a.size(), a.lastModifiedTime());
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the journal of a portfolio file.
+	 * @param f	the portfolio File
+	 * @return a File object for the journal, next to the portfolio file
+	 */
+	public static File journalFile(File f) {
+		return new File(f.getPath() + ".journal");
+	}
+
+	/**
+	 * Sets the compression of the snapshots written from now on. The journal itself is not compressed.
+	 * @param c	the codec of BlockOutputStream, or BlockOutputStream.NONE
+	 */
+	public void setCompression(int c) {
+		codec = c;
+	}
+
+	/** @return the portfolio File the journal belongs to */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Applies the changes read from the journal to the projects read from the snapshot.
+	 * The changes are forgotten once applied.
+	 * @param projects	the projects of the snapshot, changed in place. Their order is not kept
+	 * @return the number of changes applied
+	 */
+	public synchronized int replay(List<Project> projects) {
+		int n = replayCodes.size();
+		if (n == 0) {
+			return 0;
+		}
+		HashMap<String, Integer> positions = new HashMap<String, Integer>(projects.size() * 2);
+		for (int i=0; i<projects.size(); i++) {
+			positions.put(fold(projects.get(i).getCode()), i);
+		}
+		boolean removed = false;
+		for (int k=0; k<n; k++) {
+			String key = fold(replayCodes.get(k));
+			Project p = replayProjects.get(k);
+			Integer i = positions.get(key);
+			if (p != null) {
+				if (i == null) {
+					positions.put(key, projects.size());
+					projects.add(p);
+				} else {
+					projects.set(i, p);
+				}
+			} else if (i != null) {
+				projects.set(i, null);
+				positions.remove(key);
+				removed = true;
+			}
+		}
+		if (removed) {
+			int kept = 0;
+			for (int i=0; i<projects.size(); i++) {
+				Project p = projects.get(i);
+				if (p != null) {
+					projects.set(kept++, p);
+				}
+			}
+			projects.subList(kept, projects.size()).clear();
+		}
+		replayCodes.clear();
+		replayProjects.clear();
+		return n;
+	}
+
+	/**
+	 * Makes the next save write a new snapshot instead of appending to the journal.
+	 */
+	public synchronized void invalidate() {
+		snapshotNeeded = true;
+		generation++;
+		drop();
+	}
+
+	/**
+	 * Saves the changes made to a portfolio since the last save: their records are appended to the
+	 * journal and forced to disk, or a new snapshot is written if the journal cannot hold them.
+	 * No change can be made to the portfolio while it is saved.
+	 * @param portfolio	the Portfolio object the journal listens to
+	 * @throws IOException when the journal or the snapshot cannot be written
+	 */
+	public void save(Portfolio portfolio) throws IOException {
+		save(checkpoint(portfolio));
+	}
+
+	/**
+	 * Takes the state of a portfolio to save, in O(1), so that it can be saved on another thread while
+	 * the portfolio keeps changing. Must be called by the thread changing the portfolio.
+	 * The projects are only taken when the save writes them, as a snapshot of the portfolio makes the next
+	 * change to it copy its projects.
+	 * @param portfolio	the Portfolio object the journal listens to
+	 * @return a Checkpoint to pass to <i>save</i>
+	 */
+	public synchronized Checkpoint checkpoint(Portfolio portfolio) {
+		List<Project> projects = snapshotNeeded || compactionDue(validLength + pending.size()) ? portfolio.snapshot() : null;
+		Checkpoint c = new Checkpoint(projects, pendingStart + pending.size(), snapshotNeeded, generation);
+		if (snapshotNeeded) {
+			// The snapshot holds every change recorded so far
+			drop();
+		}
+		return c;
+	}
+
+	/**
+	 * Saves a portfolio as it was when a checkpoint was taken: the records of the changes made until then
+	 * are appended to the journal and forced to disk, or a new snapshot is written if the journal cannot
+	 * hold them. Changes made after the checkpoint are left for the next save. Can be called on any thread.
+	 * @param c	a Checkpoint taken by this journal
+	 * @throws IOException when the journal or the snapshot cannot be written
+	 */
+	public void save(Checkpoint c) throws IOException {
+		if (c.snapshot) {
+			synchronized (syncLock) {
+				synchronized (this) {
+					// Saves can finish out of order: never write an older snapshot over a newer one
+					if (c.recorded <= snapshotRecorded) {
+						return;
+					}
+					writeSnapshot(c.projects);
+					snapshotRecorded = c.recorded;
+					if (generation == c.generation) {
+						snapshotNeeded = false;
+					}
+				}
+			}
+			return;
+		}
+		sync(append(c));
+	}
+
+	/**
+	 * Stops recording changes and closes the journal. A compaction still running is dropped.
+	 * @throws IOException when the journal cannot be closed
+	 */
+	public void close() throws IOException {
+		synchronized (syncLock) {
+			synchronized (this) {
+				closed = true;
+				pending.reset();
+				if (channel != null) {
+					channel.close();
+					channel = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits for the compaction running in the background, if any, to finish.
+	 */
+	void awaitCompaction() throws Exception {
+		Future<?> f;
+		synchronized (this) {
+			f = compaction;
+		}
+		if (f != null) {
+			f.get();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void projectAdded(Project p) {
+		put(p);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void projectReplaced(Project oldP, Project p) {
+		if (!fold(oldP.getCode()).equals(fold(p.getCode()))) {
+			delete(oldP.getCode());
+		}
+		put(p);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void projectRemoved(Project p) {
+		delete(p.getCode());
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void batchStarted(Portfolio portfolio) {
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void batchFinished(Portfolio portfolio) {
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void portfolioReset(Portfolio portfolio) {
+		invalidate();
+	}
+
+	/**
+	 * Records a project added or replaced.
+	 */
+	private void put(Project p) {
+		if (closed) {
+			return;
+		}
+		try {
+			record.reset();
+			recordOut.writeByte(PUT);
+			if (p instanceof OngoingProject) {
+				OngoingProject op = (OngoingProject) p;
+				recordOut.writeByte(ProjectWriter.ONGOING);
+				writeCommon(p);
+				ProjectWriter.writeInstant(recordOut, op.getDeadline());
+				recordOut.writeDouble(op.getBudget());
+				recordOut.writeInt(op.getCompletion());
+			} else if (p instanceof FinishedProject) {
+				FinishedProject fp = (FinishedProject) p;
+				recordOut.writeByte(ProjectWriter.FINISHED);
+				writeCommon(p);
+				ProjectWriter.writeInstant(recordOut, fp.getEndDate());
+				recordOut.writeDouble(fp.getTotalCost());
+			} else {
+				invalidate();
+				return;
+			}
+			endRecord();
+		} catch (IOException e) {
+			// Writing to memory does not fail, but the snapshot is the safe way out
+			invalidate();
+		}
+	}
+
+	/**
+	 * Records a project removed.
+	 */
+	private void delete(String code) {
+		if (closed) {
+			return;
+		}
+		try {
+			record.reset();
+			recordOut.writeByte(DELETE);
+			ProjectWriter.writeString(recordOut, code);
+			endRecord();
+		} catch (IOException e) {
+			invalidate();
+		}
+	}
+
+	private void writeCommon(Project p) throws IOException {
+		ProjectWriter.writeString(recordOut, p.getCode());
+		ProjectWriter.writeString(recordOut, p.getName());
+		ProjectWriter.writeString(recordOut, p.getClient());
+		ProjectWriter.writeInstant(recordOut, p.getStartDate());
+	}
+
+	/**
+	 * Adds the record encoded to the pending records, after its length and CRC32.
+	 */
+	private void endRecord() throws IOException {
+		byte[] b = record.toByteArray();
+		crc.reset();
+		crc.update(b, 0, b.length);
+		DataOutputStream out = new DataOutputStream(pending);
+		out.writeInt(b.length);
+		out.writeInt((int) crc.getValue());
+		out.write(b);
+	}
+
+	/**
+	 * Forgets the pending records.
+	 */
+	private void drop() {
+		pendingStart += pending.size();
+		pending.reset();
+	}
+
+	/**
+	 * Writes the pending records made before a checkpoint to the journal, and starts a compaction if
+	 * the journal has grown too large.
+	 * @return the number of appends to force for them to be on disk
+	 */
+	private synchronized long append(Checkpoint c) throws IOException {
+		if (closed) {
+			throw new IOException("Journal closed: " + journalFile);
+		}
+		int n = (int) Math.min(pending.size(), c.recorded - pendingStart);
+		if (n <= 0) {
+			return appended;
+		}
+		if (channel == null) {
+			RandomAccessFile raf = new RandomAccessFile(journalFile, "rw");
+			channel = raf.getChannel();
+			// Drops a record torn by a crash
+			channel.truncate(validLength);
+			channel.position(validLength);
+		}
+		byte[] b = pending.toByteArray();
+		write(channel, b, n);
+		pending.reset();
+		pending.write(b, n, b.length - n);
+		pendingStart += n;
+		appended++;
+		// The journal now holds the changes made up to the checkpoint, and none made after it
+		long length = channel.size();
+		validLength = length;
+		// Without projects, the compaction is left for a later save
+		if (c.projects != null && compactionDue(length)) {
+			compaction = COMPACTOR.submit(compactTask(c.projects, length, tag));
+		}
+		return appended;
+	}
+
+	/**
+	 * @return true if a journal of the given length must be compacted into a new snapshot
+	 */
+	private boolean compactionDue(long length) {
+		return (compaction == null || compaction.isDone()) && length > COMPACT_MIN && length > snapshotLength / 2;
+	}
+
+	/**
+	 * Forces the journal to disk unless another thread already did it for the given append.
+	 * Appends made while waiting are forced too, so concurrent saves share one call to force.
+	 */
+	private void sync(long target) throws IOException {
+		synchronized (syncLock) {
+			if (synced >= target) {
+				return;
+			}
+			long upTo;
+			FileChannel c;
+			synchronized (this) {
+				upTo = appended;
+				c = channel;
+			}
+			if (c != null) {
+				c.force(false);
+			}
+			synced = upTo;
+		}
+	}
+
+	/**
+	 * Writes a new snapshot with a new tag, and starts an empty journal for it.
+	 * Called holding both locks.
+	 */
+	private void writeSnapshot(List<Project> projects) throws IOException {
+		if (closed) {
+			throw new IOException("Journal closed: " + journalFile);
+		}
+		long t = 0;
+		while (t == 0) {
+			t = TAGS.nextLong();
+		}
+		File temp = writeTemp(projects, t, ".snapshot");
+		try {
+			ProjectIO.replace(temp, file);
+		} finally {
+			temp.delete();
+		}
+		tag = t;
+		snapshotLength = file.length();
+		startJournal(null, 0);
+	}
+
+	/**
+	 * Returns the compaction of the journal up to the given length into a new snapshot.
+	 */
+	private Runnable compactTask(final List<Project> projects, final long length, final long t) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				try {
+					compact(projects, length, t);
+				} catch (IOException e) {
+					System.out.println("** JOURNAL COMPACTION ERROR **\n");
+				}
+			}
+		};
+	}
+
+	/**
+	 * Writes a new snapshot holding the records of the journal up to the given length, and drops those
+	 * records from the journal. The snapshot is written without holding any lock.
+	 * @param projects	the projects saved when the journal had the given length
+	 * @param length	the length of the journal included in the snapshot
+	 * @param t	the tag of the snapshot and the journal, unchanged unless a new snapshot was written since
+	 */
+	void compact(List<Project> projects, long length, long t) throws IOException {
+		File temp = writeTemp(projects, t, ".compact");
+		try {
+			synchronized (syncLock) {
+				synchronized (this) {
+					// The journal was replaced or closed since the records were appended
+					if (closed || tag != t || snapshotNeeded || channel == null) {
+						return;
+					}
+					// A crash from here on replays the whole journal over the new snapshot, which is harmless
+					ProjectIO.replace(temp, file);
+					snapshotLength = file.length();
+					long end = channel.size();
+					byte[] tail = new byte[(int) (end - length)];
+					ByteBuffer buffer = ByteBuffer.wrap(tail);
+					while (buffer.hasRemaining()) {
+						if (channel.read(buffer, length + buffer.position()) < 0) {
+							throw new EOFException("Journal truncated: " + journalFile);
+						}
+					}
+					startJournal(tail, appended);
+				}
+			}
+		} finally {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Replaces the journal with a new one holding the header and the given records, forced to disk.
+	 * Called holding both locks.
+	 */
+	private void startJournal(byte[] records, long done) throws IOException {
+		File temp = ProjectIO.createTemp(journalFile, ".tmp");
+		try {
+			FileOutputStream fos = new FileOutputStream(temp);
+			try {
+				DataOutputStream out = new DataOutputStream(fos);
+				out.write(MAGIC);
+				out.writeByte(VERSION);
+				out.writeLong(tag);
+				if (records != null) {
+					out.write(records);
+				}
+				out.flush();
+				fos.getChannel().force(true);
+			} finally {
+				fos.close();
+			}
+			if (channel != null) {
+				channel.close();
+				channel = null;
+			}
+			ProjectIO.replace(temp, journalFile);
+		} finally {
+			temp.delete();
+		}
+		validLength = journalFile.length();
+		synced = appended = done;
+	}
+
+	/**
+	 * Writes a snapshot to a temporary file next to the portfolio file, forced to disk.
+	 */
+	private File writeTemp(List<Project> projects, long t, String suffix) throws IOException {
+		File temp = ProjectIO.createTemp(file, suffix);
+		try {
+			ProjectIO.write(temp, projects, t, codec);
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+		return temp;
+	}
+
+	/**
+	 * Reads the records of the journal, checking that it belongs to the snapshot.
+	 * @return false if the journal belongs to another snapshot or is not a journal
+	 */
+	private boolean read() throws IOException {
+		FileInputStream fis = new FileInputStream(journalFile);
+		// The size of the file opened, as a compaction can replace the journal while it is read
+		long size = fis.getChannel().size();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(fis, ProjectWriter.BUFFER));
+		try {
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(magic, MAGIC) || in.readUnsignedByte() != VERSION || in.readLong() != tag) {
+				return false;
+			}
+			validLength = HEADER;
+			byte[] b = new byte[64];
+			while (true) {
+				int length = in.readInt();
+				int sum = in.readInt();
+				if (length <= 0 || length > size) {
+					break;
+				}
+				if (length > b.length) {
+					b = new byte[Math.max(length, b.length * 2)];
+				}
+				in.readFully(b, 0, length);
+				crc.reset();
+				crc.update(b, 0, length);
+				if ((int) crc.getValue() != sum) {
+					break;
+				}
+				readRecord(new DataInputStream(new ByteArrayInputStream(b, 0, length)));
+				validLength += 8 + length;
+			}
+		} catch (EOFException e) {
+			// The last record was torn by a crash, or the journal is empty
+		} finally {
+			in.close();
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes one record of the journal.
+	 */
+	private void readRecord(DataInputStream in) throws IOException {
+		int type = in.readUnsignedByte();
+		if (type == DELETE) {
+			replayCodes.add(ProjectReader.readString(in));
+			replayProjects.add(null);
+			return;
+		}
+		if (type != PUT) {
+			throw new IOException("Corrupt journal: unknown record type " + type);
+		}
+		int kind = in.readUnsignedByte();
+		String code = ProjectReader.readString(in);
+		String name = ProjectReader.readString(in);
+		String client = ProjectReader.readString(in);
+		Date start = ProjectReader.readInstant(in);
+		Date date = ProjectReader.readInstant(in);
+		double amount = in.readDouble();
+		Project p;
+		if (kind == ProjectWriter.ONGOING) {
+			p = new OngoingProject(code, name, start, client, date, amount, in.readInt());
+		} else if (kind == ProjectWriter.FINISHED) {
+			p = new FinishedProject(code, name, start, client, date, amount);
+		} else {
+			throw new IOException("Corrupt journal: unknown project type " + kind);
+		}
+		replayCodes.add(code);
+		replayProjects.add(p);
+	}
+
+	private static void write(FileChannel c, byte[] b, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(b, 0, length);
+		while (buffer.hasRemaining()) {
+			c.write(buffer);
+		}
+	}
+
+	/**
+	 * The state of a portfolio to save, taken by <i>checkpoint</i>: a snapshot of its projects and the
+	 * position of the last change recorded.
+	 */
+	public static final class Checkpoint {
+		private final List<Project> projects;
+		private final long recorded;
+		private final boolean snapshot;
+		private final int generation;
+
+		private Checkpoint(List<Project> p, long r, boolean s, int g) {
+			projects = p;
+			recorded = r;
+			snapshot = s;
+			generation = g;
+		}
+	}
+
+	/**
+	 * @return the key identifying a project code, as Portfolio folds codes
+	 */
+	private static String fold(String c) {
+		return c == null ? "" : c.toUpperCase(Locale.ROOT);
+	}
+}
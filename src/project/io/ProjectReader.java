@@ -0,0 +1,303 @@
+package project.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+
+import project.logic.*;
+
+/**
+ * A ProjectReader reads Project objects one at a time from a stream written by a ProjectWriter.<br>
+ * The header is checked when the reader is created: streams without the MAGIC bytes, or written in a
+ * newer version of the format, are rejected. The number of records is checked against the end marker,
+ * so truncated files are reported instead of being read as shorter portfolios.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see ProjectWriter
+ * @see ProjectIO#open
+ */
+public class ProjectReader {
+
+	/** Stream holding the records */
+	private DataInputStream in;
+	/** Version of the format of the stream */
+	private int version;
+	/** Clients read so far, by dictionary id */
+	private ArrayList<String> clients = new ArrayList<String>();
+	/** Milliseconds of the local midnight of each epoch day seen, as computed by Project.fromEpochDay */
+	private HashMap<Integer, Long> midnights = new HashMap<Integer, Long>();
+	/** Buffer reused to decode Strings */
+	private byte[] bytes = new byte[64];
+	/** Tag of the stream, or 0 */
+	private long tag;
+	/** Number of records read */
+	private int count;
+	/** true once the end marker has been read */
+	private boolean done;
+
+	/**
+	 * Creates a reader and reads the header from the stream.
+	 * @param is	the InputStream to read from. It is buffered by the reader
+	 * @throws IOException when the stream is not in this format or is in an unsupported version
+	 */
+	public ProjectReader(InputStream is) throws IOException {
+		in = new DataInputStream(is instanceof BufferedInputStream ? is : new BufferedInputStream(is, ProjectWriter.BUFFER));
+		byte[] magic = new byte[ProjectWriter.MAGIC.length];
+		in.readFully(magic);
+		if (!Arrays.equals(magic, ProjectWriter.MAGIC)) {
+			throw new IOException("Not a portfolio file");
+		}
+		version = in.readUnsignedByte();
+		if (version < 1 || version > ProjectWriter.VERSION) {
+			throw new IOException("Unsupported portfolio file version: " + version);
+		}
+		int flags = in.readUnsignedByte();
+		if ((flags & ProjectWriter.TAGGED) != 0) {
+			tag = in.readLong();
+		}
+	}
+
+	/**
+	 * Reads the tag of a file without reading its records.
+	 * @param f	the File to read
+	 * @return the tag written by ProjectWriter, or 0 if the file has none or is not in this format. Compressed
+	 * files are read through a BlockInputStream
+	 */
+	public static long readTag(File f) {
+		try {
+			InputStream is = new FileInputStream(f);
+			try {
+				return new ProjectReader(ProjectIO.decode(new BufferedInputStream(is, 64))).getTag();
+			} finally {
+				is.close();
+			}
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Tells whether a stream starts with the MAGIC bytes of this format, without consuming them.
+	 * @param is	an InputStream supporting mark and reset
+	 * @return true if the stream is in this format
+	 * @throws IOException when the stream cannot be read
+	 */
+	public static boolean isProjectFile(InputStream is) throws IOException {
+		byte[] magic = new byte[ProjectWriter.MAGIC.length];
+		is.mark(magic.length);
+		int n = 0;
+		try {
+			while (n < magic.length) {
+				int r = is.read(magic, n, magic.length - n);
+				if (r < 0) {
+					return false;
+				}
+				n += r;
+			}
+		} finally {
+			is.reset();
+		}
+		return Arrays.equals(magic, ProjectWriter.MAGIC);
+	}
+
+	/** @return the version of the format of the stream */
+	public int getVersion() {
+		return version;
+	}
+
+	/** @return the tag identifying the snapshot held by the stream, or 0 if it has none */
+	public long getTag() {
+		return tag;
+	}
+
+	/**
+	 * Reads the next project.
+	 * @return the next Project object, or null when every project has been read
+	 * @throws IOException when the stream cannot be read or is corrupt
+	 */
+	public Project read() throws IOException {
+		if (done) {
+			return null;
+		}
+		try {
+			int type = in.readUnsignedByte();
+			if (type == ProjectWriter.END) {
+				long expected = readVarint(in);
+				if (expected != count) {
+					throw new IOException("Corrupt portfolio file: " + count + " records read, " + expected + " expected");
+				}
+				done = true;
+				return null;
+			}
+			if (type != ProjectWriter.ONGOING && type != ProjectWriter.FINISHED) {
+				throw new IOException("Corrupt portfolio file: unknown record type " + type);
+			}
+			String code = readString();
+			String name = readString();
+			String client = readClient();
+			Date start = readDate();
+			Date date = readDate();
+			double amount = in.readDouble();
+			count++;
+			if (type == ProjectWriter.ONGOING) {
+				return new OngoingProject(code, name, start, client, date, amount, in.readInt());
+			}
+			return new FinishedProject(code, name, start, client, date, amount);
+		} catch (EOFException e) {
+			throw new IOException("Corrupt portfolio file: unexpected end after " + count + " records", e);
+		}
+	}
+
+	/**
+	 * Reads every remaining project.
+	 * @return an ArrayList&#60;Project&#62; with the projects in the order they were written
+	 * @throws IOException when the stream cannot be read or is corrupt
+	 */
+	public ArrayList<Project> readAll() throws IOException {
+		ArrayList<Project> projects = new ArrayList<Project>();
+		Project p = read();
+		while (p != null) {
+			projects.add(p);
+			p = read();
+		}
+		return projects;
+	}
+
+	/**
+	 * Closes the stream.
+	 * @throws IOException when the stream cannot be closed
+	 */
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * Reads a client reference, and the client itself for new dictionary entries.
+	 */
+	private String readClient() throws IOException {
+		long ref = readVarint(in);
+		if (ref == 0) {
+			String c = readString();
+			clients.add(c);
+			return c;
+		}
+		if (ref > clients.size()) {
+			throw new IOException("Corrupt portfolio file: unknown client " + (ref - 1));
+		}
+		return clients.get((int) ref - 1);
+	}
+
+	/**
+	 * Reads a String written as its UTF-8 length plus one followed by its bytes.
+	 */
+	private String readString() throws IOException {
+		long n = readVarint(in);
+		if (n == 0) {
+			return null;
+		}
+		if (n - 1 > Integer.MAX_VALUE) {
+			throw new IOException("Corrupt portfolio file: string of " + (n - 1) + " bytes");
+		}
+		int len = (int) (n - 1);
+		if (len > bytes.length) {
+			bytes = new byte[Math.max(len, bytes.length * 2)];
+		}
+		in.readFully(bytes, 0, len);
+		return new String(bytes, 0, len, ProjectWriter.UTF8);
+	}
+
+	/**
+	 * Reads a date written as a tagged varint.
+	 */
+	private Date readDate() throws IOException {
+		long v = readVarint(in);
+		int tag = (int) (v & 3);
+		long value = unzigzag(v >>> 2);
+		switch (tag) {
+		case ProjectWriter.NO_DATE:
+			return null;
+		case ProjectWriter.DAY:
+			return new Date(midnight((int) value));
+		case ProjectWriter.MILLIS:
+			return new Date(value);
+		default:
+			throw new IOException("Corrupt portfolio file: unknown date tag " + tag);
+		}
+	}
+
+	/**
+	 * @param day	an epoch day
+	 * @return the milliseconds of its local midnight
+	 */
+	private long midnight(int day) {
+		Long ms = midnights.get(day);
+		if (ms == null) {
+			ms = Project.fromEpochDay(day).getTime();
+			midnights.put(day, ms);
+		}
+		return ms;
+	}
+
+	/**
+	 * Reads a date written by ProjectWriter.writeInstant, or any other tagged date.
+	 */
+	static Date readInstant(DataInput in) throws IOException {
+		long v = readVarint(in);
+		int tag = (int) (v & 3);
+		long value = unzigzag(v >>> 2);
+		switch (tag) {
+		case ProjectWriter.NO_DATE:
+			return null;
+		case ProjectWriter.DAY:
+			return Project.fromEpochDay((int) value);
+		case ProjectWriter.MILLIS:
+			return new Date(value);
+		default:
+			throw new IOException("Corrupt portfolio file: unknown date tag " + tag);
+		}
+	}
+
+	/**
+	 * Reads a String written by ProjectWriter.writeString.
+	 */
+	static String readString(DataInput in) throws IOException {
+		long n = readVarint(in);
+		if (n == 0) {
+			return null;
+		}
+		if (n - 1 > Integer.MAX_VALUE) {
+			throw new IOException("Corrupt portfolio file: string of " + (n - 1) + " bytes");
+		}
+		byte[] b = new byte[(int) (n - 1)];
+		in.readFully(b);
+		return new String(b, ProjectWriter.UTF8);
+	}
+
+	/**
+	 * Reads an unsigned varint written by ProjectWriter.
+	 */
+	static long readVarint(DataInput in) throws IOException {
+		long v = 0;
+		for (int shift=0; shift<64; shift+=7) {
+			int b = in.readUnsignedByte();
+			v |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return v;
+			}
+		}
+		throw new IOException("Corrupt portfolio file: varint too long");
+	}
+
+	private static long unzigzag(long v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+}
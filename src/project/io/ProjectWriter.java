@@ -0,0 +1,394 @@
+package project.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import project.logic.*;
+
+/**
+ * A ProjectWriter writes Project objects to a stream in the compact binary portfolio format, one at a time.<br>
+ * The stream starts with a header holding the MAGIC bytes, the format VERSION, a flags byte and, for
+ * TAGGED files, a tag identifying the snapshot, followed by one record per project and an end marker with the number of records, which the reader checks.
+ * Each record holds a type byte and the project fields:
+ * <ul>
+ * <li>Codes and names are UTF-8 Strings preceded by their length as a varint.</li>
+ * <li>Clients are dictionary encoded: the first time a client is written it gets the next id and its
+ * String follows, later records only write the id as a varint.</li>
+ * <li>Dates are written as a varint: local midnights, as entered in the application, take the epoch day
+ * (3 bytes for current dates); other instants take the milliseconds, so no date is ever rounded.</li>
+ * <li>Budgets, total costs and completions are written at fixed width, as in DataOutputStream.</li>
+ * </ul>
+ * Since version 2 the end marker is followed by a trailer that lets MappedProjectFile find any record
+ * without reading the ones before it: the offsets of the client Strings by id, the offsets of the records
+ * sorted by code, and the positions in that order of the OngoingProjects and of the FinishedProjects.
+ * The file ends with a fixed footer holding the offset of the trailer and the MAGIC bytes. Readers of
+ * the records alone stop at the end marker.<br>
+ * Unlike serialization, no class descriptors are written, so a portfolio takes a fraction of the space
+ * of an ObjectOutputStream and is written several times faster.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see ProjectReader
+ * @see MappedProjectFile
+ * @see ProjectIO#save
+ */
+public class ProjectWriter {
+
+	/** Bytes every file in this format starts with */
+	static final byte[] MAGIC = {'J', 'P', 'R', 'J'};
+	/** Version of the format written */
+	static final int VERSION = 2;
+	/** Record type for OngoingProjects */
+	static final int ONGOING = 0;
+	/** Record type for FinishedProjects */
+	static final int FINISHED = 1;
+	/** Marks the end of the records */
+	static final int END = 0xFF;
+	/** Header flag of files whose header holds a tag identifying the snapshot */
+	static final int TAGGED = 1;
+	/** Date tags, kept in the two lowest bits of an encoded date */
+	static final int NO_DATE = 0;
+	static final int DAY = 1;
+	static final int MILLIS = 2;
+	/** Charset of the Strings */
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	/** Size of the output buffer */
+	static final int BUFFER = 64 * 1024;
+	/** Size in bytes of the footer: the offset of the trailer and the MAGIC bytes */
+	static final int FOOTER = 8 + 4;
+
+	/** Stream receiving the records */
+	private DataOutputStream out;
+	/** Counts the bytes written, giving the offset of each record */
+	private Counter counter;
+	/** Ids of the clients written so far */
+	private HashMap<String, Integer> clients = new HashMap<String, Integer>();
+	/** Whether a null client has been given an id, and which */
+	private int nullClient = -1;
+	/** Milliseconds of the local midnight of each epoch day seen, as computed by Project.fromEpochDay */
+	private HashMap<Integer, Long> midnights = new HashMap<Integer, Long>();
+	/** Offsets of the client Strings, by id */
+	private ArrayList<Long> clientOffsets = new ArrayList<Long>();
+	/** Offsets of the records, in the order they were written */
+	private long[] offsets = new long[64];
+	/** Codes of the records, in the order they were written */
+	private ArrayList<String> codes = new ArrayList<String>();
+	/** true for the records of OngoingProjects */
+	private boolean[] ongoing = new boolean[64];
+	/** Number of records written */
+	private int count;
+	private boolean finished;
+
+	/**
+	 * Creates a writer and writes the header to the stream.
+	 * @param os	the OutputStream to write to. It is buffered by the writer
+	 * @throws IOException when the header cannot be written
+	 */
+	public ProjectWriter(OutputStream os) throws IOException {
+		this(os, 0);
+	}
+
+	/**
+	 * Creates a writer and writes the header to the stream, tagging the file.
+	 * @param os	the OutputStream to write to. It is buffered by the writer
+	 * @param tag	a Long identifying this snapshot of the portfolio, or 0 for none
+	 * @throws IOException when the header cannot be written
+	 * @see ProjectReader#getTag()
+	 */
+	public ProjectWriter(OutputStream os, long tag) throws IOException {
+		counter = new Counter(new BufferedOutputStream(os, BUFFER));
+		out = new DataOutputStream(counter);
+		out.write(MAGIC);
+		out.writeByte(VERSION);
+		out.writeByte(tag == 0 ? 0 : TAGGED);
+		if (tag != 0) {
+			out.writeLong(tag);
+		}
+	}
+
+	/**
+	 * Writes a project. Only OngoingProjects and FinishedProjects can be written.
+	 * @param p	the Project object to write
+	 * @throws IOException when the record cannot be written
+	 * @throws IllegalArgumentException when the project is of another type
+	 */
+	public void write(Project p) throws IOException, IllegalArgumentException {
+		if (count == offsets.length) {
+			offsets = Arrays.copyOf(offsets, count * 2);
+			ongoing = Arrays.copyOf(ongoing, count * 2);
+		}
+		offsets[count] = counter.written;
+		ongoing[count] = p instanceof OngoingProject;
+		if (p instanceof OngoingProject) {
+			OngoingProject op = (OngoingProject) p;
+			out.writeByte(ONGOING);
+			writeCommon(p);
+			writeDate(op.getDeadline());
+			out.writeDouble(op.getBudget());
+			out.writeInt(op.getCompletion());
+		} else if (p instanceof FinishedProject) {
+			FinishedProject fp = (FinishedProject) p;
+			out.writeByte(FINISHED);
+			writeCommon(p);
+			writeDate(fp.getEndDate());
+			out.writeDouble(fp.getTotalCost());
+		} else {
+			throw new IllegalArgumentException("Unknown project type: " + p);
+		}
+		codes.add(p.getCode());
+		count++;
+	}
+
+	/**
+	 * Writes several projects.
+	 * @param projects	a List of Project objects
+	 * @throws IOException when a record cannot be written
+	 */
+	public void writeAll(List<? extends Project> projects) throws IOException {
+		for (int i=0; i<projects.size(); i++) {
+			write(projects.get(i));
+		}
+	}
+
+	/** @return the number of projects written */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Writes the end marker, the trailer and the footer, and flushes them to the stream without closing it,
+	 * so that the caller can force the file to disk.
+	 * @throws IOException when the stream cannot be written
+	 */
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		out.writeByte(END);
+		writeVarint(out, count);
+		writeTrailer();
+		out.flush();
+	}
+
+	/**
+	 * Finishes the file and closes the stream.
+	 * @throws IOException when the stream cannot be written or closed
+	 */
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the tables locating the clients and the records, and the footer locating the tables.
+	 */
+	private void writeTrailer() throws IOException {
+		long trailer = counter.written;
+		out.writeInt(clientOffsets.size());
+		for (int i=0; i<clientOffsets.size(); i++) {
+			out.writeLong(clientOffsets.get(i));
+		}
+
+		int[] order = codeOrder();
+		int ongoingCount = 0;
+		out.writeInt(count);
+		for (int i=0; i<count; i++) {
+			out.writeLong(offsets[order[i]]);
+			if (ongoing[order[i]]) {
+				ongoingCount++;
+			}
+		}
+		out.writeInt(ongoingCount);
+		for (int i=0; i<count; i++) {
+			if (ongoing[order[i]]) {
+				out.writeInt(i);
+			}
+		}
+		out.writeInt(count - ongoingCount);
+		for (int i=0; i<count; i++) {
+			if (!ongoing[order[i]]) {
+				out.writeInt(i);
+			}
+		}
+
+		out.writeLong(trailer);
+		out.write(MAGIC);
+	}
+
+	/**
+	 * Sorts the records by code, ignoring case as Project.compareTo does. Records with the same code
+	 * keep the order they were written in.
+	 * @return the positions of the records in the order written, sorted by code
+	 */
+	private int[] codeOrder() {
+		int[] order = new int[count];
+		boolean sorted = true;
+		for (int i=0; i<count; i++) {
+			order[i] = i;
+			if (i > 0 && codes.get(i - 1).compareToIgnoreCase(codes.get(i)) > 0) {
+				sorted = false;
+			}
+		}
+		// Portfolios are saved sorted, so the sort is rarely needed
+		if (!sorted) {
+			Integer[] boxed = new Integer[count];
+			for (int i=0; i<count; i++) {
+				boxed[i] = i;
+			}
+			Arrays.sort(boxed, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return codes.get(a).compareToIgnoreCase(codes.get(b));
+				}
+			});
+			for (int i=0; i<count; i++) {
+				order[i] = boxed[i];
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Writes the fields shared by every project: code, name, client and start date.
+	 */
+	private void writeCommon(Project p) throws IOException {
+		writeString(out, p.getCode());
+		writeString(out, p.getName());
+		writeClient(p.getClient());
+		writeDate(p.getStartDate());
+	}
+
+	/**
+	 * Writes the dictionary id of a client, followed by the client the first time it is written.
+	 * The id is written plus one, 0 meaning a new entry follows.
+	 */
+	private void writeClient(String c) throws IOException {
+		int id = c == null ? nullClient : lookup(c);
+		if (id >= 0) {
+			writeVarint(out, id + 1);
+			return;
+		}
+		writeVarint(out, 0);
+		clientOffsets.add(counter.written);
+		writeString(out, c);
+		id = clients.size() + (nullClient >= 0 ? 1 : 0);
+		if (c == null) {
+			nullClient = id;
+		} else {
+			clients.put(c, id);
+		}
+	}
+
+	private int lookup(String c) {
+		Integer id = clients.get(c);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Writes a String as its UTF-8 length plus one, 0 meaning null, followed by its bytes.
+	 */
+	static void writeString(DataOutput out, String s) throws IOException {
+		if (s == null) {
+			writeVarint(out, 0);
+			return;
+		}
+		byte[] b = s.getBytes(UTF8);
+		writeVarint(out, b.length + 1L);
+		out.write(b);
+	}
+
+	/**
+	 * Writes a date as a tagged varint: the epoch day for local midnights, the milliseconds otherwise.
+	 */
+	private void writeDate(Date d) throws IOException {
+		if (d == null) {
+			writeVarint(out, NO_DATE);
+			return;
+		}
+		int day = Project.toEpochDay(d);
+		if (d.getTime() == midnight(day)) {
+			writeVarint(out, zigzag(day) << 2 | DAY);
+		} else {
+			writeVarint(out, zigzag(d.getTime()) << 2 | MILLIS);
+		}
+	}
+
+	/**
+	 * Writes a date as a tagged varint holding its milliseconds, for records written on their own.
+	 */
+	static void writeInstant(DataOutput out, Date d) throws IOException {
+		if (d == null) {
+			writeVarint(out, NO_DATE);
+		} else {
+			writeVarint(out, zigzag(d.getTime()) << 2 | MILLIS);
+		}
+	}
+
+	/**
+	 * @param day	an epoch day
+	 * @return the milliseconds of its local midnight
+	 */
+	private long midnight(int day) {
+		Long ms = midnights.get(day);
+		if (ms == null) {
+			ms = Project.fromEpochDay(day).getTime();
+			midnights.put(day, ms);
+		}
+		return ms;
+	}
+
+	/**
+	 * Writes an unsigned varint: 7 bits per byte, lowest first, the high bit set on every byte but the last.
+	 */
+	static void writeVarint(DataOutput out, long v) throws IOException {
+		while ((v & ~0x7FL) != 0) {
+			out.writeByte((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.writeByte((int) v);
+	}
+
+	/**
+	 * Maps signed values to unsigned ones so that small negative values stay small.
+	 */
+	static long zigzag(long v) {
+		return (v << 1) ^ (v >> 63);
+	}
+
+	/**
+	 * Counts the bytes written through it.
+	 */
+	private static class Counter extends FilterOutputStream {
+		long written;
+
+		Counter(OutputStream os) {
+			super(os);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			written++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			written += len;
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package project.logic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Secondary index of a Portfolio from normalised client names to the projects of each client.<br>
+ * Besides the projects, each client entry keeps running totals of the budgets and total costs, so
+ * per-client counts and totals cost O(1) and per-client listings cost O(result size). The client and the
+ * amount each project was indexed with are kept, so a project edited in place is still removed from the
+ * right entry with the right amount.
+ * Client names are normalised by trimming them, collapsing inner whitespace and ignoring case.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see Portfolio
+ */
+class ClientIndex {
+
+	/** Client entries by normalised client name */
+	private HashMap<String, Entry> clients = new HashMap<String, Entry>();
+	/** Normalised client name each indexed project was added under */
+	private IdentityHashMap<Project, String> keys = new IdentityHashMap<Project, String>();
+
+	/**
+	 * Adds a project to the entry of its client.
+	 * @param p	the Project object to index
+	 */
+	void add(Project p) {
+		if (keys.containsKey(p)) {
+			return;
+		}
+		String key = normalise(p.getClient());
+		Entry e = clients.get(key);
+		if (e == null) {
+			e = new Entry();
+			clients.put(key, e);
+		}
+		e.add(p);
+		keys.put(p, key);
+	}
+
+	/**
+	 * Removes a project from the entry of its client.
+	 * @param p	the Project object to remove
+	 */
+	void remove(Project p) {
+		String key = keys.remove(p);
+		if (key == null) {
+			return;
+		}
+		Entry e = clients.get(key);
+		e.remove(p);
+		if (e.projects.isEmpty()) {
+			clients.remove(key);
+		}
+	}
+
+	/** Removes every project from the index */
+	void clear() {
+		clients.clear();
+		keys.clear();
+	}
+
+	/**
+	 * @param client	String representing the client
+	 * @return a new List with the projects of the client, in the order they were indexed
+	 */
+	List<Project> projectsOf(String client) {
+		Entry e = clients.get(normalise(client));
+		return e == null ? new ArrayList<Project>() : new ArrayList<Project>(e.projects.keySet());
+	}
+
+	/**
+	 * @param client	String representing the client
+	 * @return the number of projects of the client
+	 */
+	int countOf(String client) {
+		Entry e = clients.get(normalise(client));
+		return e == null ? 0 : e.projects.size();
+	}
+
+	/**
+	 * @param client	String representing the client
+	 * @return the sum of the budgets of the OngoingProjects of the client
+	 */
+	double budgetOf(String client) {
+		Entry e = clients.get(normalise(client));
+		return e == null ? 0 : e.budget;
+	}
+
+	/**
+	 * @param client	String representing the client
+	 * @return the sum of the total costs of the FinishedProjects of the client
+	 */
+	double costOf(String client) {
+		Entry e = clients.get(normalise(client));
+		return e == null ? 0 : e.cost;
+	}
+
+	/** @return the number of distinct normalised clients */
+	int size() {
+		return clients.size();
+	}
+
+	/**
+	 * Normalises a client name so that differences in case and spacing are ignored. It is called for every
+	 * project by the indexes, the statistics and the aggregator, so it collapses whitespace in a single pass
+	 * instead of through a regular expression.
+	 * @param client	String representing the client
+	 * @return the normalised client name
+	 */
+	static String normalise(String client) {
+		if (client == null) {
+			return "";
+		}
+		String s = client.trim();
+		StringBuilder b = null;
+		for (int i=0; i<s.length(); i++) {
+			char c = s.charAt(i);
+			if (!isSpace(c)) {
+				if (b != null) {
+					b.append(c);
+				}
+				continue;
+			}
+			int end = i + 1;
+			while (end < s.length() && isSpace(s.charAt(end))) {
+				end++;
+			}
+			if (c != ' ' || end > i + 1) {
+				if (b == null) {
+					b = new StringBuilder(s.length()).append(s, 0, i);
+				}
+			}
+			if (b != null) {
+				b.append(' ');
+			}
+			i = end - 1;
+		}
+		return (b == null ? s : b.toString()).toUpperCase(Locale.ROOT);
+	}
+
+	/**
+	 * @param c	a character
+	 * @return true if the character is one of the whitespace characters matched by \s in regular expressions
+	 */
+	private static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\013' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * The projects and running totals of one client.
+	 */
+	private static class Entry {
+
+		/** Projects of the client and the amount each one added to the totals. Project does not override equals(Object), so membership is by identity */
+		private LinkedHashMap<Project, Double> projects = new LinkedHashMap<Project, Double>();
+		/** Sum of the budgets of the OngoingProjects */
+		private double budget;
+		/** Sum of the total costs of the FinishedProjects */
+		private double cost;
+
+		/**
+		 * @param p	the Project object to add
+		 */
+		void add(Project p) {
+			double amount = 0;
+			if (p instanceof OngoingProject) {
+				amount = ((OngoingProject) p).getBudget();
+				budget += amount;
+			} else if (p instanceof FinishedProject) {
+				amount = ((FinishedProject) p).getTotalCost();
+				cost += amount;
+			}
+			projects.put(p, amount);
+		}
+
+		/**
+		 * @param p	the Project object to remove
+		 * @return true if the project was in this entry
+		 */
+		boolean remove(Project p) {
+			Double amount = projects.remove(p);
+			if (amount == null) {
+				return false;
+			}
+			if (projects.isEmpty()) {
+				budget = 0;
+				cost = 0;
+			} else if (p instanceof OngoingProject) {
+				budget -= amount;
+			} else if (p instanceof FinishedProject) {
+				cost -= amount;
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,265 @@
+package project.logic;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A CodeSequence hands out unique project codes made of a prefix and a zero padded number, such as "P0042".<br>
+ * Numbers are taken from a shared atomic counter in blocks: each thread reserves a block and then hands
+ * out the codes in it without touching shared state, so concurrent callers never get the same code and
+ * rarely contend. When the sequence is bound to a file, reserving a block also moves the high-water mark
+ * stored in the file while holding a file lock, so several processes sharing the file never reserve the
+ * same numbers either.<br>
+ * Codes are unique but not always consecutive: numbers left in the blocks of other threads, or reserved
+ * before the application was closed, are skipped. Codes seen in the portfolio raise the counter, so the
+ * sequence never hands out a code that is already in use.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see Portfolio#getNewCode()
+ */
+public class CodeSequence {
+
+	/** Default number of codes each thread reserves at a time */
+	public static final int DEFAULT_BLOCK = 16;
+
+	/** Prefix of the codes */
+	private final String prefix;
+	/** Minimum number of digits of the codes */
+	private final int width;
+	/** Number of codes reserved at a time */
+	private final int blockSize;
+	/** Highest number reserved. Numbers up to it are in use or held in a block */
+	private final AtomicLong highWater = new AtomicLong();
+	/** Incremented when the sequence is reset, bound or raised past a code in use, so that blocks reserved before are dropped */
+	private final AtomicInteger generation = new AtomicInteger();
+	/** Block of each thread: next number, end of the block (excluded) and generation */
+	private final ThreadLocal<long[]> block = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[] {0, 0, -1};
+		}
+	};
+	/** File holding the high-water mark shared with other processes, or null */
+	private volatile File store;
+
+	/**
+	 * Creates a sequence of codes in the format "P####", reserving DEFAULT_BLOCK codes at a time.
+	 */
+	public CodeSequence() {
+		this("P", 4, DEFAULT_BLOCK);
+	}
+
+	/**
+	 * Creates a sequence of codes.
+	 * @param p	String representing the prefix of the codes
+	 * @param w	an Integer representing the minimum number of digits of the codes
+	 * @param b	an Integer representing the number of codes each thread reserves at a time
+	 * @throws IllegalArgumentException when the block size is not positive
+	 */
+	public CodeSequence(String p, int w, int b) throws IllegalArgumentException {
+		if (b < 1) {
+			throw new IllegalArgumentException("Block size must be positive: " + b);
+		}
+		prefix = p;
+		width = w;
+		blockSize = b;
+	}
+
+	/**
+	 * Returns a new unique code.
+	 * @return a String with the prefix followed by the number, padded with zeros
+	 * @throws IllegalStateException when the file holding the high-water mark cannot be updated
+	 */
+	public String next() throws IllegalStateException {
+		long[] b = block.get();
+		if (b[0] >= b[1] || b[2] != generation.get()) {
+			int g = generation.get();
+			b[0] = reserve(blockSize);
+			b[1] = b[0] + blockSize;
+			b[2] = g;
+		}
+		return format(b[0]++);
+	}
+
+	/**
+	 * Reserves consecutive numbers that no other thread or process will get.
+	 * @param n	an Integer representing the quantity of numbers to reserve
+	 * @return the first number reserved
+	 * @throws IllegalStateException when the file holding the high-water mark cannot be updated
+	 */
+	public long reserve(int n) throws IllegalStateException {
+		File f = store;
+		if (f == null) {
+			return highWater.getAndAdd(n) + 1;
+		}
+		synchronized (this) {
+			try {
+				RandomAccessFile raf = new RandomAccessFile(f, "rw");
+				try {
+					FileLock lock = raf.getChannel().lock();
+					try {
+						long first = Math.max(read(raf), highWater.get()) + 1;
+						write(raf, first + n - 1);
+						// Blocks reserved before are still recorded in the file and remain valid
+						raise(first + n - 1, false);
+						return first;
+					} finally {
+						lock.release();
+					}
+				} finally {
+					raf.close();
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot update " + f, e);
+			}
+		}
+	}
+
+	/**
+	 * Makes sure a code in use is never handed out, raising the counter if needed.
+	 * Codes that do not have the prefix followed by digits are ignored.
+	 * @param code	String representing a code in use
+	 */
+	public void observe(String code) {
+		long n = parse(code);
+		if (n > highWater.get()) {
+			// Codes continue after the highest one in use, as they always have
+			raise(n, true);
+		}
+	}
+
+	/**
+	 * Forgets every number reserved and unbinds the sequence from its file.
+	 */
+	public void reset() {
+		store = null;
+		highWater.set(0);
+		generation.incrementAndGet();
+	}
+
+	/** @return the highest number reserved */
+	public long getHighWater() {
+		return highWater.get();
+	}
+
+	/**
+	 * Shares the sequence with other processes through a file. The high-water mark in the file, if any,
+	 * raises the counter, and every block reserved from now on is recorded in it.
+	 * @param f	the File holding the high-water mark. It is created when the first block is reserved
+	 * @throws IOException when the file exists and cannot be read
+	 */
+	public synchronized void bind(File f) throws IOException {
+		store = null;
+		if (f.exists()) {
+			RandomAccessFile raf = new RandomAccessFile(f, "r");
+			try {
+				raise(read(raf), false);
+			} finally {
+				raf.close();
+			}
+		}
+		// Blocks reserved before are not recorded in the file, so other processes could reserve them too
+		generation.incrementAndGet();
+		store = f;
+	}
+
+	/**
+	 * Stores the high-water mark in a file, keeping the value already there if it is higher.
+	 * @param f	the File to write
+	 * @throws IOException when the file cannot be written
+	 */
+	public synchronized void save(File f) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(f, "rw");
+		try {
+			FileLock lock = raf.getChannel().lock();
+			try {
+				write(raf, Math.max(read(raf), highWater.get()));
+			} finally {
+				lock.release();
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Raises the highest number reserved.
+	 * @param n	the new highest number, ignored if it is lower than the current one
+	 * @param drop	true to drop the blocks reserved before
+	 */
+	private void raise(long n, boolean drop) {
+		long current = highWater.get();
+		while (n > current) {
+			if (highWater.compareAndSet(current, n)) {
+				if (drop) {
+					generation.incrementAndGet();
+				}
+				return;
+			}
+			current = highWater.get();
+		}
+	}
+
+	/**
+	 * @param n	a number of the sequence
+	 * @return the code for the number
+	 */
+	private String format(long n) {
+		StringBuilder sb = new StringBuilder(prefix);
+		String digits = Long.toString(n);
+		for (int i=digits.length(); i<width; i++) {
+			sb.append('0');
+		}
+		return sb.append(digits).toString();
+	}
+
+	/**
+	 * @param code	String representing a code, can be null
+	 * @return the number of the code, or 0 if it is not a code of this sequence
+	 */
+	private long parse(String code) {
+		if (code == null || code.length() <= prefix.length() || code.length() > prefix.length() + 18
+				|| !code.regionMatches(true, 0, prefix, 0, prefix.length())) {
+			return 0;
+		}
+		long n = 0;
+		for (int i=prefix.length(); i<code.length(); i++) {
+			char c = code.charAt(i);
+			if (c < '0' || c > '9') {
+				return 0;
+			}
+			n = n * 10 + (c - '0');
+		}
+		return n;
+	}
+
+	/**
+	 * @return the high-water mark stored in a file, or 0 if it is empty
+	 */
+	private static long read(RandomAccessFile raf) throws IOException {
+		raf.seek(0);
+		String line = raf.length() == 0 ? null : raf.readLine();
+		if (line == null || line.trim().isEmpty()) {
+			return 0;
+		}
+		try {
+			return Long.parseLong(line.trim());
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid high-water mark: " + line, e);
+		}
+	}
+
+	/**
+	 * Replaces the high-water mark stored in a file.
+	 */
+	private static void write(RandomAccessFile raf, long n) throws IOException {
+		raf.seek(0);
+		raf.setLength(0);
+		raf.writeBytes(Long.toString(n) + "\n");
+		raf.getChannel().force(false);
+	}
+}
@@ -0,0 +1,574 @@
+package project.logic;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A ConcurrentPortfolio is a Portfolio that can be shared between threads.<br>
+ * Every method runs under a read/write lock: lookups, counters, listings and queries take the shared
+ * read lock and run in parallel with each other, while initialization, additions, replacements,
+ * removals and the start of a save take the exclusive write lock. A save only holds the lock while it
+ * takes the state to write, not while the file is written. PortfolioListeners are notified while the
+ * write lock is held, and the PortfolioStatistics they update can be read from any thread.<br>
+ * The methods returning lists hand out copies taken under the read lock, so callers can iterate them
+ * while other threads keep editing the portfolio.<br>
+ * Each method is atomic on its own, but positions are not stable between calls: an index returned by
+ * <i>findByCode</i> can be shifted by another thread before it is passed to <i>get</i>, <i>remove</i>
+ * or <i>replaceProject</i>.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see Portfolio
+ */
+public class ConcurrentPortfolio extends Portfolio {
+
+	/** Lock guarding the state inherited from Portfolio */
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	/** Shared lock for read-only operations */
+	private final ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+	/** Exclusive lock for operations that modify the portfolio */
+	private final ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+
+	/** Default constructor. Creates an empty ConcurrentPortfolio object */
+	public ConcurrentPortfolio() {
+		super();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void init(String file) {
+		writeLock.lock();
+		try {
+			super.init(file);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void init(ArrayList<Project> projects) {
+		writeLock.lock();
+		try {
+			super.init(projects);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void initDB() {
+		writeLock.lock();
+		try {
+			super.initDB();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** Returns a copy of the working portfolio, taken under the read lock.
+	 * @return	a new ArrayList&#60;Project&#62; with the projects sorted by code */
+	@Override
+	public ArrayList<Project> getPortfolio() {
+		readLock.lock();
+		try {
+			return new ArrayList<Project>(super.getPortfolio());
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> snapshot() {
+		readLock.lock();
+		try {
+			return super.snapshot();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns a snapshot, since the pass over the projects is made after the lock is released.
+	 * @return	a read-only List&#60;Project&#62; that will not change
+	 */
+	@Override
+	List<Project> scan() {
+		return snapshot();
+	}
+
+	/** Returns a read-only copy of the OngoingProjects, taken under the read lock.
+	 * @return a List containing all the OngoingProjects in the portfolio */
+	@Override
+	public List<Project> getOngoingProjects() {
+		readLock.lock();
+		try {
+			return Collections.unmodifiableList(new ArrayList<Project>(super.getOngoingProjects()));
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** Returns a read-only copy of the FinishedProjects, taken under the read lock.
+	 * @return a List containing all the FinishedProjects in the portfolio */
+	@Override
+	public List<Project> getFinishedProjects() {
+		readLock.lock();
+		try {
+			return Collections.unmodifiableList(new ArrayList<Project>(super.getFinishedProjects()));
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void add(Project p, boolean db) {
+		writeLock.lock();
+		try {
+			super.add(p, db);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Project get(int index) throws IndexOutOfBoundsException {
+		readLock.lock();
+		try {
+			return super.get(index);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int findByCode(String c) {
+		readLock.lock();
+		try {
+			return super.findByCode(c);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int findByCode(String c, int exclude) {
+		readLock.lock();
+		try {
+			return super.findByCode(c, exclude);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int indexOf(Project p) {
+		readLock.lock();
+		try {
+			return super.indexOf(p);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> getProjectsByClient(String client) {
+		readLock.lock();
+		try {
+			return super.getProjectsByClient(client);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getClientProjectCount(String client) {
+		readLock.lock();
+		try {
+			return super.getClientProjectCount(client);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double getClientBudget(String client) {
+		readLock.lock();
+		try {
+			return super.getClientBudget(client);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double getClientTotalCost(String client) {
+		readLock.lock();
+		try {
+			return super.getClientTotalCost(client);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> getProjectsActiveBetween(Date from, Date to) {
+		readLock.lock();
+		try {
+			return super.getProjectsActiveBetween(from, to);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> getDeadlinesBetween(Date from, Date to) {
+		readLock.lock();
+		try {
+			return super.getDeadlinesBetween(from, to);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> getFinishedBetween(Date from, Date to) {
+		readLock.lock();
+		try {
+			return super.getFinishedBetween(from, to);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	int countDeadlinesBetween(Date from, Date to, int bound) {
+		readLock.lock();
+		try {
+			return super.countDeadlinesBetween(from, to, bound);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	int countFinishedBetween(Date from, Date to, int bound) {
+		readLock.lock();
+		try {
+			return super.countFinishedBetween(from, to, bound);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	int countProjectsActiveBetween(Date from, Date to, int bound) {
+		readLock.lock();
+		try {
+			return super.countProjectsActiveBetween(from, to, bound);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> getClosestDeadlines(Date from, int k) {
+		readLock.lock();
+		try {
+			return super.getClosestDeadlines(from, k);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> getHighestTotalCosts(int k) {
+		readLock.lock();
+		try {
+			return super.getHighestTotalCosts(k);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> search(String text) {
+		readLock.lock();
+		try {
+			return super.search(text);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	int estimateSearch(String text) {
+		readLock.lock();
+		try {
+			return super.estimateSearch(text);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> searchRanked(String text, int limit) {
+		readLock.lock();
+		try {
+			return super.searchRanked(text, limit);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void addPortfolioListener(PortfolioListener l) {
+		writeLock.lock();
+		try {
+			super.addPortfolioListener(l);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void removePortfolioListener(PortfolioListener l) {
+		writeLock.lock();
+		try {
+			super.removePortfolioListener(l);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getOngoingCount() {
+		readLock.lock();
+		try {
+			return super.getOngoingCount();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getFinishedCount() {
+		readLock.lock();
+		try {
+			return super.getFinishedCount();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void listProjects() {
+		readLock.lock();
+		try {
+			super.listProjects();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void replaceProject(Project p, int index, boolean db) {
+		writeLock.lock();
+		try {
+			super.replaceProject(p, index, db);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void remove(int index, boolean db) {
+		writeLock.lock();
+		try {
+			super.remove(index, db);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int addAll(Collection<? extends Project> projects, boolean db) {
+		writeLock.lock();
+		try {
+			return super.addAll(projects, db);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int replaceAll(Collection<? extends Project> projects, boolean db) {
+		writeLock.lock();
+		try {
+			return super.replaceAll(projects, db);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int removeAll(Collection<String> codes, boolean db) {
+		writeLock.lock();
+		try {
+			return super.removeAll(codes, db);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	int replaceProjects(List<? extends Project> oldProjects, List<? extends Project> newProjects, boolean db) {
+		writeLock.lock();
+		try {
+			return super.replaceProjects(oldProjects, newProjects, db);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	int removeProjects(Collection<? extends Project> projects, boolean db) {
+		writeLock.lock();
+		try {
+			return super.removeProjects(projects, db);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Takes the state of the portfolio to save under the write lock, since it checkpoints the journal and
+	 * shares the working ArrayList, and returns the task writing it, which runs without any lock.
+	 * @param file	String containing the name of the file where the portfolio should be saved
+	 * @return a Callable&#60;Boolean&#62; writing the file
+	 */
+	@Override
+	public Callable<Boolean> saveTask(String file) {
+		writeLock.lock();
+		try {
+			return super.saveTask(file);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Starts a query over the projects in the portfolio. Each time the query is run, its plan is made
+	 * under the read lock from copies of the indexes and partitions, so the results can be read while
+	 * other threads keep editing the portfolio.
+	 * @return	a new ProjectQuery object returning every project
+	 */
+	@Override
+	public ProjectQuery query() {
+		return new ProjectQuery(this) {
+			@Override
+			public Iterator<Project> iterator() {
+				readLock.lock();
+				try {
+					return super.iterator();
+				} finally {
+					readLock.unlock();
+				}
+			}
+		};
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public PortfolioStatistics getStatistics() {
+		readLock.lock();
+		try {
+			return super.getStatistics();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setCompression(int codec) {
+		writeLock.lock();
+		try {
+			super.setCompression(codec);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getCompression() {
+		readLock.lock();
+		try {
+			return super.getCompression();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close() {
+		writeLock.lock();
+		try {
+			super.close();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getNewCode() {
+		readLock.lock();
+		try {
+			return super.getNewCode();
+		} finally {
+			readLock.unlock();
+		}
+	}
+}
@@ -0,0 +1,410 @@
+package project.logic;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Index of a Portfolio over the project dates, answering range and overlap queries without scanning
+ * the whole portfolio.<br>
+ * Deadlines of OngoingProjects and end dates of FinishedProjects are kept in sorted maps, so range
+ * queries over them cost O(log n + k). The period each project is active, from its start date to its
+ * end date (or with no end while it is ongoing), is kept in an interval tree: a treap ordered by start
+ * date where every node also stores the latest end date below it, so subtrees that cannot overlap a
+ * window are skipped.<br>
+ * Dates are compared as epoch days and all the bounds are inclusive. The dates each project was indexed
+ * with are remembered, so a project is correctly removed even if its dates were changed in place.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see Portfolio
+ * @see Project#toEpochDay(Date)
+ */
+class DateIndex {
+
+	/** End of the active period of projects that have not finished */
+	private static final int OPEN = Integer.MAX_VALUE;
+
+	/** Nodes of the indexed projects */
+	private IdentityHashMap<Project, Node> nodes = new IdentityHashMap<Project, Node>();
+	/** OngoingProjects by deadline */
+	private TreeMap<Integer, LinkedHashSet<Project>> deadlines = new TreeMap<Integer, LinkedHashSet<Project>>();
+	/** FinishedProjects by end date */
+	private TreeMap<Integer, LinkedHashSet<Project>> endDates = new TreeMap<Integer, LinkedHashSet<Project>>();
+	/** Root of the interval treap */
+	private Node root;
+	/** Source of the treap priorities */
+	private Random random = new Random(0x5eed);
+	/** Sequence used to order projects sharing a start date */
+	private long sequence;
+
+	/**
+	 * Adds a project to the index.
+	 * @param p	the Project object to index
+	 */
+	void add(Project p) {
+		if (nodes.containsKey(p)) {
+			return;
+		}
+		Node n = new Node();
+		n.project = p;
+		n.start = Project.toEpochDay(p.getStartDate());
+		n.seq = sequence++;
+		n.priority = random.nextInt();
+		if (p instanceof OngoingProject) {
+			n.deadline = Project.toEpochDay(((OngoingProject) p).getDeadline());
+			n.end = OPEN;
+			if (n.deadline != Project.NO_DATE) {
+				put(deadlines, n.deadline, p);
+			}
+		} else {
+			n.deadline = Project.NO_DATE;
+			int end = Project.toEpochDay(((FinishedProject) p).getEndDate());
+			n.end = end == Project.NO_DATE ? OPEN : end;
+			if (end != Project.NO_DATE) {
+				put(endDates, end, p);
+			}
+		}
+		n.maxEnd = n.end;
+		nodes.put(p, n);
+		root = insert(root, n);
+	}
+
+	/**
+	 * Removes a project from the index.
+	 * @param p	the Project object to remove
+	 */
+	void remove(Project p) {
+		Node n = nodes.remove(p);
+		if (n == null) {
+			return;
+		}
+		if (n.deadline != Project.NO_DATE) {
+			take(deadlines, n.deadline, p);
+		}
+		if (!(p instanceof OngoingProject) && n.end != OPEN) {
+			take(endDates, n.end, p);
+		}
+		root = delete(root, n);
+	}
+
+	/** Removes every project from the index */
+	void clear() {
+		nodes.clear();
+		deadlines.clear();
+		endDates.clear();
+		root = null;
+	}
+
+	/**
+	 * @param from	first day of the range
+	 * @param to	last day of the range
+	 * @return the OngoingProjects with a deadline in the range, by deadline
+	 */
+	List<Project> deadlinesBetween(int from, int to) {
+		return collect(deadlines, from, to);
+	}
+
+	/**
+	 * @param from	first day to consider
+	 * @param k	maximum number of projects to return
+	 * @return the first <i>k</i> OngoingProjects with a deadline on or after the day, by deadline, or an
+	 * empty list if <i>k</i> is not positive
+	 */
+	List<Project> firstDeadlines(int from, int k) {
+		ArrayList<Project> result = new ArrayList<Project>();
+		if (k <= 0) {
+			return result;
+		}
+		for (LinkedHashSet<Project> set : deadlines.tailMap(from, true).values()) {
+			for (Project p : set) {
+				if (result.size() == k) {
+					return result;
+				}
+				result.add(p);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param from	first day of the range
+	 * @param to	last day of the range
+	 * @return the FinishedProjects with an end date in the range, by end date
+	 */
+	List<Project> finishedBetween(int from, int to) {
+		return collect(endDates, from, to);
+	}
+
+	/**
+	 * @param from	first day of the window
+	 * @param to	last day of the window
+	 * @return the projects active at some point of the window, by start date
+	 */
+	List<Project> activeBetween(int from, int to) {
+		ArrayList<Project> result = new ArrayList<Project>();
+		if (from <= to) {
+			overlap(root, from, to, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Counts the OngoingProjects with a deadline in a range, without listing them.
+	 * @param from	first day of the range
+	 * @param to	last day of the range
+	 * @param bound	count at which counting stops
+	 * @return the number of projects, or <i>bound</i> if there are at least that many
+	 */
+	int countDeadlines(int from, int to, int bound) {
+		return count(deadlines, from, to, bound);
+	}
+
+	/**
+	 * Counts the FinishedProjects with an end date in a range, without listing them.
+	 * @param from	first day of the range
+	 * @param to	last day of the range
+	 * @param bound	count at which counting stops
+	 * @return the number of projects, or <i>bound</i> if there are at least that many
+	 */
+	int countFinished(int from, int to, int bound) {
+		return count(endDates, from, to, bound);
+	}
+
+	/**
+	 * Counts the projects active at some point of a window, without listing them.
+	 * @param from	first day of the window
+	 * @param to	last day of the window
+	 * @param bound	count at which counting stops
+	 * @return the number of projects, or <i>bound</i> if there are at least that many
+	 */
+	int countActive(int from, int to, int bound) {
+		if (from > to || bound <= 0) {
+			return 0;
+		}
+		int[] count = new int[1];
+		countOverlap(root, from, to, bound, count);
+		return count[0];
+	}
+
+	/** @return the number of projects in the index */
+	int size() {
+		return nodes.size();
+	}
+
+	/**
+	 * Adds a project to the set stored under a day in a sorted map.
+	 */
+	private static void put(TreeMap<Integer, LinkedHashSet<Project>> map, int day, Project p) {
+		LinkedHashSet<Project> set = map.get(day);
+		if (set == null) {
+			set = new LinkedHashSet<Project>();
+			map.put(day, set);
+		}
+		set.add(p);
+	}
+
+	/**
+	 * Removes a project from the set stored under a day in a sorted map.
+	 */
+	private static void take(TreeMap<Integer, LinkedHashSet<Project>> map, int day, Project p) {
+		LinkedHashSet<Project> set = map.get(day);
+		if (set != null) {
+			set.remove(p);
+			if (set.isEmpty()) {
+				map.remove(day);
+			}
+		}
+	}
+
+	/**
+	 * Lists the projects stored under the days of a range in a sorted map.
+	 */
+	private static List<Project> collect(TreeMap<Integer, LinkedHashSet<Project>> map, int from, int to) {
+		ArrayList<Project> result = new ArrayList<Project>();
+		if (from <= to) {
+			NavigableMap<Integer, LinkedHashSet<Project>> range = map.subMap(from, true, to, true);
+			for (Map.Entry<Integer, LinkedHashSet<Project>> e : range.entrySet()) {
+				result.addAll(e.getValue());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Counts the projects stored under the days of a range in a sorted map, up to a bound.
+	 */
+	private static int count(TreeMap<Integer, LinkedHashSet<Project>> map, int from, int to, int bound) {
+		int n = 0;
+		if (from <= to) {
+			for (LinkedHashSet<Project> set : map.subMap(from, true, to, true).values()) {
+				n += set.size();
+				if (n >= bound) {
+					return bound;
+				}
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Counts the nodes of a subtree whose active period overlaps a window, stopping at a bound.
+	 */
+	private static void countOverlap(Node n, int from, int to, int bound, int[] count) {
+		if (n == null || n.maxEnd < from || count[0] >= bound) {
+			return;
+		}
+		countOverlap(n.left, from, to, bound, count);
+		if (n.start > to || count[0] >= bound) {
+			return;
+		}
+		if (n.end >= from) {
+			count[0]++;
+		}
+		countOverlap(n.right, from, to, bound, count);
+	}
+
+	/**
+	 * Collects the nodes of a subtree whose active period overlaps a window.
+	 */
+	private static void overlap(Node n, int from, int to, List<Project> result) {
+		if (n == null || n.maxEnd < from) {
+			return;
+		}
+		overlap(n.left, from, to, result);
+		if (n.start > to) {
+			return;
+		}
+		if (n.end >= from) {
+			result.add(n.project);
+		}
+		overlap(n.right, from, to, result);
+	}
+
+	/**
+	 * @return true if node <i>a</i> goes before node <i>b</i> in the treap
+	 */
+	private static boolean before(Node a, Node b) {
+		return a.start < b.start || (a.start == b.start && a.seq < b.seq);
+	}
+
+	/**
+	 * Inserts a node in a subtree.
+	 * @return the new root of the subtree
+	 */
+	private static Node insert(Node t, Node n) {
+		if (t == null) {
+			return n;
+		}
+		if (before(n, t)) {
+			t.left = insert(t.left, n);
+			if (t.left.priority > t.priority) {
+				t = rotateRight(t);
+			}
+		} else {
+			t.right = insert(t.right, n);
+			if (t.right.priority > t.priority) {
+				t = rotateLeft(t);
+			}
+		}
+		update(t);
+		return t;
+	}
+
+	/**
+	 * Deletes a node from a subtree.
+	 * @return the new root of the subtree
+	 */
+	private static Node delete(Node t, Node n) {
+		if (t == null) {
+			return null;
+		}
+		if (t == n) {
+			return merge(t.left, t.right);
+		}
+		if (before(n, t)) {
+			t.left = delete(t.left, n);
+		} else {
+			t.right = delete(t.right, n);
+		}
+		update(t);
+		return t;
+	}
+
+	/**
+	 * Joins two subtrees where every node of <i>a</i> goes before every node of <i>b</i>.
+	 * @return the root of the joined tree
+	 */
+	private static Node merge(Node a, Node b) {
+		if (a == null) {
+			return b;
+		}
+		if (b == null) {
+			return a;
+		}
+		if (a.priority > b.priority) {
+			a.right = merge(a.right, b);
+			update(a);
+			return a;
+		}
+		b.left = merge(a, b.left);
+		update(b);
+		return b;
+	}
+
+	private static Node rotateRight(Node t) {
+		Node l = t.left;
+		t.left = l.right;
+		l.right = t;
+		update(t);
+		update(l);
+		return l;
+	}
+
+	private static Node rotateLeft(Node t) {
+		Node r = t.right;
+		t.right = r.left;
+		r.left = t;
+		update(t);
+		update(r);
+		return r;
+	}
+
+	/**
+	 * Recomputes the latest end date below a node.
+	 */
+	private static void update(Node t) {
+		int max = t.end;
+		if (t.left != null && t.left.maxEnd > max) {
+			max = t.left.maxEnd;
+		}
+		if (t.right != null && t.right.maxEnd > max) {
+			max = t.right.maxEnd;
+		}
+		t.maxEnd = max;
+	}
+
+	/**
+	 * A node of the interval treap, also remembering the dates its project was indexed with.
+	 */
+	private static class Node {
+		Project project;
+		/** Start of the active period */
+		int start;
+		/** End of the active period, OPEN if the project has not finished */
+		int end;
+		/** Deadline the project was indexed with, or Project.NO_DATE */
+		int deadline;
+		/** Latest end of the active periods in this subtree */
+		int maxEnd;
+		long seq;
+		int priority;
+		Node left;
+		Node right;
+	}
+}
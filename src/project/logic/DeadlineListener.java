@@ -0,0 +1,23 @@
+package project.logic;
+
+/**
+ * Interface for objects notified by a DeadlineMonitor when the deadlines of OngoingProjects approach and pass.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see DeadlineMonitor
+ */
+public interface DeadlineListener {
+
+	/**
+	 * Invoked when the deadline of a project enters the warning period.
+	 * @param p	the OngoingProject object
+	 * @param daysLeft	an Integer representing the days left until the deadline. 0 means the deadline is today, negative values that it was missed while the monitor was not advanced
+	 */
+	void deadlineApproaching(OngoingProject p, int daysLeft);
+
+	/**
+	 * Invoked the day after the deadline of a project.
+	 * @param p	the OngoingProject object
+	 */
+	void deadlinePassed(OngoingProject p);
+}
@@ -0,0 +1,360 @@
+package project.logic;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A DeadlineMonitor notifies DeadlineListeners when the deadlines of the OngoingProjects of a Portfolio
+ * object approach and pass.<br>
+ * Each OngoingProject gets two timers: one a number of warning days before its deadline and one the day
+ * after it. Timers are kept in a hashed timer wheel with one slot per day: a timer goes to the slot of
+ * its day modulo the size of the wheel, in a doubly linked list, so scheduling and cancelling a timer
+ * cost O(1). Advancing the monitor by one day only visits the timers in that day's slot; timers more
+ * than one turn of the wheel away stay in their slot until their day comes round.<br>
+ * The monitor follows the portfolio as a PortfolioListener, so additions, replacements and removals
+ * reschedule the timers of the projects involved. Timers that are already due when scheduled fire on
+ * the next advance. Time only moves when <i>advanceTo</i> is called, either directly or once a day by
+ * the thread started by <i>start</i>, which wakes up just after each local midnight. Listeners are notified outside the monitor's lock, on the thread
+ * advancing it.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see DeadlineListener
+ * @see PortfolioListener
+ */
+public class DeadlineMonitor implements PortfolioListener {
+
+	/** Number of days covered by one turn of the wheel */
+	private static final int WHEEL_SIZE = 1024;
+
+	/** Slots of the wheel. Each holds a sentinel of a circular list of timers */
+	private Timer[] wheel = new Timer[WHEEL_SIZE];
+	/** Timers already due, fired on the next advance */
+	private Timer due = new Timer(null, 0, false);
+	/** Timers of each project: the warning and the deadline timer */
+	private IdentityHashMap<Project, Timer[]> timers = new IdentityHashMap<Project, Timer[]>();
+	/** Number of days before a deadline the warning is given */
+	private int warningDays;
+	/** Epoch day the monitor has reached */
+	private int today;
+	/** Number of timers linked in the wheel or the due list */
+	private int pending;
+	/** Objects notified of approaching and passed deadlines */
+	private CopyOnWriteArrayList<DeadlineListener> listeners = new CopyOnWriteArrayList<DeadlineListener>();
+	/** Thread advancing the monitor every day, or null */
+	private ScheduledExecutorService clock;
+
+	/**
+	 * Creates a monitor for the deadlines of a Portfolio object, starting today.
+	 * @param p	the Portfolio object to follow
+	 * @param warning	an Integer representing how many days before a deadline the warning is given
+	 */
+	public DeadlineMonitor(Portfolio p, int warning) {
+		this(p, warning, Project.toEpochDay(new Date()));
+	}
+
+	/**
+	 * Creates a monitor for the deadlines of a Portfolio object, starting on a given day.
+	 * @param p	the Portfolio object to follow
+	 * @param warning	an Integer representing how many days before a deadline the warning is given
+	 * @param day	an Integer representing the epoch day the monitor starts on
+	 */
+	public DeadlineMonitor(Portfolio p, int warning, int day) {
+		for (int i=0; i<WHEEL_SIZE; i++) {
+			wheel[i] = new Timer(null, 0, false);
+		}
+		warningDays = warning;
+		today = day;
+		portfolioReset(p);
+		p.addPortfolioListener(this);
+	}
+
+	/**
+	 * Registers an object to be notified of approaching and passed deadlines.
+	 * @param l	the DeadlineListener to add
+	 */
+	public void addDeadlineListener(DeadlineListener l) {
+		listeners.add(l);
+	}
+
+	/**
+	 * Stops notifying an object.
+	 * @param l	the DeadlineListener to remove
+	 */
+	public void removeDeadlineListener(DeadlineListener l) {
+		listeners.remove(l);
+	}
+
+	/** @return the epoch day the monitor has reached */
+	public synchronized int getDay() {
+		return today;
+	}
+
+	/** @return the number of timers waiting to fire */
+	public synchronized int getPendingCount() {
+		return pending;
+	}
+
+	/**
+	 * Moves the monitor to a later day, firing the timers due up to that day.
+	 * Days before the current one are ignored.
+	 * @param day	an Integer representing the epoch day to move to
+	 */
+	public void advanceTo(int day) {
+		ArrayList<Timer> fired = new ArrayList<Timer>();
+		int reached;
+		synchronized (this) {
+			collect(due, Integer.MAX_VALUE, fired);
+			if (day > today) {
+				if ((long) day - today >= WHEEL_SIZE) {
+					// A full turn or more: every slot is visited once
+					for (int i=0; i<WHEEL_SIZE; i++) {
+						collect(wheel[i], day, fired);
+					}
+				} else {
+					for (int d=today+1; d<=day; d++) {
+						collect(wheel[slot(d)], d, fired);
+					}
+				}
+				today = day;
+			}
+			reached = today;
+		}
+		// Slots are visited in day order only when advancing less than a full turn
+		Collections.sort(fired, new Comparator<Timer>() {
+			@Override
+			public int compare(Timer a, Timer b) {
+				return a.day < b.day ? -1 : (a.day == b.day ? 0 : 1);
+			}
+		});
+		for (Timer t : fired) {
+			for (DeadlineListener l : listeners) {
+				if (t.passed) {
+					l.deadlinePassed(t.project);
+				} else {
+					l.deadlineApproaching(t.project, t.day + warningDays - reached);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts a daemon thread advancing the monitor to the current day, now and after every midnight.
+	 */
+	public synchronized void start() {
+		if (clock != null) {
+			return;
+		}
+		clock = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "DeadlineMonitor");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		final ScheduledExecutorService executor = clock;
+		// Each tick schedules the next one for the following midnight, as days are not all 24 hours long
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				advanceTo(Project.toEpochDay(new Date()));
+				synchronized (DeadlineMonitor.this) {
+					if (clock == executor) {
+						executor.schedule(this, untilMidnight(System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Returns the time left until just after the next local midnight.
+	 * @param now	the current time in milliseconds
+	 * @return the number of milliseconds to wait
+	 */
+	static long untilMidnight(long now) {
+		Calendar midnight = Calendar.getInstance();
+		midnight.setTimeInMillis(now);
+		midnight.add(Calendar.DAY_OF_MONTH, 1);
+		midnight.set(Calendar.HOUR_OF_DAY, 0);
+		midnight.set(Calendar.MINUTE, 0);
+		midnight.set(Calendar.SECOND, 1);
+		midnight.set(Calendar.MILLISECOND, 0);
+		return midnight.getTimeInMillis() - now;
+	}
+
+	/** Stops the thread started by <i>start</i> */
+	public synchronized void stop() {
+		if (clock != null) {
+			clock.shutdownNow();
+			clock = null;
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void projectAdded(Project p) {
+		schedule(p);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void projectReplaced(Project oldP, Project p) {
+		cancel(oldP);
+		schedule(p);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void projectRemoved(Project p) {
+		cancel(p);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void batchStarted(Portfolio p) {
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void batchFinished(Portfolio p) {
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void portfolioReset(Portfolio p) {
+		for (Timer[] t : timers.values()) {
+			unlink(t[0]);
+			unlink(t[1]);
+		}
+		timers.clear();
+		for (Project project : p.getOngoingProjects()) {
+			schedule(project);
+		}
+	}
+
+	/**
+	 * Schedules the timers of an OngoingProject with a deadline. Other projects are ignored.
+	 * @param p	the Project object
+	 */
+	private void schedule(Project p) {
+		if (!(p instanceof OngoingProject) || timers.containsKey(p)) {
+			return;
+		}
+		int deadline = Project.toEpochDay(((OngoingProject) p).getDeadline());
+		if (deadline == Project.NO_DATE) {
+			return;
+		}
+		Timer[] t = new Timer[2];
+		if (deadline >= today) {
+			t[0] = new Timer((OngoingProject) p, deadline - warningDays, false);
+			link(t[0]);
+		}
+		t[1] = new Timer((OngoingProject) p, deadline + 1, true);
+		link(t[1]);
+		timers.put(p, t);
+	}
+
+	/**
+	 * Cancels the pending timers of a project.
+	 * @param p	the Project object
+	 */
+	private void cancel(Project p) {
+		Timer[] t = timers.remove(p);
+		if (t != null) {
+			unlink(t[0]);
+			unlink(t[1]);
+		}
+	}
+
+	/**
+	 * Adds a timer to the slot of its day, or to the due list if its day has been reached.
+	 */
+	private void link(Timer t) {
+		Timer head = t.day <= today ? due : wheel[slot(t.day)];
+		t.prev = head.prev;
+		t.next = head;
+		head.prev.next = t;
+		head.prev = t;
+		pending++;
+	}
+
+	/**
+	 * Takes a timer out of its list. Does nothing for null or unlinked timers.
+	 */
+	private void unlink(Timer t) {
+		if (t != null && t.next != null) {
+			t.prev.next = t.next;
+			t.next.prev = t.prev;
+			t.prev = null;
+			t.next = null;
+			pending--;
+		}
+	}
+
+	/**
+	 * Takes the timers of a list due on or before a day out of it.
+	 * @param head	the sentinel of the list
+	 * @param day	an Integer representing the epoch day reached
+	 * @param fired	receives the timers taken out
+	 */
+	private void collect(Timer head, int day, List<Timer> fired) {
+		Timer t = head.next;
+		while (t != head) {
+			Timer next = t.next;
+			if (t.day <= day) {
+				unlink(t);
+				Timer[] pair = timers.get(t.project);
+				if (pair != null) {
+					pair[t.passed ? 1 : 0] = null;
+					if (pair[0] == null && pair[1] == null) {
+						timers.remove(t.project);
+					}
+				}
+				fired.add(t);
+			}
+			t = next;
+		}
+	}
+
+	/**
+	 * @param day	an Integer representing an epoch day
+	 * @return the slot of the wheel for the day
+	 */
+	private static int slot(int day) {
+		return day & (WHEEL_SIZE - 1);
+	}
+
+	/**
+	 * A timer for one project, linked in a slot of the wheel. Sentinels have no project.
+	 */
+	private static class Timer {
+		final OngoingProject project;
+		/** Epoch day the timer fires on */
+		final int day;
+		/** true for the timer of a passed deadline, false for the warning */
+		final boolean passed;
+		Timer prev;
+		Timer next;
+
+		Timer(OngoingProject p, int d, boolean isPassed) {
+			project = p;
+			day = d;
+			passed = isPassed;
+			if (p == null) {
+				prev = this;
+				next = this;
+			}
+		}
+	}
+}
@@ -95,7 +95,7 @@ public class FinishedProject extends Project {
 	// Other Methods
 	/** {@inheritDoc}*/
 	public String toString() {
-		return ("F%"+super.toString()+"%"+super.dateFormat.format(endDate)+"%"+totalCost); // String formatted for file use
+		return ("F%"+super.toString()+"%"+formatDate(endDate)+"%"+totalCost); // String formatted for file use
 	}
 	
 	/** {@inheritDoc}*/
@@ -0,0 +1,457 @@
+package project.logic;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+
+import project.io.MappedProjectFile;
+import project.io.ProjectJournal;
+
+/**
+ * A MappedPortfolio is a Portfolio that opens its file without reading it.<br>
+ * <i>init</i> maps the file with a MappedProjectFile, so opening a portfolio costs the same whatever its
+ * size, and projects are decoded as they are read: lookups by position or code, the counters, the
+ * OngoingProjects and FinishedProjects lists, snapshots and queries over them are served from the file
+ * and only decode the projects they touch.<br>
+ * The indexes by client, date and text, the statistics and the changes need every project, so the first
+ * call to one of them loads the whole file, as <i>load</i> does, and from then on the portfolio behaves
+ * like a Portfolio. Projects already read keep their identity when the file is loaded. New codes are
+ * checked against the codes in the file, so handing them out does not load it either.<br>
+ * PortfolioListeners registered before <i>init</i> need every project too, so in that case the file is
+ * loaded straight away. Files that cannot be mapped, such as files saved by earlier versions, and files
+ * whose journal holds changes not written to them yet are read as a Portfolio reads them.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see MappedProjectFile
+ */
+public class MappedPortfolio extends Portfolio {
+
+	/** The mapped file, or null once it is loaded */
+	private MappedProjectFile mapped;
+	/** Name of the mapped file */
+	private String file;
+	/** Views of the OngoingProjects and FinishedProjects, read from the file or the portfolio */
+	private List<Project> ongoingView = new View(true);
+	private List<Project> finishedView = new View(false);
+
+	/** {@inheritDoc} */
+	@Override
+	public void init(String f) {
+		mapped = null;
+		if (ProjectJournal.hasRecords(f)) {
+			// The changes in the journal are applied to the whole portfolio
+			super.init(f);
+			return;
+		}
+		MappedProjectFile m;
+		try {
+			m = MappedProjectFile.open(new File(f));
+		} catch (IOException e) {
+			super.init(f);
+			return;
+		}
+		super.init(new ArrayList<Project>(), f);
+		file = f;
+		mapped = m;
+		if (hasListeners()) {
+			load();
+			return;
+		}
+		// Codes are sorted, so the last one before "P:" (':' follows '9') has the highest number in the usual format
+		int end = m.indexOf("P:");
+		end = end < 0 ? -end - 1 : end;
+		if (end > 0) {
+			observeCode(m.getCode(end - 1));
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void init(ArrayList<Project> projects) {
+		mapped = null;
+		super.init(projects);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void initDB() {
+		mapped = null;
+		super.initDB();
+	}
+
+	/** @return true until the whole file has been loaded */
+	public boolean isMapped() {
+		return mapped != null;
+	}
+
+	/**
+	 * Decodes the projects not read yet and makes the portfolio a regular Portfolio holding all of them.
+	 * Listeners are notified with <i>portfolioReset</i>.
+	 */
+	public void load() {
+		if (mapped == null) {
+			return;
+		}
+		MappedProjectFile m = mapped;
+		m.loadAll();
+		mapped = null;
+		super.init(new ArrayList<Project>(m), file);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public ArrayList<Project> getPortfolio() {
+		load();
+		return super.getPortfolio();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> snapshot() {
+		if (mapped != null) {
+			return Collections.unmodifiableList(mapped);
+		}
+		return super.snapshot();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	List<Project> scan() {
+		if (mapped != null) {
+			return Collections.unmodifiableList(mapped);
+		}
+		return super.scan();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> getOngoingProjects() {
+		return ongoingView;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> getFinishedProjects() {
+		return finishedView;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void add(Project p, boolean db) {
+		load();
+		super.add(p, db);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Project get(int index) throws IndexOutOfBoundsException {
+		if (mapped != null) {
+			return mapped.get(index);
+		}
+		return super.get(index);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int findByCode(String c) {
+		if (mapped != null) {
+			return mapped.indexOf(c);
+		}
+		return super.findByCode(c);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int findByCode(String c, int exclude) {
+		if (mapped != null) {
+			int found = mapped.indexOf(c);
+			if (found < 0) {
+				return -1;
+			}
+			for (int i=found; i>=0 && mapped.getCode(i).equalsIgnoreCase(c); i--) {
+				if (i != exclude) return i;
+			}
+			for (int i=found+1; i<mapped.size() && mapped.getCode(i).equalsIgnoreCase(c); i++) {
+				if (i != exclude) return i;
+			}
+			return -1;
+		}
+		return super.findByCode(c, exclude);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int indexOf(Project p) {
+		if (mapped != null) {
+			int found = mapped.indexOf(p.getCode());
+			if (found >= 0) {
+				for (int i=found; i>=0 && mapped.getCode(i).equalsIgnoreCase(p.getCode()); i--) {
+					if (mapped.get(i) == p) return i;
+				}
+				for (int i=found+1; i<mapped.size() && mapped.getCode(i).equalsIgnoreCase(p.getCode()); i++) {
+					if (mapped.get(i) == p) return i;
+				}
+			}
+			// The project code was changed in place, or the project is not in the portfolio
+			load();
+		}
+		return super.indexOf(p);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> getProjectsByClient(String client) {
+		load();
+		return super.getProjectsByClient(client);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getClientProjectCount(String client) {
+		load();
+		return super.getClientProjectCount(client);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double getClientBudget(String client) {
+		load();
+		return super.getClientBudget(client);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double getClientTotalCost(String client) {
+		load();
+		return super.getClientTotalCost(client);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> getProjectsActiveBetween(Date from, Date to) {
+		load();
+		return super.getProjectsActiveBetween(from, to);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> getDeadlinesBetween(Date from, Date to) {
+		load();
+		return super.getDeadlinesBetween(from, to);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> getFinishedBetween(Date from, Date to) {
+		load();
+		return super.getFinishedBetween(from, to);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	int countDeadlinesBetween(Date from, Date to, int bound) {
+		load();
+		return super.countDeadlinesBetween(from, to, bound);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	int countFinishedBetween(Date from, Date to, int bound) {
+		load();
+		return super.countFinishedBetween(from, to, bound);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	int countProjectsActiveBetween(Date from, Date to, int bound) {
+		load();
+		return super.countProjectsActiveBetween(from, to, bound);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> getClosestDeadlines(Date from, int k) {
+		load();
+		return super.getClosestDeadlines(from, k);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> getHighestTotalCosts(int k) {
+		load();
+		return super.getHighestTotalCosts(k);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> search(String text) {
+		load();
+		return super.search(text);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	int estimateSearch(String text) {
+		load();
+		return super.estimateSearch(text);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Project> searchRanked(String text, int limit) {
+		load();
+		return super.searchRanked(text, limit);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public PortfolioStatistics getStatistics() {
+		load();
+		return super.getStatistics();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getOngoingCount() {
+		if (mapped != null) {
+			return mapped.getOngoingProjects().size();
+		}
+		return super.getOngoingCount();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getFinishedCount() {
+		if (mapped != null) {
+			return mapped.getFinishedProjects().size();
+		}
+		return super.getFinishedCount();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void listProjects() {
+		load();
+		super.listProjects();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void replaceProject(Project p, int index, boolean db) {
+		load();
+		super.replaceProject(p, index, db);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void remove(int index, boolean db) {
+		load();
+		super.remove(index, db);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int addAll(Collection<? extends Project> projects, boolean db) {
+		load();
+		return super.addAll(projects, db);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int replaceAll(Collection<? extends Project> projects, boolean db) {
+		load();
+		return super.replaceAll(projects, db);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int removeAll(Collection<String> codes, boolean db) {
+		load();
+		return super.removeAll(codes, db);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	int replaceProjects(List<? extends Project> oldProjects, List<? extends Project> newProjects, boolean db) {
+		load();
+		return super.replaceProjects(oldProjects, newProjects, db);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	int removeProjects(Collection<? extends Project> projects, boolean db) {
+		load();
+		return super.removeProjects(projects, db);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The file is loaded first, so that it can be overwritten.
+	 */
+	@Override
+	public boolean save(String f) {
+		load();
+		return super.save(f);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The file is loaded first, so that it can be overwritten.
+	 */
+	@Override
+	public Callable<Boolean> saveTask(String file) {
+		load();
+		return super.saveTask(file);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * While the file is mapped, codes are looked up in it by binary search, so codes in use that are
+	 * numbered above the highest one in the usual format are skipped too.
+	 */
+	@Override
+	public String getNewCode() {
+		MappedProjectFile m = mapped;
+		String newCode = super.getNewCode();
+		while (m != null && m.indexOf(newCode) >= 0) {
+			newCode = super.getNewCode();
+		}
+		return newCode;
+	}
+
+	/**
+	 * Read-only view of the projects of one type, read from the file until it is loaded.
+	 */
+	private class View extends AbstractList<Project> implements RandomAccess {
+		private final boolean ongoing;
+
+		View(boolean isOngoing) {
+			ongoing = isOngoing;
+		}
+
+		private List<Project> source() {
+			MappedProjectFile m = mapped;
+			if (m != null) {
+				return ongoing ? m.getOngoingProjects() : m.getFinishedProjects();
+			}
+			return ongoing ? MappedPortfolio.super.getOngoingProjects() : MappedPortfolio.super.getFinishedProjects();
+		}
+
+		@Override
+		public Project get(int index) {
+			return source().get(index);
+		}
+
+		@Override
+		public int size() {
+			return source().size();
+		}
+	}
+}
@@ -122,7 +122,7 @@ public class OngoingProject extends Project {
 	
 	/** {@inheritDoc} */
 	public String toString() {
-		return ("O%"+super.toString()+"%"+super.dateFormat.format(deadline)+"%"+budget+"%"+completion); // String formatted for file use
+		return ("O%"+super.toString()+"%"+formatDate(deadline)+"%"+budget+"%"+completion); // String formatted for file use
 	}
 	
 	/** {@inheritDoc} */
@@ -1,10 +1,17 @@
-
 package project.logic;
 
+import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
 
 import project.io.*;
 import static project.ui.ProjectUI.DATE_FORMAT;
@@ -24,11 +31,42 @@ public class Portfolio {
 	private ArrayList<Project> portfolio;
 	/** Default date format*/
 	private SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+	/** Case-folded project codes mapped to the number of projects using them */
+	private HashMap<String, Integer> codeIndex = new HashMap<String, Integer>();
+	/** Sorted partition holding only the OngoingProjects of the working ArrayList */
+	private ArrayList<Project> ongoing = new ArrayList<Project>();
+	/** Sorted partition holding only the FinishedProjects of the working ArrayList */
+	private ArrayList<Project> finished = new ArrayList<Project>();
+	/** Read-only view of the OngoingProjects partition */
+	private List<Project> ongoingView = Collections.unmodifiableList(ongoing);
+	/** Read-only view of the FinishedProjects partition */
+	private List<Project> finishedView = Collections.unmodifiableList(finished);
+	/** Secondary index from normalised client names to their projects */
+	private ClientIndex clientIndex = new ClientIndex();
+	/** Index over the project dates for range and overlap queries */
+	private DateIndex dateIndex = new DateIndex();
+	/** Trigram index over the project names and clients */
+	private TextIndex textIndex = new TextIndex();
+	/** Objects notified of every change made to the portfolio */
+	private ArrayList<PortfolioListener> listeners = new ArrayList<PortfolioListener>();
+	/** Generator of new project codes, raised past every code in the portfolio */
+	private CodeSequence codes = new CodeSequence();
+	/** Live statistics of the portfolio, kept up to date as a listener */
+	private PortfolioStatistics statistics = new PortfolioStatistics();
+	/** true if the working ArrayList has been handed out by snapshot() and must be copied before it is changed */
+	private boolean shared = false;
+	/** Journal of the changes made since the file was saved, or null if the portfolio was not read from a file */
+	private ProjectJournal journal;
+	/** Codec of BlockOutputStream the files are compressed with when saved */
+	private int compression = BlockOutputStream.NONE;
+	/** Number of times a file replaced while it is read is read again */
+	private static final int READ_ATTEMPTS = 3;
 	
 	/** Default constructor. Creates an empty ArrayList&#60;Project&#62; object */
 	public Portfolio() {
 				
 		portfolio = new ArrayList<Project>();
+		listeners.add(statistics);
 	}
 	
 	/**
@@ -36,35 +74,104 @@ public class Portfolio {
 	 * @param file	String containing the name of the file to use for initialization
 	 */
 	public void init(String file) {
-		portfolio=null;
-		try {
-			portfolio = ProjectIO.open(file);
-			System.out.println("** File read successful **\n");
-		} catch (ClassNotFoundException | IOException e) {
-			System.out.println("** FILE ERROR **\n");
+		closeJournal();
+		ArrayList<Project> projects = null;
+		ProjectJournal j = null;
+		// The journal is opened first, and both are read again if the file was replaced meanwhile
+		for (int attempt=0; attempt<READ_ATTEMPTS && (j == null || !j.isCurrent()); attempt++) {
+			j = openJournal(file);
+			projects = null;
+			try {
+				projects = ProjectIO.open(file);
+			} catch (ClassNotFoundException | IOException e) {
+				// Reported below, once the last attempt failed
+			}
+			if (j == null) {
+				break;
+			}
 		}
+		System.out.println(projects != null ? "** File read successful **\n" : "** FILE ERROR **\n");
 		
+		init(projects, file, j);
+	}
+	
+	/**
+	 * Initializes the portfolio working ArrayList&#60;Project&#62; with projects read from a file, applies
+	 * the changes saved in its journal, and shares the code sequence with the other users of the file.
+	 * From then on, saving the portfolio to the same file appends the changes made to the journal.
+	 * @param projects	ArrayList&#60;Project&#62; object containing the data
+	 * @param file	String containing the name of the file the data was read from
+	 * @see ProjectJournal
+	 */
+	void init(ArrayList<Project> projects, String file) {
+		closeJournal();
+		init(projects, file, openJournal(file));
+	}
+	
+	/**
+	 * Opens the journal of a file.
+	 * @param file	String containing the name of the portfolio file
+	 * @return the ProjectJournal of the file, or null if it cannot be read
+	 */
+	private static ProjectJournal openJournal(String file) {
+		try {
+			return ProjectJournal.open(file);
+		} catch (IOException e) {
+			System.out.println("** JOURNAL FILE ERROR **\n");
+			return null;
+		}
+	}
+	
+	/**
+	 * Initializes the portfolio working ArrayList&#60;Project&#62; with projects read from a file and
+	 * applies the changes saved in its journal.
+	 * @param projects	ArrayList&#60;Project&#62; object containing the data
+	 * @param file	String containing the name of the file the data was read from
+	 * @param j	the ProjectJournal of the file, opened before the file was read, or null
+	 */
+	private void init(ArrayList<Project> projects, String file, ProjectJournal j) {
+		journal = j;
+		if (journal != null) {
+			journal.setCompression(compression);
+			if (projects != null && journal.replay(projects) > 0) {
+				System.out.println("** Journal replayed **\n");
+			}
+		}
+		portfolio = projects;
 		Collections.sort(portfolio);
+		reindex();
+		if (journal != null) {
+			listeners.add(journal);
+		}
+		try {
+			codes.bind(sequenceFile(file));
+		} catch (IOException e) {
+			System.out.println("** CODE SEQUENCE FILE ERROR **\n");
+		}
 	}
 	/** Initializes the portfolio working ArrayList&#60;Project&#62; with data from another
 	* ArrayList&#60;Project&#62;
 	* @param projects	ArrayList&#60;Project&#62; object containing the data */
 	public void init(ArrayList<Project> projects) {
+		closeJournal();
 		portfolio = null;
 		portfolio = projects;
 		Collections.sort(portfolio);
+		reindex();
 	}
 
 	/**
 	 * Initializes the portfolio working ArrayList&#60;Project&#62; with data from a SQL Server Database
 	 */
 	public void initDB() {
+		closeJournal();
 		ProjectDB.connect();
 		
 		portfolio = null;
 		portfolio = ProjectDB.init();
 	
 		Collections.sort(portfolio);
+		reindex();
 		
 	}
 	
@@ -75,36 +182,55 @@ public class Portfolio {
 		return portfolio;
 	}
 	
-	
-	
-	/** Returns an ArrayList containing all the OngoingProjects in the portfolio 
-	 * @return an Arraylist containing all the OngoingProjects in the portfolio */ 
-	public ArrayList<Project> getOngoingProjects() {
+	/**
+	 * Returns an immutable view of the portfolio as it is now, sorted by code.<br>
+	 * Taking a snapshot costs O(1): the working ArrayList is shared with the snapshot and only copied
+	 * by the first change made after it, so later additions, replacements and removals are never seen
+	 * through the snapshot. Readers can iterate it for as long as they need without blocking edits.
+	 * @return	a read-only List&#60;Project&#62; that will not change
+	 */
+	public List<Project> snapshot() {
 		
-		ArrayList<Project> oPrjs = new ArrayList<Project>();
+		shared = true;
+		return Collections.unmodifiableList(portfolio);
+	}
+	
+	/**
+	 * Returns a read-only view of the working ArrayList for a pass over every project, such as the scans
+	 * made by ProjectQuery and PortfolioAggregator. Unlike <i>snapshot</i>, it does not make the next
+	 * change copy the list, so the pass must be over before the portfolio is changed again.
+	 * @return	a read-only List&#60;Project&#62; sorted by code
+	 */
+	List<Project> scan() {
 		
-		for(int i=0; i<portfolio.size();i++){
-			if(portfolio.get(i) instanceof OngoingProject) {
-				oPrjs.add((OngoingProject) portfolio.get(i));
-			}
+		return Collections.unmodifiableList(portfolio);
+	}
+	
+	/**
+	 * Gives the portfolio its own copy of the working ArrayList if a snapshot is still sharing it.
+	 * Called before every change to the working ArrayList.
+	 */
+	private void detach() {
+		if (shared) {
+			portfolio = new ArrayList<Project>(portfolio);
+			shared = false;
 		}
-		
-		return oPrjs;
 	}
 	
-	/** Returns an ArrayList containing all the FinishedProjects in the portfolio 
-	 * @return an Arraylist containing all the FinishedProjects in the portfolio */
-	public ArrayList<Project> getFinishedProjects() {
-		
-		ArrayList<Project> fPrjs = new ArrayList<Project>();
+	/** Returns a read-only view of all the OngoingProjects in the portfolio, sorted by code.
+	 * The view reflects later changes to the portfolio.
+	 * @return a List containing all the OngoingProjects in the portfolio */ 
+	public List<Project> getOngoingProjects() {
 		
-		for(int i=0; i<portfolio.size();i++){
-			if(portfolio.get(i) instanceof FinishedProject) {
-				fPrjs.add((FinishedProject) portfolio.get(i));
-			}
-		}
+		return ongoingView;
+	}
+	
+	/** Returns a read-only view of all the FinishedProjects in the portfolio, sorted by code.
+	 * The view reflects later changes to the portfolio.
+	 * @return a List containing all the FinishedProjects in the portfolio */
+	public List<Project> getFinishedProjects() {
 		
-		return fPrjs;
+		return finishedView;
 	}
 	
 	/** Adds a Project object to the working ArrayList&#60;Project&#62;
@@ -114,18 +240,178 @@ public class Portfolio {
 	public void add (Project p, boolean db) {
 		
 		if (p instanceof OngoingProject) {
-			portfolio.add((OngoingProject)p);
+			insert(p);
 			if(db) {
 				ProjectDB.add((OngoingProject)p);
 			}
 			
 		} else if (p instanceof FinishedProject) {
-			portfolio.add((FinishedProject) p);
+			insert(p);
 			if(db) {
 				ProjectDB.add((FinishedProject)p);
 			}
+		} else {
+			return;
+		}
+		for (int i=0; i<listeners.size(); i++) {
+			listeners.get(i).projectAdded(p);
 		}
-		Collections.sort(portfolio);
+	}
+	
+	/**
+	 * Inserts a Project object at its sorted position in the working ArrayList, so that the
+	 * list never needs to be re-sorted after a single addition.
+	 * @param p	Project object to be inserted
+	 * @return	the index where the Project object was placed
+	 */
+	private int insert(Project p) {
+		int index = search(portfolio, p.getCode());
+		if (index < 0) {
+			index = -index - 1;
+		}
+		detach();
+		portfolio.add(index, p);
+		indexCode(p.getCode());
+		partitionAdd(p);
+		clientIndex.add(p);
+		dateIndex.add(p);
+		textIndex.add(p);
+		return index;
+	}
+	
+	/**
+	 * Rebuilds the code index and the status partitions from the working ArrayList.
+	 * Called after the whole list is replaced.
+	 */
+	private void reindex() {
+		shared = false;
+		codes.reset();
+		codeIndex.clear();
+		ongoing.clear();
+		finished.clear();
+		clientIndex.clear();
+		dateIndex.clear();
+		textIndex.clear();
+		for (int i=0; i<portfolio.size(); i++) {
+			Project p = portfolio.get(i);
+			indexCode(p.getCode());
+			clientIndex.add(p);
+			dateIndex.add(p);
+			textIndex.add(p);
+			if (p instanceof OngoingProject) {
+				ongoing.add(p);
+			} else if (p instanceof FinishedProject) {
+				finished.add(p);
+			}
+		}
+		for (int i=0; i<listeners.size(); i++) {
+			listeners.get(i).portfolioReset(this);
+		}
+	}
+	
+	/**
+	 * Returns the status partition a Project object belongs to.
+	 * @param p	a Project object
+	 * @return	the partition for the project type, or null for unknown types
+	 */
+	private ArrayList<Project> partitionOf(Project p) {
+		if (p instanceof OngoingProject) {
+			return ongoing;
+		} else if (p instanceof FinishedProject) {
+			return finished;
+		}
+		return null;
+	}
+	
+	/**
+	 * Inserts a Project object at its sorted position in its status partition.
+	 * @param p	Project object to be inserted
+	 */
+	private void partitionAdd(Project p) {
+		ArrayList<Project> part = partitionOf(p);
+		if (part != null) {
+			int index = search(part, p.getCode());
+			part.add(index < 0 ? -index - 1 : index, p);
+		}
+	}
+	
+	/**
+	 * Removes a Project object from its status partition.
+	 * @param p	Project object to be removed
+	 */
+	private void partitionRemove(Project p) {
+		ArrayList<Project> part = partitionOf(p);
+		if (part != null) {
+			int index = locate(part, p);
+			if (index >= 0) {
+				part.remove(index);
+			}
+		}
+	}
+	
+	/**
+	 * Finds the position of a specific Project object in a list sorted by code.
+	 * @param list	a List of Project objects sorted by code
+	 * @param p	the Project object to find
+	 * @return	the index of that same object in the list, or -1 if it is not there
+	 */
+	private static int locate(List<Project> list, Project p) {
+		int found = search(list, p.getCode());
+		if (found >= 0) {
+			for (int i=found; i>=0 && list.get(i).compareTo(p) == 0; i--) {
+				if (list.get(i) == p) return i;
+			}
+			for (int i=found+1; i<list.size() && list.get(i).compareTo(p) == 0; i++) {
+				if (list.get(i) == p) return i;
+			}
+		}
+		// The project code was changed in place or the list is out of order, fall back to a full scan
+		for (int i=0; i<list.size(); i++) {
+			if (list.get(i) == p) return i;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Registers one more project using the given code in the code index.
+	 * @param c	String representing the project code
+	 */
+	private void indexCode(String c) {
+		String key = foldCode(c);
+		Integer count = codeIndex.get(key);
+		codeIndex.put(key, count == null ? 1 : count + 1);
+		codes.observe(c);
+		// Projects sharing a code cannot be told apart in the journal
+		if (count != null && journal != null) {
+			journal.invalidate();
+		}
+	}
+	
+	/**
+	 * Unregisters one project using the given code from the code index.
+	 * @param c	String representing the project code
+	 */
+	private void unindexCode(String c) {
+		String key = foldCode(c);
+		Integer count = codeIndex.get(key);
+		if (count == null || count <= 1) {
+			codeIndex.remove(key);
+		} else {
+			codeIndex.put(key, count - 1);
+			if (journal != null) {
+				journal.invalidate();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the key used in the code index for a project code, so that codes differing only in
+	 * case share an entry.
+	 * @param c	String representing the project code
+	 * @return	the case-folded project code
+	 */
+	private static String foldCode(String c) {
+		return c.toUpperCase(Locale.ROOT);
 	}
 		
 	/** Returns the Project object at a given index position. 
@@ -149,12 +435,34 @@ public class Portfolio {
 	* working ArrayList&#60;Project&#62;. Returns a negative Integer if the Code is not found */
 	public int findByCode (String c) {
 		
-		Project p = new OngoingProject();
-		p.setCode(c);	
+		return search(portfolio, c);
+	}
+	
+	/**
+	 * Binary searches a list of Project objects sorted by code, comparing the code strings directly.
+	 * @param list	a List of Project objects sorted by code
+	 * @param c	String representing the required project code
+	 * @return	the index of a Project object with the given code, or -(insertion point)-1 if the code is not found
+	 */
+	private static int search(List<Project> list, String c) {
 		
-		int index = Collections.binarySearch(portfolio,p);
+		int low = 0;
+		int high = list.size()-1;
 		
-		return index;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = list.get(mid).getCode().compareToIgnoreCase(c);
+			
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		
+		return -(low + 1);
 	}
 	
 	/** Returns the index of a specific Project object with a given Code within the 
@@ -166,15 +474,274 @@ public class Portfolio {
 	* working ArrayList&#60;Project&#62;. Returns -1 if the Code is not found */
 	public int findByCode (String c, int exclude) {
 		
-		int index = -1;
-		for (int i=0; i<portfolio.size(); i++) {
-			if (portfolio.get(i).getCode().equalsIgnoreCase(c) && i != exclude) {
-				index = i;
-				break;
+		Integer count = codeIndex.get(foldCode(c));
+		int matches = count == null ? 0 : count;
+		if (exclude >= 0 && exclude < portfolio.size() && portfolio.get(exclude).getCode().equalsIgnoreCase(c)) {
+			matches--;
+		}
+		if (matches <= 0) {
+			return -1;
+		}
+		
+		// Projects sharing a code sit next to each other, so look around the binary search hit
+		int found = search(portfolio, c);
+		if (found >= 0) {
+			for (int i=found; i>=0 && portfolio.get(i).getCode().equalsIgnoreCase(c); i--) {
+				if (i != exclude) return i;
+			}
+			for (int i=found+1; i<portfolio.size() && portfolio.get(i).getCode().equalsIgnoreCase(c); i++) {
+				if (i != exclude) return i;
 			}
 		}
 		
-		return index;
+		return -1;
+	}
+	
+	/**
+	 * Returns the index of a specific Project object within the working ArrayList. Unlike findByCode,
+	 * it tells apart different objects sharing the same code.
+	 * @param p	the Project object to find
+	 * @return	the index of the Project object, or -1 if it is not in the portfolio
+	 */
+	public int indexOf(Project p) {
+		
+		return locate(portfolio, p);
+	}
+	
+	/**
+	 * Returns the projects of a client. Client names are compared ignoring case and extra spaces.
+	 * @param client	String representing the client
+	 * @return	a new List&#60;Project&#62; with the projects of the client
+	 */
+	public List<Project> getProjectsByClient(String client) {
+		
+		return clientIndex.projectsOf(client);
+	}
+	
+	/**
+	 * Counts the projects of a client. Client names are compared ignoring case and extra spaces.
+	 * @param client	String representing the client
+	 * @return	an Integer representing the number of projects of the client
+	 */
+	public int getClientProjectCount(String client) {
+		
+		return clientIndex.countOf(client);
+	}
+	
+	/**
+	 * Adds up the budgets of the OngoingProjects of a client.
+	 * @param client	String representing the client
+	 * @return	a double representing the total budget of the client
+	 */
+	public double getClientBudget(String client) {
+		
+		return clientIndex.budgetOf(client);
+	}
+	
+	/**
+	 * Adds up the total costs of the FinishedProjects of a client.
+	 * @param client	String representing the client
+	 * @return	a double representing the total cost of the client
+	 */
+	public double getClientTotalCost(String client) {
+		
+		return clientIndex.costOf(client);
+	}
+	
+	/**
+	 * Returns the projects active at some point between two dates: projects that started on or before
+	 * <i>to</i> and that are still ongoing or finished on or after <i>from</i>.
+	 * @param from	a Date object representing the first day of the window, or null for no lower bound
+	 * @param to	a Date object representing the last day of the window, or null for no upper bound
+	 * @return	a new List&#60;Project&#62; with the active projects, sorted by start date
+	 */
+	public List<Project> getProjectsActiveBetween(Date from, Date to) {
+		
+		return dateIndex.activeBetween(firstDay(from), lastDay(to));
+	}
+	
+	/**
+	 * Returns the OngoingProjects with a deadline between two dates, both included.
+	 * Projects without a deadline are never returned.
+	 * @param from	a Date object representing the first day of the range, or null for no lower bound
+	 * @param to	a Date object representing the last day of the range, or null for no upper bound
+	 * @return	a new List&#60;Project&#62; with the projects, sorted by deadline
+	 */
+	public List<Project> getDeadlinesBetween(Date from, Date to) {
+		
+		return dateIndex.deadlinesBetween(firstDay(from), lastDay(to));
+	}
+	
+	/**
+	 * Returns the FinishedProjects with an end date between two dates, both included.
+	 * Projects without an end date are never returned.
+	 * @param from	a Date object representing the first day of the range, or null for no lower bound
+	 * @param to	a Date object representing the last day of the range, or null for no upper bound
+	 * @return	a new List&#60;Project&#62; with the projects, sorted by end date
+	 */
+	public List<Project> getFinishedBetween(Date from, Date to) {
+		
+		return dateIndex.finishedBetween(firstDay(from), lastDay(to));
+	}
+	
+	/**
+	 * Counts the projects <i>getDeadlinesBetween</i> returns without listing them, so that ProjectQuery
+	 * can compare the sizes of its sources.
+	 * @param from	a Date object representing the first day of the range, or null for no lower bound
+	 * @param to	a Date object representing the last day of the range, or null for no upper bound
+	 * @param bound	an Integer representing the count at which counting stops
+	 * @return	an Integer representing the number of projects, or <i>bound</i> if there are at least that many
+	 */
+	int countDeadlinesBetween(Date from, Date to, int bound) {
+		
+		return dateIndex.countDeadlines(firstDay(from), lastDay(to), bound);
+	}
+	
+	/**
+	 * Counts the projects <i>getFinishedBetween</i> returns without listing them.
+	 * @param from	a Date object representing the first day of the range, or null for no lower bound
+	 * @param to	a Date object representing the last day of the range, or null for no upper bound
+	 * @param bound	an Integer representing the count at which counting stops
+	 * @return	an Integer representing the number of projects, or <i>bound</i> if there are at least that many
+	 */
+	int countFinishedBetween(Date from, Date to, int bound) {
+		
+		return dateIndex.countFinished(firstDay(from), lastDay(to), bound);
+	}
+	
+	/**
+	 * Counts the projects <i>getProjectsActiveBetween</i> returns without listing them.
+	 * @param from	a Date object representing the first day of the window, or null for no lower bound
+	 * @param to	a Date object representing the last day of the window, or null for no upper bound
+	 * @param bound	an Integer representing the count at which counting stops
+	 * @return	an Integer representing the number of projects, or <i>bound</i> if there are at least that many
+	 */
+	int countProjectsActiveBetween(Date from, Date to, int bound) {
+		
+		return dateIndex.countActive(firstDay(from), lastDay(to), bound);
+	}
+	
+	/**
+	 * Returns the epoch day starting a date range. A null date leaves the range open, starting just after
+	 * NO_DATE so that projects without a date are not taken for the earliest ones.
+	 * @param d	a Date object, can be null
+	 * @return	an Integer representing the first epoch day of the range
+	 */
+	private static int firstDay(Date d) {
+		return d == null ? Project.NO_DATE + 1 : Project.toEpochDay(d);
+	}
+	
+	/**
+	 * Returns the epoch day ending a date range. A null date leaves the range open.
+	 * @param d	a Date object, can be null
+	 * @return	an Integer representing the last epoch day of the range
+	 */
+	private static int lastDay(Date d) {
+		return d == null ? Integer.MAX_VALUE : Project.toEpochDay(d);
+	}
+	
+	/**
+	 * Returns the OngoingProjects with the closest deadlines. The deadlines are kept sorted by the date
+	 * index, so this costs O(log n + k).
+	 * @param from	a Date object representing the first deadline to consider, or null to include every deadline
+	 * @param k	an Integer representing the maximum number of projects to return
+	 * @return	a new List&#60;Project&#62; with at most <i>k</i> projects, by deadline. Empty if <i>k</i> is not positive
+	 */
+	public List<Project> getClosestDeadlines(Date from, int k) {
+		
+		return dateIndex.firstDeadlines(Project.toEpochDay(from), k);
+	}
+	
+	/**
+	 * Returns the FinishedProjects with the highest total costs, selected with a bounded heap in O(n log k).
+	 * @param k	an Integer representing the maximum number of projects to return
+	 * @return	a new List&#60;Project&#62; with at most <i>k</i> projects, highest total cost first and then by code
+	 */
+	public List<Project> getHighestTotalCosts(int k) {
+		
+		return TopK.select(finished.iterator(), k, new Comparator<Project>() {
+			@Override
+			public int compare(Project a, Project b) {
+				return Double.compare(((FinishedProject) b).getTotalCost(), ((FinishedProject) a).getTotalCost());
+			}
+		});
+	}
+	
+	/**
+	 * Finds the projects whose name or client contains a text, ignoring case.
+	 * @param text	String to look for
+	 * @return	a new List&#60;Project&#62; with the matching projects, sorted by code
+	 */
+	public List<Project> search(String text) {
+		
+		List<Project> found = textIndex.search(text);
+		Collections.sort(found);
+		return found;
+	}
+	
+	/**
+	 * Estimates the number of projects <i>search</i> returns without looking them up. The estimate is
+	 * never lower than the number of matches.
+	 * @param text	String to look for
+	 * @return	an Integer representing the estimated number of projects
+	 */
+	int estimateSearch(String text) {
+		
+		return textIndex.estimate(text);
+	}
+	
+	/**
+	 * Finds the projects whose name or client best match a text, tolerating typos and partial words.
+	 * Projects containing the text come first, followed by the most similar ones.
+	 * @param text	String to look for
+	 * @param limit	Integer representing the maximum number of projects to return
+	 * @return	a new List&#60;Project&#62; with the best matching projects, best first
+	 */
+	public List<Project> searchRanked(String text, int limit) {
+		
+		return textIndex.searchRanked(text, limit);
+	}
+	
+	/**
+	 * Returns the live statistics of the portfolio: counts, totals, completion histogram, overdue projects
+	 * and per-client totals. They are updated with every change, so reading them costs O(1).
+	 * @return	the PortfolioStatistics object following this portfolio
+	 */
+	public PortfolioStatistics getStatistics() {
+		
+		return statistics;
+	}
+	
+	/**
+	 * Starts a query over the projects in the portfolio. The query is run each time it is iterated.
+	 * @return	a new ProjectQuery object returning every project
+	 */
+	public ProjectQuery query() {
+		
+		return new ProjectQuery(this);
+	}
+	
+	/**
+	 * Registers an object to be notified of every change made to the portfolio.
+	 * @param l	the PortfolioListener to add
+	 */
+	public void addPortfolioListener(PortfolioListener l) {
+		listeners.add(l);
+	}
+	
+	/**
+	 * Stops notifying an object of the changes made to the portfolio.
+	 * @param l	the PortfolioListener to remove
+	 */
+	public void removePortfolioListener(PortfolioListener l) {
+		listeners.remove(l);
+	}
+	
+	/**
+	 * @return true if objects other than the statistics and the journal of the portfolio are notified of its changes
+	 */
+	boolean hasListeners() {
+		return listeners.size() > (journal != null ? 2 : 1);
 	}
 	
 	/**
@@ -183,12 +750,7 @@ public class Portfolio {
 	 */
 	public int getOngoingCount() {
 		
-		int ongoing=0;
-		
-		for(int i = 0; i<portfolio.size();i++) {
-			if(portfolio.get(i) instanceof OngoingProject) ongoing++;
-		}
-		return ongoing;
+		return ongoing.size();
 	}
 	
 	/**
@@ -197,12 +759,7 @@ public class Portfolio {
 	 */
 	public int getFinishedCount() {
 		
-		int finished=0;
-		
-		for(int i = 0; i<portfolio.size();i++) {
-			if(portfolio.get(i) instanceof FinishedProject) finished++;
-		}
-		return finished;
+		return finished.size();
 	}
 
 	/**
@@ -210,75 +767,91 @@ public class Portfolio {
 	 */
 	public void listProjects() {
 		
-		System.out.println("\nThere are " + this.getOngoingCount() + " Ongoing Projects and " + this.getFinishedCount() + " Finished Projects.");
+		System.out.println("\nThere are " + statistics.getOngoingCount() + " Ongoing Projects and " + statistics.getFinishedCount() + " Finished Projects.");
+		System.out.printf("Total budget: $ %.2f - Average completion: %.0f%% - Overdue: %d - Total cost: $ %.2f%n",
+				statistics.getTotalBudget(), statistics.getAverageCompletion(), statistics.getOverdueCount(), statistics.getTotalCost());
 		
 		System.out.println("\nOngoing Projects\n----------------\n");
 		System.out.println(" Prj Code  | Project Name             | Client              | Start Date | Deadline   | Budget      | Completion");
 		System.out.println("-----------+--------------------------+---------------------+------------+------------+-------------+-------------");
 		 																						   
-		for(int x=0;x<portfolio.size();x++){
-			if (portfolio.get(x) instanceof OngoingProject) {
-				System.out.printf("%-10s", portfolio.get(x).getCode());
-				System.out.print(" |");
-				System.out.printf("%-25s", portfolio.get(x).getName());
-				System.out.print(" |");
-				System.out.printf("%-20s", portfolio.get(x).getClient());
-				System.out.print(" |");
-				System.out.printf("%11s", dateFormat.format(portfolio.get(x).getStartDate()));
-				System.out.print(" |");
-				System.out.printf("%11s", dateFormat.format(((OngoingProject)portfolio.get(x)).getDeadline()));
-				System.out.print(" |");
-				System.out.printf("$ %10.2f", ((OngoingProject)portfolio.get(x)).getBudget());
-				System.out.print(" |");
-				System.out.printf("%10d", ((OngoingProject)portfolio.get(x)).getCompletion());
-				System.out.print("%\n");
-				
-			}
+		for(int x=0;x<ongoing.size();x++){
+			OngoingProject op = (OngoingProject)ongoing.get(x);
+			System.out.printf("%-10s", op.getCode());
+			System.out.print(" |");
+			System.out.printf("%-25s", op.getName());
+			System.out.print(" |");
+			System.out.printf("%-20s", op.getClient());
+			System.out.print(" |");
+			System.out.printf("%11s", dateFormat.format(op.getStartDate()));
+			System.out.print(" |");
+			System.out.printf("%11s", dateFormat.format(op.getDeadline()));
+			System.out.print(" |");
+			System.out.printf("$ %10.2f", op.getBudget());
+			System.out.print(" |");
+			System.out.printf("%10d", op.getCompletion());
+			System.out.print("%\n");
 		}
 		
 			System.out.println("\nFinished Projects\n-----------------\n");
 			System.out.println(" Prj Code  | Project Name             | Client              | Start Date | End Date   | Total Cost");
 			System.out.println("-----------+--------------------------+---------------------+------------+------------+-------------");
 			 																						   
-			for(int x=0;x<portfolio.size();x++){
-				if (portfolio.get(x) instanceof FinishedProject) {
-					System.out.printf("%-10s", portfolio.get(x).getCode());
-					System.out.print(" |");
-					System.out.printf("%-25s", portfolio.get(x).getName());
-					System.out.print(" |");
-					System.out.printf("%-20s", portfolio.get(x).getClient());
-					System.out.print(" |");
-					System.out.printf("%11s", dateFormat.format(portfolio.get(x).getStartDate()));
-					System.out.print(" |");
-					System.out.printf("%11s", dateFormat.format(((FinishedProject)portfolio.get(x)).getEndDate()));
-					System.out.print(" |");
-					System.out.printf("$ %10.2f", ((FinishedProject)portfolio.get(x)).getTotalCost());
-					System.out.print("\n");
-										
-				}
-			
+			for(int x=0;x<finished.size();x++){
+				FinishedProject fp = (FinishedProject)finished.get(x);
+				System.out.printf("%-10s", fp.getCode());
+				System.out.print(" |");
+				System.out.printf("%-25s", fp.getName());
+				System.out.print(" |");
+				System.out.printf("%-20s", fp.getClient());
+				System.out.print(" |");
+				System.out.printf("%11s", dateFormat.format(fp.getStartDate()));
+				System.out.print(" |");
+				System.out.printf("%11s", dateFormat.format(fp.getEndDate()));
+				System.out.print(" |");
+				System.out.printf("$ %10.2f", fp.getTotalCost());
+				System.out.print("\n");
 			}
 			
 			System.out.print("\n");
 		
 	}
 	/**
-	 * Replaces a Project object in the specified index position.
+	 * Replaces a Project object in the specified index position. If the new Project object has a different
+	 * code, it is moved to its sorted position instead, so the ArrayList stays sorted by code.
 	 * @param p	New Project object to be included in the ArrayList
-	 * @param index	Integer representing the location in the ArrayList where the new Project object should be placed
+	 * @param index	Integer representing the location in the ArrayList of the Project object to be replaced
 	 * @param db Boolean value indicating if the database must be updated.
 	 */
 	public void replaceProject(Project p, int index, boolean db) {
 
 		Project OldP = portfolio.get(index);
-		boolean change = false;
-		if(OldP instanceof OngoingProject && p instanceof FinishedProject) {
-			change = true;
-		} 
-		portfolio.set(index, p);
+		boolean change = changedType(OldP, p);
+		unindexCode(OldP.getCode());
+		partitionRemove(OldP);
+		clientIndex.remove(OldP);
+		dateIndex.remove(OldP);
+		textIndex.remove(OldP);
+		detach();
+		if (OldP.compareTo(p) == 0) {
+			portfolio.set(index, p);
+		} else {
+			// The code changed, so the project moves to its sorted position
+			portfolio.remove(index);
+			int to = search(portfolio, p.getCode());
+			portfolio.add(to < 0 ? -to - 1 : to, p);
+		}
+		indexCode(p.getCode());
+		partitionAdd(p);
+		clientIndex.add(p);
+		dateIndex.add(p);
+		textIndex.add(p);
 		if(db) {
 			ProjectDB.update(p, change);
 		}
+		for (int i=0; i<listeners.size(); i++) {
+			listeners.get(i).projectReplaced(OldP, p);
+		}
 		
 	}
 	/**
@@ -292,34 +865,389 @@ public class Portfolio {
 		if(db) {
 			ProjectDB.delete(portfolio.get(index));
 		}
-		portfolio.remove(index);
-		Collections.sort(portfolio);
+		detach();
+		Project removed = portfolio.remove(index);
+		unindexCode(removed.getCode());
+		partitionRemove(removed);
+		clientIndex.remove(removed);
+		dateIndex.remove(removed);
+		textIndex.remove(removed);
+		for (int i=0; i<listeners.size(); i++) {
+			listeners.get(i).projectRemoved(removed);
+		}
+		
+	}
+	
+	/**
+	 * Adds several Project objects to the working ArrayList&#60;Project&#62; at once.<br>
+	 * The new projects are sorted and merged into the working ArrayList in one pass, the status partitions
+	 * are rebuilt once and the database receives them in a single batch, so adding <i>m</i> projects costs
+	 * O(n + m log m) rather than shifting the list once per project. Listeners are notified of each project,
+	 * between <i>batchStarted</i> and <i>batchFinished</i>.
+	 * @param projects	Collection of Project objects to be added. Only OngoingProjects and FinishedProjects are added
+	 * @param db Boolean value indicating if the database must be updated.
+	 * @return the number of projects added
+	 */
+	public int addAll(Collection<? extends Project> projects, boolean db) {
+		
+		ArrayList<Project> added = new ArrayList<Project>(projects.size());
+		for (Project p : projects) {
+			if (p instanceof OngoingProject || p instanceof FinishedProject) {
+				added.add(p);
+			}
+		}
+		if (added.isEmpty()) {
+			return 0;
+		}
+		Collections.sort(added);
+		
+		ArrayList<Project> merged = new ArrayList<Project>(portfolio.size() + added.size());
+		int i = 0;
+		int j = 0;
+		while (i < portfolio.size() && j < added.size()) {
+			if (added.get(j).compareTo(portfolio.get(i)) < 0) {
+				merged.add(added.get(j++));
+			} else {
+				merged.add(portfolio.get(i++));
+			}
+		}
+		merged.addAll(portfolio.subList(i, portfolio.size()));
+		merged.addAll(added.subList(j, added.size()));
+		// The merged list is new, so a snapshot never shares it
+		portfolio = merged;
+		shared = false;
+		repartition();
+		for (Project p : added) {
+			indexCode(p.getCode());
+			clientIndex.add(p);
+			dateIndex.add(p);
+			textIndex.add(p);
+		}
+		if(db) {
+			ProjectDB.addAll(added);
+		}
+		fireBatch(true);
+		for (Project p : added) {
+			for (int k=0; k<listeners.size(); k++) {
+				listeners.get(k).projectAdded(p);
+			}
+		}
+		fireBatch(false);
+		return added.size();
+	}
+	
+	/**
+	 * Replaces several Project objects at once. Each project replaces the project with the same code,
+	 * at the same position; projects whose code is not in the portfolio are ignored.<br>
+	 * The status partitions are rebuilt once and the database receives the updates in a single batch.
+	 * Listeners are notified of each replacement, between <i>batchStarted</i> and <i>batchFinished</i>.
+	 * @param projects	Collection of the new Project objects
+	 * @param db Boolean value indicating if the database must be updated.
+	 * @return the number of projects replaced
+	 */
+	public int replaceAll(Collection<? extends Project> projects, boolean db) {
+		
+		ArrayList<Project> newProjects = new ArrayList<Project>(projects.size());
+		int[] indexes = new int[projects.size()];
+		for (Project p : projects) {
+			int index = search(portfolio, p.getCode());
+			if (index >= 0) {
+				indexes[newProjects.size()] = index;
+				newProjects.add(p);
+			}
+		}
+		return replaceAt(indexes, newProjects, db);
+	}
+	
+	/**
+	 * Replaces several Project objects at once, as <i>replaceAll</i> does, finding each project to replace
+	 * by identity rather than by code, so that projects sharing a code are told apart. Projects no longer
+	 * in the portfolio are skipped. Used by PortfolioHistory to undo and redo batches.
+	 * @param oldProjects	List of the Project objects to replace
+	 * @param newProjects	List of the Project objects replacing them, each with the same code as the one it replaces
+	 * @param db Boolean value indicating if the database must be updated.
+	 * @return the number of projects replaced
+	 */
+	int replaceProjects(List<? extends Project> oldProjects, List<? extends Project> newProjects, boolean db) {
+		
+		ArrayList<Project> found = new ArrayList<Project>(newProjects.size());
+		int[] indexes = new int[newProjects.size()];
+		for (int i=0; i<oldProjects.size(); i++) {
+			int index = locate(portfolio, oldProjects.get(i));
+			if (index >= 0) {
+				indexes[found.size()] = index;
+				found.add(newProjects.get(i));
+			}
+		}
+		return replaceAt(indexes, found, db);
+	}
+	
+	/**
+	 * Replaces the projects at the given positions with projects of the same code, rebuilding the status
+	 * partitions once and updating the database in a single batch.
+	 * @param indexes	the positions of the projects to replace, one for each new project
+	 * @param newProjects	List of the new Project objects
+	 * @param db Boolean value indicating if the database must be updated.
+	 * @return the number of projects replaced
+	 */
+	private int replaceAt(int[] indexes, List<Project> newProjects, boolean db) {
+		
+		if (newProjects.isEmpty()) {
+			return 0;
+		}
+		detach();
+		ArrayList<Project> oldProjects = new ArrayList<Project>(newProjects.size());
+		for (int i=0; i<newProjects.size(); i++) {
+			int index = indexes[i];
+			Project p = newProjects.get(i);
+			Project oldP = portfolio.get(index);
+			unindexCode(oldP.getCode());
+			clientIndex.remove(oldP);
+			dateIndex.remove(oldP);
+			textIndex.remove(oldP);
+			portfolio.set(index, p);
+			indexCode(p.getCode());
+			clientIndex.add(p);
+			dateIndex.add(p);
+			textIndex.add(p);
+			oldProjects.add(oldP);
+		}
+		repartition();
+		if(db) {
+			boolean[] changes = new boolean[newProjects.size()];
+			for (int i=0; i<changes.length; i++) {
+				changes[i] = changedType(oldProjects.get(i), newProjects.get(i));
+			}
+			ProjectDB.updateAll(newProjects, changes);
+		}
+		fireBatch(true);
+		for (int i=0; i<newProjects.size(); i++) {
+			for (int k=0; k<listeners.size(); k++) {
+				listeners.get(k).projectReplaced(oldProjects.get(i), newProjects.get(i));
+			}
+		}
+		fireBatch(false);
+		return newProjects.size();
+	}
+	
+	/**
+	 * Removes the projects with the given codes at once. Codes are compared ignoring case, and codes
+	 * not in the portfolio are ignored.<br>
+	 * The projects are found by binary search and the working ArrayList is compacted in one pass, the
+	 * status partitions are rebuilt once and the database receives the deletions in a single batch, so
+	 * removing <i>m</i> projects costs O(n + m log n) rather than shifting the list once per project.
+	 * Listeners are notified of each project removed, between <i>batchStarted</i> and <i>batchFinished</i>.
+	 * @param codes	Collection of Strings representing the codes of the projects to be removed
+	 * @param db Boolean value indicating if the database must be updated.
+	 * @return the number of projects removed
+	 */
+	public int removeAll(Collection<String> codes, boolean db) {
+		
+		boolean[] doomed = new boolean[portfolio.size()];
+		int count = 0;
+		for (String c : codes) {
+			int found = c == null ? -1 : search(portfolio, c);
+			if (found < 0) {
+				continue;
+			}
+			// Projects sharing a code sit next to each other
+			for (int i=found; i>=0 && portfolio.get(i).getCode().equalsIgnoreCase(c); i--) {
+				if (!doomed[i]) {
+					doomed[i] = true;
+					count++;
+				}
+			}
+			for (int i=found+1; i<portfolio.size() && portfolio.get(i).getCode().equalsIgnoreCase(c); i++) {
+				if (!doomed[i]) {
+					doomed[i] = true;
+					count++;
+				}
+			}
+		}
+		return removeMarked(doomed, count, db);
+	}
+	
+	/**
+	 * Removes several Project objects at once, as <i>removeAll</i> does, finding each project by identity
+	 * rather than by code, so that other projects sharing its code are kept. Projects no longer in the
+	 * portfolio are skipped. Used by PortfolioHistory to undo and redo batches.
+	 * @param projects	Collection of the Project objects to be removed
+	 * @param db Boolean value indicating if the database must be updated.
+	 * @return the number of projects removed
+	 */
+	int removeProjects(Collection<? extends Project> projects, boolean db) {
+		
+		boolean[] doomed = new boolean[portfolio.size()];
+		int count = 0;
+		for (Project p : projects) {
+			int index = locate(portfolio, p);
+			if (index >= 0 && !doomed[index]) {
+				doomed[index] = true;
+				count++;
+			}
+		}
+		return removeMarked(doomed, count, db);
+	}
+	
+	/**
+	 * Removes the marked projects, compacting the working ArrayList in one pass, rebuilding the status
+	 * partitions once and deleting them from the database in a single batch.
+	 * @param doomed	a Boolean value for each position of the working ArrayList, true to remove its project
+	 * @param count	the number of positions marked
+	 * @param db Boolean value indicating if the database must be updated.
+	 * @return the number of projects removed
+	 */
+	private int removeMarked(boolean[] doomed, int count, boolean db) {
+		
+		if (count == 0) {
+			return 0;
+		}
 		
+		detach();
+		ArrayList<Project> removed = new ArrayList<Project>(count);
+		int kept = 0;
+		for (int i=0; i<doomed.length; i++) {
+			Project p = portfolio.get(i);
+			if (doomed[i]) {
+				removed.add(p);
+			} else {
+				portfolio.set(kept++, p);
+			}
+		}
+		portfolio.subList(kept, portfolio.size()).clear();
+		repartition();
+		for (Project p : removed) {
+			unindexCode(p.getCode());
+			clientIndex.remove(p);
+			dateIndex.remove(p);
+			textIndex.remove(p);
+		}
+		if(db) {
+			ProjectDB.deleteAll(removed);
+		}
+		fireBatch(true);
+		for (Project p : removed) {
+			for (int k=0; k<listeners.size(); k++) {
+				listeners.get(k).projectRemoved(p);
+			}
+		}
+		fireBatch(false);
+		return removed.size();
+	}
+	
+	/**
+	 * Tells whether a replacement moves a project between OngoingProjects and FinishedProjects, in which
+	 * case its database record moves to the other table.
+	 * @param oldP	the Project object replaced
+	 * @param p	the Project object replacing it
+	 * @return true if the projects are of different types
+	 */
+	private static boolean changedType(Project oldP, Project p) {
+		return (oldP instanceof OngoingProject) != (p instanceof OngoingProject);
+	}
+	
+	/**
+	 * Tells the listeners that the changes of a batch operation start or finish being notified.
+	 * @param start	true before the changes are notified, false after them
+	 */
+	private void fireBatch(boolean start) {
+		for (int k=0; k<listeners.size(); k++) {
+			if (start) {
+				listeners.get(k).batchStarted(this);
+			} else {
+				listeners.get(k).batchFinished(this);
+			}
+		}
+	}
+	
+	/**
+	 * Rebuilds the status partitions from the working ArrayList in one pass, keeping the same lists
+	 * so that the read-only views stay valid. Called after a batch change.
+	 */
+	private void repartition() {
+		ongoing.clear();
+		finished.clear();
+		for (int i=0; i<portfolio.size(); i++) {
+			Project p = portfolio.get(i);
+			if (p instanceof OngoingProject) {
+				ongoing.add(p);
+			} else if (p instanceof FinishedProject) {
+				finished.add(p);
+			}
+		}
 	}
 	
 	/**
 	 * Calls the 'ProjectIO.save' method and passes the file where it should be stored and
 	 * the working ArrayList&#60;Project&#62;.
+	 * Saving to the file the portfolio was read from only appends the changes made since the last save
+	 * to its journal.
 	 * It catches the exception thrown by that method and displays an error message.
 	 * @param file	String containing the name of the file where the Arraylist should be saved
 	 * @return true if the file was successfully saved. false if there was an error
 	 * @see ProjectIO#save
+	 * @see ProjectJournal#save
 	 */
 	public boolean save(String file) {
 
-		
 		try {
-			ProjectIO.save(file, portfolio);
-			System.out.println("** File Saved **\n");
-			return true;
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
+			return saveTask(file).call();
+		} catch (Exception e) {
 			System.out.println("** FILE ERROR **\n");
 			return false;
 		}
 		
 	}
 	
+	/**
+	 * Takes the state of the portfolio to save to a file, in O(1), and returns the task writing it.
+	 * The task can run on any thread while the portfolio keeps changing: it saves the portfolio as it
+	 * was when this method was called, as <i>save</i> does, and returns true if the file was saved.
+	 * @param file	String containing the name of the file where the portfolio should be saved
+	 * @return a Callable&#60;Boolean&#62; writing the file
+	 * @see PortfolioSaver
+	 */
+	public Callable<Boolean> saveTask(final String file) {
+		final ProjectJournal j = journal != null && journal.getFile().equals(new File(file)) ? journal : null;
+		final ProjectJournal.Checkpoint checkpoint = j != null ? j.checkpoint(this) : null;
+		final List<Project> projects = j != null ? null : snapshot();
+		return new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				try {
+					if (j != null) {
+						j.save(checkpoint);
+					} else {
+						ProjectIO.save(file, projects, compression);
+					}
+					codes.save(sequenceFile(file));
+					System.out.println("** File Saved **\n");
+					return true;
+				} catch (IOException e) {
+					System.out.println("** FILE ERROR **\n");
+					return false;
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Sets the compression of the files saved from now on. Files are read whether they are compressed or not.
+	 * @param codec	the codec of BlockOutputStream, or BlockOutputStream.NONE
+	 * @see BlockOutputStream#codecOf
+	 */
+	public void setCompression(int codec) {
+		compression = codec;
+		if (journal != null) {
+			journal.setCompression(codec);
+		}
+	}
+	
+	/** @return the codec of BlockOutputStream the files are compressed with when saved */
+	public int getCompression() {
+		return compression;
+	}
+	
 	/**
 	 * Closes the database connection.
 	 */
@@ -328,15 +1256,51 @@ public class Portfolio {
 	}
 	
 	/**
-	 * Returns a new Project Code based on the last project code on the ArrayList in the format "P####"
+	 * Stops journaling the changes made to the portfolio.
+	 */
+	private void closeJournal() {
+		if (journal == null) {
+			return;
+		}
+		listeners.remove(journal);
+		try {
+			journal.close();
+		} catch (IOException e) {
+			System.out.println("** JOURNAL FILE ERROR **\n");
+		}
+		journal = null;
+	}
+	
+	/**
+	 * Returns a new Project Code in the format "P####", never used by any project in the portfolio.
+	 * Codes come from a CodeSequence, so concurrent callers get different codes, and the sequence is
+	 * saved next to the portfolio file so that codes handed out are not handed out again after reloading it.
 	 * @return A String representing the new project code.
 	 */
 	public String getNewCode() {
-		String lastCode = portfolio.get(portfolio.size()-1).getCode();
-		
-		String newCode = "P"+String.format("%04d", (Integer.parseInt(lastCode.substring(1))+1));
+		String newCode = codes.next();
 		
+		while (codeIndex.containsKey(foldCode(newCode))) {
+			newCode = codes.next();
+		}
 		return newCode;
 	}
 	
+	/**
+	 * Raises the code sequence past a code in use by a project that is not in the working ArrayList.
+	 * @param c	String representing the project code
+	 */
+	void observeCode(String c) {
+		codes.observe(c);
+	}
+	
+	/**
+	 * Returns the file holding the code sequence of a portfolio file.
+	 * @param file	String containing the name of the portfolio file
+	 * @return	a File object for the code sequence, next to the portfolio file
+	 */
+	private static File sequenceFile(String file) {
+		return new File(file + ".seq");
+	}
+	
 }
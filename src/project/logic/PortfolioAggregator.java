@@ -0,0 +1,384 @@
+package project.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A PortfolioAggregator computes totals and breakdowns over the projects of a Portfolio object.<br>
+ * Projects are grouped by a Key and the values read by a Measure are summarised in a Stats object per
+ * group, giving the count, sum, minimum, maximum, mean, weighted mean and percentiles. The projects are
+ * split into ranges that are summarised in parallel by a ForkJoinPool, and the partial results are merged
+ * pairwise. Small portfolios are summarised on the calling thread. A plain Portfolio object must not be
+ * changed while it is being summarised; a ConcurrentPortfolio can be, as it hands out a snapshot.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see Portfolio
+ */
+public class PortfolioAggregator {
+
+	/** Number of projects below which a range is summarised without splitting it further */
+	private static final int THRESHOLD = 4096;
+	/** Pool shared by the aggregators created without one */
+	private static ForkJoinPool defaultPool;
+	/** Calendar used by each thread to read years, as creating one per project dominates the grouping by year */
+	private static final ThreadLocal<Calendar> CALENDAR = new ThreadLocal<Calendar>() {
+		@Override
+		protected Calendar initialValue() {
+			return Calendar.getInstance();
+		}
+	};
+
+	/**
+	 * Groups projects by their client. Client names are normalised as in the client index of the portfolio,
+	 * ignoring case and extra spaces, and the groups are named by the normalised names
+	 */
+	public static final Key<String> CLIENT = new Key<String>() {
+		@Override
+		public String of(Project p) {
+			return ClientIndex.normalise(p.getClient());
+		}
+	};
+	/** Groups FinishedProjects by the year of their end date. OngoingProjects are left out */
+	public static final Key<Integer> END_YEAR = new Key<Integer>() {
+		@Override
+		public Integer of(Project p) {
+			return p instanceof FinishedProject ? year(((FinishedProject) p).getEndDate()) : null;
+		}
+	};
+	/** Groups projects by the year of their start date */
+	public static final Key<Integer> START_YEAR = new Key<Integer>() {
+		@Override
+		public Integer of(Project p) {
+			return year(p.getStartDate());
+		}
+	};
+
+	/** Budget of the OngoingProjects */
+	public static final Measure BUDGET = new Measure() {
+		@Override
+		public double of(Project p) {
+			return p instanceof OngoingProject ? ((OngoingProject) p).getBudget() : Double.NaN;
+		}
+	};
+	/** Completion percentage of the OngoingProjects */
+	public static final Measure COMPLETION = new Measure() {
+		@Override
+		public double of(Project p) {
+			return p instanceof OngoingProject ? ((OngoingProject) p).getCompletion() : Double.NaN;
+		}
+	};
+	/** Total cost of the FinishedProjects */
+	public static final Measure TOTAL_COST = new Measure() {
+		@Override
+		public double of(Project p) {
+			return p instanceof FinishedProject ? ((FinishedProject) p).getTotalCost() : Double.NaN;
+		}
+	};
+
+	/** The Portfolio object being summarised */
+	private Portfolio portfolio;
+	/** Pool running the parallel tasks */
+	private ForkJoinPool pool;
+
+	/**
+	 * Creates an aggregator running on a pool shared by all the aggregators, with one thread per processor.
+	 * @param p	the Portfolio object to summarise
+	 */
+	public PortfolioAggregator(Portfolio p) {
+		this(p, sharedPool());
+	}
+
+	/**
+	 * Creates an aggregator running on a given pool.
+	 * @param p	the Portfolio object to summarise
+	 * @param fj	the ForkJoinPool running the parallel tasks
+	 */
+	public PortfolioAggregator(Portfolio p, ForkJoinPool fj) {
+		portfolio = p;
+		pool = fj;
+	}
+
+	/**
+	 * Summarises a measure over the whole portfolio.
+	 * @param value	the Measure to summarise
+	 * @param weight	the Measure weighting each value, or null to weight them all by 1
+	 * @return a Stats object with the summary. Projects with a NaN value or weight are left out
+	 */
+	public Stats aggregate(Measure value, Measure weight) {
+		Stats s = groupBy(null, value, weight).get(null);
+		return s == null ? new Stats() : s;
+	}
+
+	/**
+	 * Summarises a measure for each group of projects.
+	 * @param key	the Key grouping the projects, or null to put them all in the group <i>null</i>
+	 * @param value	the Measure to summarise
+	 * @param weight	the Measure weighting each value, or null to weight them all by 1
+	 * @return a new Map from each group to its summary. Projects with a null key, or a NaN value or weight, are left out
+	 */
+	public <K> Map<K, Stats> groupBy(Key<K> key, Measure value, Measure weight) {
+		List<Project> projects = portfolio.scan();
+		Task<K> task = new Task<K>(projects, 0, projects.size(), key, value, weight);
+		if (projects.size() <= THRESHOLD) {
+			return task.compute();
+		}
+		return pool.invoke(task);
+	}
+
+	/** @return the sum of the budgets of the OngoingProjects of each client */
+	public Map<String, Stats> budgetByClient() {
+		return groupBy(CLIENT, BUDGET, null);
+	}
+
+	/** @return the sum of the total costs of the FinishedProjects finished each year */
+	public Map<Integer, Stats> totalCostByYear() {
+		return groupBy(END_YEAR, TOTAL_COST, null);
+	}
+
+	/** @return the mean completion of the OngoingProjects, weighted by their budgets */
+	public double weightedCompletion() {
+		return aggregate(COMPLETION, BUDGET).getWeightedMean();
+	}
+
+	/**
+	 * @param d	a Date object, can be null
+	 * @return the year of the date, or null
+	 */
+	private static Integer year(Date d) {
+		if (d == null) {
+			return null;
+		}
+		Calendar c = CALENDAR.get();
+		c.setTime(d);
+		return c.get(Calendar.YEAR);
+	}
+
+	/** @return the pool shared by the aggregators created without one */
+	private static synchronized ForkJoinPool sharedPool() {
+		if (defaultPool == null) {
+			defaultPool = new ForkJoinPool();
+		}
+		return defaultPool;
+	}
+
+	/**
+	 * Reads the group a project belongs to.
+	 */
+	public interface Key<K> {
+		/**
+		 * @param p	the Project object to read
+		 * @return the group of the project, or null to leave it out
+		 */
+		K of(Project p);
+	}
+
+	/**
+	 * Reads the value summarised for a project.
+	 */
+	public interface Measure {
+		/**
+		 * @param p	the Project object to read
+		 * @return the value for the project, or NaN to leave it out
+		 */
+		double of(Project p);
+	}
+
+	/**
+	 * Summary of the values of a group of projects.
+	 */
+	public static class Stats {
+
+		private int count;
+		private double sum;
+		private double min = Double.POSITIVE_INFINITY;
+		private double max = Double.NEGATIVE_INFINITY;
+		private double weights;
+		private double weightedSum;
+		/** The values added to this summary, kept for the percentiles */
+		private double[] values = new double[8];
+		private int size;
+		/** Summaries merged into this one. Their values are only copied when a percentile is asked */
+		private ArrayList<Stats> merged = new ArrayList<Stats>();
+		private boolean sorted = true;
+
+		/**
+		 * Adds a value to the summary.
+		 * @param v	the value
+		 * @param w	the weight of the value
+		 */
+		void add(double v, double w) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = v;
+			count++;
+			sorted = false;
+			sum += v;
+			min = Math.min(min, v);
+			max = Math.max(max, v);
+			weights += w;
+			weightedSum += v * w;
+		}
+
+		/**
+		 * Adds the values of another summary to this one.
+		 * @param s	the Stats object to merge
+		 */
+		void merge(Stats s) {
+			merged.add(s);
+			count += s.count;
+			sorted = false;
+			sum += s.sum;
+			min = Math.min(min, s.min);
+			max = Math.max(max, s.max);
+			weights += s.weights;
+			weightedSum += s.weightedSum;
+		}
+
+		/**
+		 * Copies the values of this summary and of the summaries merged into it.
+		 * @param to	the array receiving the values
+		 * @param at	the position of the first value in the array
+		 * @return the position after the last value copied
+		 */
+		private int collect(double[] to, int at) {
+			System.arraycopy(values, 0, to, at, size);
+			at += size;
+			for (int i=0; i<merged.size(); i++) {
+				at = merged.get(i).collect(to, at);
+			}
+			return at;
+		}
+
+		/** @return the number of values */
+		public int getCount() {
+			return count;
+		}
+
+		/** @return the sum of the values */
+		public double getSum() {
+			return sum;
+		}
+
+		/** @return the smallest value, or NaN if there are none */
+		public double getMin() {
+			return count == 0 ? Double.NaN : min;
+		}
+
+		/** @return the largest value, or NaN if there are none */
+		public double getMax() {
+			return count == 0 ? Double.NaN : max;
+		}
+
+		/** @return the mean of the values, or NaN if there are none */
+		public double getMean() {
+			return count == 0 ? Double.NaN : sum / count;
+		}
+
+		/** @return the mean of the values weighted by their weights, or NaN if the weights add up to 0 */
+		public double getWeightedMean() {
+			return weights == 0 ? Double.NaN : weightedSum / weights;
+		}
+
+		/**
+		 * Returns a percentile of the values, interpolating between the two closest values.
+		 * @param q	the percentile, between 0 and 100
+		 * @return the value below which <i>q</i> percent of the values fall, or NaN if there are none
+		 * @throws IllegalArgumentException when the percentile is out of range
+		 */
+		public synchronized double getPercentile(double q) throws IllegalArgumentException {
+			if (q < 0 || q > 100) {
+				throw new IllegalArgumentException("Percentile out of range: " + q);
+			}
+			if (count == 0) {
+				return Double.NaN;
+			}
+			if (!sorted) {
+				double[] all = new double[count];
+				collect(all, 0);
+				Arrays.sort(all);
+				values = all;
+				size = count;
+				merged.clear();
+				sorted = true;
+			}
+			double rank = q / 100 * (count - 1);
+			int lo = (int) Math.floor(rank);
+			int hi = (int) Math.ceil(rank);
+			return values[lo] + (values[hi] - values[lo]) * (rank - lo);
+		}
+	}
+
+	/**
+	 * Summarises a range of projects, splitting it in two halves summarised in parallel when it is large.
+	 */
+	private static class Task<K> extends RecursiveTask<Map<K, Stats>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private List<Project> projects;
+		private int from;
+		private int to;
+		private Key<K> key;
+		private Measure value;
+		private Measure weight;
+
+		Task(List<Project> p, int f, int t, Key<K> k, Measure v, Measure w) {
+			projects = p;
+			from = f;
+			to = t;
+			key = k;
+			value = v;
+			weight = w;
+		}
+
+		@Override
+		protected Map<K, Stats> compute() {
+			if (to - from > THRESHOLD) {
+				int mid = (from + to) >>> 1;
+				Task<K> left = new Task<K>(projects, from, mid, key, value, weight);
+				Task<K> right = new Task<K>(projects, mid, to, key, value, weight);
+				left.fork();
+				Map<K, Stats> result = right.compute();
+				Map<K, Stats> other = left.join();
+				for (Map.Entry<K, Stats> e : other.entrySet()) {
+					Stats s = result.get(e.getKey());
+					if (s == null) {
+						result.put(e.getKey(), e.getValue());
+					} else {
+						s.merge(e.getValue());
+					}
+				}
+				return result;
+			}
+
+			HashMap<K, Stats> result = new HashMap<K, Stats>();
+			for (int i=from; i<to; i++) {
+				Project p = projects.get(i);
+				K k = key == null ? null : key.of(p);
+				if (k == null && key != null) {
+					continue;
+				}
+				double v = value.of(p);
+				double w = weight == null ? 1 : weight.of(p);
+				if (Double.isNaN(v) || Double.isNaN(w)) {
+					continue;
+				}
+				Stats s = result.get(k);
+				if (s == null) {
+					s = new Stats();
+					result.put(k, s);
+				}
+				s.add(v, w);
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,314 @@
+package project.logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * A PortfolioHistory records every change made to a Portfolio object and allows undoing and redoing them.<br>
+ * Each version of the portfolio is described by the list of changes that led to it, and each change only
+ * keeps references to the Project objects it touched. Unchanged projects are shared by all the versions,
+ * so memory grows with the number of edits, not with the size of the portfolio, and undo, redo and
+ * <i>diff</i> cost O(changes). The changes made by a batch operation, such as <i>removeAll</i>, form a
+ * single entry that is undone and redone in one step, through the batch operations of the portfolio.<br>
+ * Project objects must not be edited in place for the history to hold their previous state: edits should
+ * replace a project with a modified copy through <i>Portfolio.replaceProject</i>. Reloading the portfolio
+ * clears the history. Changes whose project is no longer in the portfolio, because it was changed without
+ * being recorded, are skipped when undoing or redoing.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see Portfolio
+ * @see PortfolioListener
+ */
+public class PortfolioHistory implements PortfolioListener {
+
+	/** The Portfolio object being recorded */
+	private Portfolio portfolio;
+	/** Entries recorded, oldest first, each holding the changes of one edit or batch. Entries after <i>version</i> can be redone */
+	private ArrayList<ArrayList<Change>> changes = new ArrayList<ArrayList<Change>>();
+	/** Number of entries applied to reach the current version */
+	private int version = 0;
+	/** Entry collecting the changes of the batch in progress, or null outside batches */
+	private ArrayList<Change> batch = null;
+	/** true while the history itself is applying a change, so that it is not recorded again */
+	private boolean applying = false;
+
+	/**
+	 * Creates a history for a Portfolio object and starts recording its changes.
+	 * @param p	the Portfolio object to record
+	 */
+	public PortfolioHistory(Portfolio p) {
+		portfolio = p;
+		portfolio.addPortfolioListener(this);
+	}
+
+	/** @return an Integer identifying the current version. 0 is the version loaded or the oldest one kept */
+	public int getVersion() {
+		return version;
+	}
+
+	/** @return true if there is an entry that can be undone */
+	public boolean canUndo() {
+		return version > 0;
+	}
+
+	/** @return true if there is an undone entry that can be redone */
+	public boolean canRedo() {
+		return version < changes.size();
+	}
+
+	/**
+	 * Reverts the last edit or batch applied to the portfolio.
+	 * @param db Boolean value indicating if the database must be updated.
+	 * @return true if an entry was undone; false if there was nothing to undo
+	 */
+	public boolean undo(boolean db) {
+		if (!canUndo()) {
+			return false;
+		}
+		ArrayList<Change> entry = changes.get(version - 1);
+		if (!applyBatch(entry, false, db)) {
+			for (int i=entry.size()-1; i>=0; i--) {
+				Change c = entry.get(i);
+				apply(c.after, c.before, db);
+			}
+		}
+		version--;
+		return true;
+	}
+
+	/**
+	 * Applies again the last edit or batch undone.
+	 * @param db Boolean value indicating if the database must be updated.
+	 * @return true if an entry was redone; false if there was nothing to redo
+	 */
+	public boolean redo(boolean db) {
+		if (!canRedo()) {
+			return false;
+		}
+		ArrayList<Change> entry = changes.get(version);
+		if (!applyBatch(entry, true, db)) {
+			for (int i=0; i<entry.size(); i++) {
+				Change c = entry.get(i);
+				apply(c.before, c.after, db);
+			}
+		}
+		version++;
+		return true;
+	}
+
+	/**
+	 * Returns the changes separating a given version from the current one, in the order they must be
+	 * applied to go from that version to the current one.
+	 * @param v	an Integer identifying a version, between 0 and the number of entries recorded
+	 * @return	a List of Change objects. Changes going back in history have their before and after swapped.
+	 * @throws IndexOutOfBoundsException when the version does not exist
+	 */
+	public List<Change> diff(int v) throws IndexOutOfBoundsException {
+		if (v < 0 || v > changes.size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		ArrayList<Change> result = new ArrayList<Change>();
+		if (v <= version) {
+			for (int i=v; i<version; i++) {
+				result.addAll(changes.get(i));
+			}
+		} else {
+			for (int i=v-1; i>=version; i--) {
+				ArrayList<Change> entry = changes.get(i);
+				for (int j=entry.size()-1; j>=0; j--) {
+					Change c = entry.get(j);
+					result.add(new Change(c.after, c.before));
+				}
+			}
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Forgets all the recorded changes. The current state becomes version 0.
+	 */
+	public void clear() {
+		changes.clear();
+		version = 0;
+		batch = null;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void projectAdded(Project p) {
+		record(null, p);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void projectReplaced(Project oldP, Project p) {
+		record(oldP, p);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void projectRemoved(Project p) {
+		record(p, null);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void batchStarted(Portfolio p) {
+		if (!applying) {
+			batch = new ArrayList<Change>();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void batchFinished(Portfolio p) {
+		if (batch != null && !batch.isEmpty()) {
+			push(batch);
+		}
+		batch = null;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void portfolioReset(Portfolio p) {
+		clear();
+	}
+
+	/**
+	 * Records a change made to the portfolio, in the batch in progress or as an entry of its own.
+	 * @param before	the Project object before the change, or null for additions
+	 * @param after	the Project object after the change, or null for removals
+	 */
+	private void record(Project before, Project after) {
+		if (applying) {
+			return;
+		}
+		if (batch != null) {
+			batch.add(new Change(before, after));
+			return;
+		}
+		ArrayList<Change> entry = new ArrayList<Change>(1);
+		entry.add(new Change(before, after));
+		push(entry);
+	}
+
+	/**
+	 * Adds an entry after the current version, discarding the entries that could have been redone.
+	 * @param entry	the changes of one edit or batch
+	 */
+	private void push(ArrayList<Change> entry) {
+		while (changes.size() > version) {
+			changes.remove(changes.size() - 1);
+		}
+		changes.add(entry);
+		version++;
+	}
+
+	/**
+	 * Turns the project <i>from</i> into the project <i>to</i> in the portfolio.
+	 * @param from	the Project object currently in the portfolio, or null to add <i>to</i>
+	 * @param to	the Project object that must take its place, or null to remove <i>from</i>
+	 * Nothing is done if <i>from</i> is no longer in the portfolio.
+	 * @param db Boolean value indicating if the database must be updated.
+	 */
+	private void apply(Project from, Project to, boolean db) {
+		int index = from == null ? -1 : portfolio.indexOf(from);
+		if (from != null && index == -1) {
+			return;
+		}
+		applying = true;
+		try {
+			if (from == null) {
+				portfolio.add(to, db);
+			} else if (to == null) {
+				portfolio.remove(index, db);
+			} else {
+				portfolio.replaceProject(to, index, db);
+			}
+		} finally {
+			applying = false;
+		}
+	}
+
+	/**
+	 * Applies the changes of an entry through the batch operations of the portfolio, so that undoing or
+	 * redoing <i>m</i> changes costs one pass over the portfolio, one database batch and one batch of
+	 * events instead of <i>m</i> of each. Changes whose project is no longer in the portfolio are skipped.
+	 * @param entry	the changes of one edit or batch
+	 * @param forward	true to redo the changes, false to undo them
+	 * @param db Boolean value indicating if the database must be updated.
+	 * @return false if nothing was done because the changes must be applied one at a time: entries with a
+	 * single change, with a project touched by more than one change, or moving a project to another code
+	 */
+	private boolean applyBatch(ArrayList<Change> entry, boolean forward, boolean db) {
+		if (entry.size() < 2) {
+			return false;
+		}
+		ArrayList<Project> added = new ArrayList<Project>();
+		ArrayList<Project> removed = new ArrayList<Project>();
+		ArrayList<Project> replaced = new ArrayList<Project>();
+		ArrayList<Project> replacing = new ArrayList<Project>();
+		IdentityHashMap<Project, Boolean> touched = new IdentityHashMap<Project, Boolean>();
+		for (int i=0; i<entry.size(); i++) {
+			Change c = entry.get(i);
+			Project from = forward ? c.before : c.after;
+			Project to = forward ? c.after : c.before;
+			// The result of changes sharing a project depends on their order
+			if ((from != null && touched.put(from, Boolean.TRUE) != null) || (to != null && touched.put(to, Boolean.TRUE) != null)) {
+				return false;
+			}
+			if (from == null) {
+				added.add(to);
+			} else if (to == null) {
+				removed.add(from);
+			} else if (from.compareTo(to) == 0) {
+				replaced.add(from);
+				replacing.add(to);
+			} else {
+				return false;
+			}
+		}
+		applying = true;
+		try {
+			portfolio.removeProjects(removed, db);
+			portfolio.replaceProjects(replaced, replacing, db);
+			portfolio.addAll(added, db);
+		} finally {
+			applying = false;
+		}
+		return true;
+	}
+
+	/**
+	 * A Change describes one addition, replacement or removal made to a portfolio.
+	 */
+	public static class Change {
+
+		/** The Project object before the change. null for additions */
+		private final Project before;
+		/** The Project object after the change. null for removals */
+		private final Project after;
+
+		/**
+		 * Creates a new Change object.
+		 * @param b	the Project object before the change, or null for additions
+		 * @param a	the Project object after the change, or null for removals
+		 */
+		public Change(Project b, Project a) {
+			before = b;
+			after = a;
+		}
+
+		/** @return the Project object before the change, or null if the project was added */
+		public Project getBefore() {
+			return before;
+		}
+
+		/** @return the Project object after the change, or null if the project was removed */
+		public Project getAfter() {
+			return after;
+		}
+	}
+}
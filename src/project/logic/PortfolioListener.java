@@ -0,0 +1,52 @@
+package project.logic;
+
+/**
+ * The listener interface for receiving changes made to a Portfolio object.<br>
+ * Listeners are registered with <i>Portfolio.addPortfolioListener</i> and are notified after each
+ * change has been applied, so they can keep indexes, statistics or histories up to date without
+ * rescanning the portfolio.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see Portfolio
+ */
+public interface PortfolioListener {
+
+	/**
+	 * Invoked after a project has been added to the portfolio.
+	 * @param p	the Project object added
+	 */
+	void projectAdded(Project p);
+
+	/**
+	 * Invoked after a project has been replaced by another one. Both arguments can be the same
+	 * object if the project was edited in place.
+	 * @param oldP	the Project object that was replaced
+	 * @param p	the Project object that took its place
+	 */
+	void projectReplaced(Project oldP, Project p);
+
+	/**
+	 * Invoked after a project has been removed from the portfolio.
+	 * @param p	the Project object removed
+	 */
+	void projectRemoved(Project p);
+
+	/**
+	 * Invoked before the changes made by a batch operation, such as <i>addAll</i>, <i>replaceAll</i> or
+	 * <i>removeAll</i>, are notified one by one, so that they can be handled as a single change.
+	 * @param portfolio	the Portfolio object being changed
+	 */
+	void batchStarted(Portfolio portfolio);
+
+	/**
+	 * Invoked after every change made by a batch operation has been notified.
+	 * @param portfolio	the Portfolio object that was changed
+	 */
+	void batchFinished(Portfolio portfolio);
+
+	/**
+	 * Invoked after the whole portfolio has been reloaded from a file, a list or the database.
+	 * @param portfolio	the Portfolio object that was reloaded
+	 */
+	void portfolioReset(Portfolio portfolio);
+}
@@ -0,0 +1,157 @@
+package project.logic;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A PortfolioSaver saves a Portfolio object on a background thread, so that saving never blocks the
+ * thread changing the portfolio.<br>
+ * <i>save</i> takes the state of the portfolio with <i>Portfolio.saveTask</i>, which costs O(1) whatever
+ * the size of the portfolio, and hands the writing to the thread of the saver. The file is written as
+ * <i>Portfolio.save</i> writes it: through a temporary file renamed over it, or by appending to its
+ * journal. Completion is reported through the Future returned and the SaveListener given, if any.<br>
+ * Saves are coalesced: a save requested while another one of the same file is still waiting to be
+ * written replaces the state taken by the waiting one, so a burst of changes each followed by a save
+ * is written once, with the latest state, and every request of the burst shares the same result.
+ * A delay can be set for the saver to wait for the end of a burst before writing.<br>
+ * <i>save</i> must be called by the thread changing the portfolio.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see Portfolio#saveTask
+ * @see SaveListener
+ */
+public class PortfolioSaver {
+
+	/** The portfolio saved */
+	private final Portfolio portfolio;
+	/** Milliseconds a save waits for other requests before it is written */
+	private final long delay;
+	/** Thread writing the files */
+	private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "PortfolioSaver");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	/** Save waiting to be written, or null */
+	private Request waiting;
+	/** Last save scheduled, or null */
+	private Future<Boolean> last;
+
+	/**
+	 * Creates a saver writing each save as soon as the thread of the saver is free.
+	 * @param p	the Portfolio object to save
+	 */
+	public PortfolioSaver(Portfolio p) {
+		this(p, 0);
+	}
+
+	/**
+	 * Creates a saver.
+	 * @param p	the Portfolio object to save
+	 * @param d	a Long representing the milliseconds a save waits for other requests before it is written
+	 */
+	public PortfolioSaver(Portfolio p, long d) {
+		portfolio = p;
+		delay = d;
+	}
+
+	/**
+	 * Saves the portfolio to a file in the background.
+	 * @param file	String containing the name of the file where the portfolio should be saved
+	 * @return a Future holding true once the file has been saved, or false if there was an error
+	 */
+	public Future<Boolean> save(String file) {
+		return save(file, null);
+	}
+
+	/**
+	 * Saves the portfolio to a file in the background, and notifies an object once it has been written.
+	 * @param file	String containing the name of the file where the portfolio should be saved
+	 * @param l	the SaveListener to notify on the thread of the saver, or null
+	 * @return a Future holding true once the file has been saved, or false if there was an error
+	 */
+	public Future<Boolean> save(String file, SaveListener l) {
+		Callable<Boolean> task = portfolio.saveTask(file);
+		synchronized (this) {
+			Request r = waiting;
+			if (r == null || !r.file.equals(file)) {
+				r = new Request(file);
+				waiting = r;
+				r.future = writer.schedule(r, delay, TimeUnit.MILLISECONDS);
+				last = r.future;
+			}
+			r.task = task;
+			if (l != null) {
+				r.listeners.add(l);
+			}
+			return r.future;
+		}
+	}
+
+	/**
+	 * Waits for the saves requested so far to be written.
+	 * @throws InterruptedException when the calling thread is interrupted while waiting
+	 */
+	public void flush() throws InterruptedException {
+		Future<Boolean> f;
+		synchronized (this) {
+			f = last;
+		}
+		if (f == null) {
+			return;
+		}
+		try {
+			f.get();
+		} catch (ExecutionException e) {
+			// Reported through the Future of the save
+		}
+	}
+
+	/**
+	 * Stops the thread of the saver once the saves requested so far have been written.
+	 */
+	public void shutdown() {
+		writer.shutdown();
+	}
+
+	/**
+	 * A save waiting to be written, holding the latest state taken and the listeners of every request.
+	 */
+	private class Request implements Callable<Boolean> {
+		private final String file;
+		private Callable<Boolean> task;
+		private ArrayList<SaveListener> listeners = new ArrayList<SaveListener>();
+		private Future<Boolean> future;
+
+		Request(String f) {
+			file = f;
+		}
+
+		@Override
+		public Boolean call() throws Exception {
+			Callable<Boolean> t;
+			ArrayList<SaveListener> l;
+			synchronized (PortfolioSaver.this) {
+				if (waiting == this) {
+					waiting = null;
+				}
+				t = task;
+				l = listeners;
+			}
+			boolean success = t.call();
+			for (int i=0; i<l.size(); i++) {
+				l.get(i).saveCompleted(file, success);
+			}
+			return success;
+		}
+	}
+}
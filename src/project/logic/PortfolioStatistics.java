@@ -0,0 +1,284 @@
+package project.logic;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A PortfolioStatistics object keeps live statistics of a Portfolio object, updated as it changes.<br>
+ * It counts the projects of each kind, adds up the budgets and total costs, keeps a histogram of the
+ * completion of the OngoingProjects, counts the overdue projects and keeps per-client totals. Every
+ * addition, replacement and removal updates them in O(1), so reading them never rescans the portfolio.
+ * Reloading the portfolio rebuilds them.<br>
+ * Overdue projects are the OngoingProjects with a deadline before today. Deadlines are counted per day,
+ * so when the day changes only the deadlines falling between the old and the new day are moved.<br>
+ * As with PortfolioHistory, projects must be replaced with modified copies rather than edited in place,
+ * so that the values they were counted with can be taken out.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see Portfolio#getStatistics()
+ * @see PortfolioListener
+ */
+public class PortfolioStatistics implements PortfolioListener {
+
+	/**
+	 * Number of buckets of the completion histogram: ten of 10% each, from 0-9% to 90-99%, and one more for
+	 * OngoingProjects at 100%. Completions below 0% fall in the first bucket and above 100% in the last.
+	 */
+	public static final int BUCKETS = 11;
+
+	private int ongoing;
+	private int finished;
+	private double budget;
+	private double totalCost;
+	private long completion;
+	/** OngoingProjects per completion bucket */
+	private int[] histogram = new int[BUCKETS];
+	/** Number of OngoingProjects with a deadline on each epoch day */
+	private HashMap<Integer, int[]> deadlines = new HashMap<Integer, int[]>();
+	/** Number of OngoingProjects with a deadline before <i>today</i> */
+	private int overdue;
+	/** Epoch day the overdue count refers to */
+	private int today;
+	/** Totals by normalised client name */
+	private HashMap<String, Totals> clients = new HashMap<String, Totals>();
+
+	/**
+	 * Creates the statistics of a Portfolio object and keeps them up to date with its changes.
+	 * @param p	the Portfolio object to follow
+	 */
+	public PortfolioStatistics(Portfolio p) {
+		this();
+		portfolioReset(p);
+		p.addPortfolioListener(this);
+	}
+
+	/**
+	 * Creates empty statistics. The owner must notify them of the changes.
+	 */
+	PortfolioStatistics() {
+		today = Project.toEpochDay(new Date());
+	}
+
+	/** @return the number of OngoingProjects */
+	public synchronized int getOngoingCount() {
+		return ongoing;
+	}
+
+	/** @return the number of FinishedProjects */
+	public synchronized int getFinishedCount() {
+		return finished;
+	}
+
+	/** @return the sum of the budgets of the OngoingProjects */
+	public synchronized double getTotalBudget() {
+		return budget;
+	}
+
+	/** @return the sum of the total costs of the FinishedProjects */
+	public synchronized double getTotalCost() {
+		return totalCost;
+	}
+
+	/** @return the mean completion of the OngoingProjects, or 0 if there are none */
+	public synchronized double getAverageCompletion() {
+		return ongoing == 0 ? 0 : (double) completion / ongoing;
+	}
+
+	/**
+	 * Returns the completion histogram of the OngoingProjects. Bucket <i>i</i> counts the projects between
+	 * <i>i</i>*10% and <i>i</i>*10+9%, and the last bucket the projects at 100%, as described in BUCKETS.
+	 * @return a new int array with BUCKETS counts
+	 */
+	public synchronized int[] getCompletionHistogram() {
+		return histogram.clone();
+	}
+
+	/** @return the number of OngoingProjects with a deadline before today */
+	public int getOverdueCount() {
+		return getOverdueCount(Project.toEpochDay(new Date()));
+	}
+
+	/**
+	 * @param day	an Integer representing the reference epoch day
+	 * @return the number of OngoingProjects with a deadline before the given day
+	 */
+	public synchronized int getOverdueCount(int day) {
+		moveTo(day);
+		return overdue;
+	}
+
+	/**
+	 * @param client	String representing the client. Case and extra spaces are ignored
+	 * @return the number of projects of the client
+	 */
+	public synchronized int getClientCount(String client) {
+		Totals t = clients.get(ClientIndex.normalise(client));
+		return t == null ? 0 : t.count;
+	}
+
+	/**
+	 * @param client	String representing the client. Case and extra spaces are ignored
+	 * @return the sum of the budgets of the OngoingProjects of the client
+	 */
+	public synchronized double getClientBudget(String client) {
+		Totals t = clients.get(ClientIndex.normalise(client));
+		return t == null ? 0 : t.budget;
+	}
+
+	/**
+	 * @param client	String representing the client. Case and extra spaces are ignored
+	 * @return the sum of the total costs of the FinishedProjects of the client
+	 */
+	public synchronized double getClientTotalCost(String client) {
+		Totals t = clients.get(ClientIndex.normalise(client));
+		return t == null ? 0 : t.cost;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void projectAdded(Project p) {
+		count(p, 1);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void projectReplaced(Project oldP, Project p) {
+		count(oldP, -1);
+		count(p, 1);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void projectRemoved(Project p) {
+		count(p, -1);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void batchStarted(Portfolio p) {
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void batchFinished(Portfolio p) {
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void portfolioReset(Portfolio p) {
+		ongoing = 0;
+		finished = 0;
+		budget = 0;
+		totalCost = 0;
+		completion = 0;
+		histogram = new int[BUCKETS];
+		deadlines.clear();
+		overdue = 0;
+		clients.clear();
+		for (Project project : p.getPortfolio()) {
+			count(project, 1);
+		}
+	}
+
+	/**
+	 * Adds a project to the statistics or takes it out of them.
+	 * @param p	the Project object
+	 * @param sign	1 to add the project, -1 to take it out
+	 */
+	private void count(Project p, int sign) {
+		double b = 0;
+		double c = 0;
+		if (p instanceof OngoingProject) {
+			OngoingProject op = (OngoingProject) p;
+			b = op.getBudget();
+			ongoing += sign;
+			budget += sign * b;
+			completion += sign * op.getCompletion();
+			histogram[bucket(op.getCompletion())] += sign;
+			int day = Project.toEpochDay(op.getDeadline());
+			if (day != Project.NO_DATE) {
+				int[] n = deadlines.get(day);
+				if (n == null) {
+					n = new int[1];
+					deadlines.put(day, n);
+				}
+				n[0] += sign;
+				if (n[0] == 0) {
+					deadlines.remove(day);
+				}
+				if (day < today) {
+					overdue += sign;
+				}
+			}
+			if (ongoing == 0) {
+				budget = 0;
+			}
+		} else if (p instanceof FinishedProject) {
+			c = ((FinishedProject) p).getTotalCost();
+			finished += sign;
+			totalCost = finished == 0 ? 0 : totalCost + sign * c;
+		} else {
+			return;
+		}
+
+		String key = ClientIndex.normalise(p.getClient());
+		Totals t = clients.get(key);
+		if (t == null) {
+			t = new Totals();
+			clients.put(key, t);
+		}
+		t.count += sign;
+		t.budget += sign * b;
+		t.cost += sign * c;
+		if (t.count == 0) {
+			clients.remove(key);
+		}
+	}
+
+	/**
+	 * Moves the overdue count to another day, counting only the deadlines between the two days.
+	 * @param day	an Integer representing the new reference epoch day
+	 */
+	private void moveTo(int day) {
+		if (day == today) {
+			return;
+		}
+		int from = Math.min(day, today);
+		int to = Math.max(day, today);
+		int sign = day > today ? 1 : -1;
+		if ((long) to - from <= deadlines.size()) {
+			for (int d=from; d<to; d++) {
+				int[] n = deadlines.get(d);
+				if (n != null) {
+					overdue += sign * n[0];
+				}
+			}
+		} else {
+			for (Map.Entry<Integer, int[]> e : deadlines.entrySet()) {
+				int d = e.getKey();
+				if (d >= from && d < to) {
+					overdue += sign * e.getValue()[0];
+				}
+			}
+		}
+		today = day;
+	}
+
+	/**
+	 * @param completion	an Integer representing a completion percentage
+	 * @return the histogram bucket of the percentage
+	 */
+	private static int bucket(int completion) {
+		return Math.max(0, Math.min(BUCKETS - 1, completion / 10));
+	}
+
+	/**
+	 * Running totals of one client.
+	 */
+	private static class Totals {
+		int count;
+		double budget;
+		double cost;
+	}
+}
@@ -2,7 +2,9 @@ package project.logic;
 
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.TimeZone;
 import static project.ui.ProjectUI.DATE_FORMAT;
 
 /**
@@ -17,6 +19,11 @@ abstract public class Project implements Serializable, Comparable<Project> {
 	
 	private static final long serialVersionUID = -5164726797294313603L;
 	
+	/** Integer used in place of an epoch day when a project has no date set */
+	public static final int NO_DATE = Integer.MIN_VALUE;
+	/** Number of milliseconds in a day */
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+	
 	// Attributes definition
 	
 	/** A String storing the project code */
@@ -28,8 +35,14 @@ abstract public class Project implements Serializable, Comparable<Project> {
 	/** A Date object storing the start date of the project */
 	protected Date startDate;
 	
-	/** SimpleDateFormat object used to parse strings into Date objects */
-	protected SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+	/** SimpleDateFormat objects used to format Date objects, one per thread as SimpleDateFormat is not thread-safe.
+	 * Shared by all the Project objects instead of being stored (and serialized) with each of them. */
+	private static final ThreadLocal<SimpleDateFormat> DATE_FORMATTER = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat(DATE_FORMAT);
+		}
+	};
 			
 	//Constructors definition
 	
@@ -141,10 +154,52 @@ abstract public class Project implements Serializable, Comparable<Project> {
 	 * @return	a String representation of the object
 	 */
 	public String toString() {
-		return (projectCode + "%"+projectName+"%"+dateFormat.format(startDate)+"%"+client); // String formatted for file use
+		return (projectCode + "%"+projectName+"%"+formatDate(startDate)+"%"+client); // String formatted for file use
 		
 	}
 	
+	/**
+	 * Formats a Date object with the default date format using the shared formatter.
+	 * @param d	the Date object to be formatted
+	 * @return	a String representation of the date
+	 */
+	protected static String formatDate(Date d) {
+		return DATE_FORMATTER.get().format(d);
+	}
+	
+	/**
+	 * Converts a Date object into the number of local calendar days since 01-01-1970.
+	 * @param d	the Date object to be converted. Can be null.
+	 * @return	an Integer representing the epoch day, or NO_DATE if <i>d</i> is null
+	 */
+	public static int toEpochDay(Date d) {
+		if (d == null) {
+			return NO_DATE;
+		}
+		long local = d.getTime() + TimeZone.getDefault().getOffset(d.getTime());
+		long day = local / MILLIS_PER_DAY;
+		if (local % MILLIS_PER_DAY < 0) {
+			day--;
+		}
+		return (int) day;
+	}
+	
+	/**
+	 * Converts an epoch day back into a Date object set at local midnight.
+	 * @param day	an Integer representing the number of days since 01-01-1970
+	 * @return	a Date object, or null if <i>day</i> is NO_DATE
+	 */
+	public static Date fromEpochDay(int day) {
+		if (day == NO_DATE) {
+			return null;
+		}
+		Calendar c = Calendar.getInstance();
+		c.clear();
+		c.set(1970, Calendar.JANUARY, 1);
+		c.add(Calendar.DAY_OF_MONTH, day);
+		return c.getTime();
+	}
+	
 	/**
 	 * Abstract method to be implemented in the subtype classes. Compares this project object with the <i>p</i> parameter object.
 	 * @param p	A Project object to be compared with this object
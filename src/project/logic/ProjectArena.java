@@ -0,0 +1,271 @@
+package project.logic;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Date;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A ProjectArena stores projects outside of the Java heap, in direct ByteBuffers.<br>
+ * Each project is kept as a fixed-width record in a record buffer, and its Strings are kept UTF-8 encoded
+ * in a separate string buffer. Project objects are only materialised when a record is read with
+ * <i>get</i>, so the heap footprint and the garbage collector load do not grow with the number of
+ * projects stored.<br>
+ * The arena is a List&#60;Project&#62;, so it can be handed to anything that reads projects by position,
+ * such as ProjectColumns or the GUI table models. Dates are stored as epoch days, so materialised
+ * projects have their dates set at local midnight.<br>
+ * ProjectIO.openArena fills an arena straight from a portfolio file, decoding one project at a time.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see Project
+ * @see Portfolio
+ * @see project.io.ProjectIO#openArena
+ */
+public class ProjectArena extends AbstractList<Project> implements RandomAccess {
+
+	/** Charset used to encode the Strings */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	/** Size in bytes of a project record */
+	private static final int RECORD_SIZE = 40;
+	/** Record type for OngoingProjects */
+	private static final byte ONGOING = 0;
+	/** Record type for FinishedProjects */
+	private static final byte FINISHED = 1;
+	/** Initial number of records allocated */
+	private static final int INITIAL_RECORDS = 1024;
+
+	// Offsets of the fields inside a record
+	private static final int TYPE = 0;
+	private static final int CODE = 4;
+	private static final int NAME = 8;
+	private static final int CLIENT = 12;
+	private static final int START = 16;
+	/** Deadline for OngoingProjects, end date for FinishedProjects */
+	private static final int DATE = 20;
+	/** Budget for OngoingProjects, total cost for FinishedProjects */
+	private static final int AMOUNT = 24;
+	private static final int COMPLETION = 32;
+
+	/** Off-heap buffer holding the fixed-width project records */
+	private ByteBuffer records;
+	/** Off-heap buffer holding the length-prefixed UTF-8 Strings */
+	private ByteBuffer strings;
+	/** Number of records in the arena */
+	private int size;
+
+	/** Default constructor. Creates an empty arena */
+	public ProjectArena() {
+		records = ByteBuffer.allocateDirect(INITIAL_RECORDS * RECORD_SIZE);
+		strings = ByteBuffer.allocateDirect(INITIAL_RECORDS * 32);
+	}
+
+	/**
+	 * Creates an arena holding a copy of a list of projects, in the same order.
+	 * @param projects	a List&#60;Project&#62; with the data to store
+	 */
+	public ProjectArena(List<Project> projects) {
+		records = ByteBuffer.allocateDirect(Math.max(INITIAL_RECORDS, projects.size()) * RECORD_SIZE);
+		strings = ByteBuffer.allocateDirect(Math.max(INITIAL_RECORDS, projects.size()) * 32);
+		for (int i=0; i<projects.size(); i++) {
+			add(projects.get(i));
+		}
+	}
+
+	/**
+	 * Creates an arena holding a copy of the projects of a Portfolio object, sorted by code.
+	 * @param p	the Portfolio object to copy
+	 */
+	public ProjectArena(Portfolio p) {
+		this(p.getPortfolio());
+	}
+
+	/**
+	 * Appends a project to the arena.
+	 * @param p	the Project object to store
+	 * @return	true
+	 */
+	@Override
+	public boolean add(Project p) {
+		if ((size + 1) * RECORD_SIZE > records.capacity()) {
+			records = grow(records, (int) Math.min(Integer.MAX_VALUE, 2L * records.capacity()));
+		}
+		write(size, p);
+		size++;
+		modCount++;
+		return true;
+	}
+
+	/**
+	 * Overwrites the record at a given position. The Strings of the old record stay in the string
+	 * buffer until the arena is rebuilt.
+	 * @param index	Integer representing the position of the record
+	 * @param p	the new Project object
+	 * @return	the Project object previously stored at that position
+	 */
+	@Override
+	public Project set(int index, Project p) {
+		Project old = get(index);
+		write(index, p);
+		return old;
+	}
+
+	/**
+	 * Materialises the project stored at a given position.
+	 * @param index	Integer representing the position of the record
+	 * @return	a new Project object with the data of the record
+	 * @throws IndexOutOfBoundsException when the index is negative or not smaller than the arena size
+	 */
+	@Override
+	public Project get(int index) throws IndexOutOfBoundsException {
+		int base = offset(index);
+		String code = readString(records.getInt(base + CODE));
+		String name = readString(records.getInt(base + NAME));
+		String client = readString(records.getInt(base + CLIENT));
+		Date start = Project.fromEpochDay(records.getInt(base + START));
+		Date date = Project.fromEpochDay(records.getInt(base + DATE));
+		double amount = records.getDouble(base + AMOUNT);
+
+		if (records.get(base + TYPE) == ONGOING) {
+			return new OngoingProject(code, name, start, client, date, amount, records.getInt(base + COMPLETION));
+		}
+		return new FinishedProject(code, name, start, client, date, amount);
+	}
+
+	/**
+	 * Reads only the code of the project stored at a given position, without materialising it.
+	 * @param index	Integer representing the position of the record
+	 * @return	a String representing the project code
+	 */
+	public String getCode(int index) {
+		return readString(records.getInt(offset(index) + CODE));
+	}
+
+	/**
+	 * Binary searches the arena by project code, decoding only the codes it visits. The arena must
+	 * hold the projects sorted by code, as it does when built from a Portfolio.
+	 * @param c	String representing the required project code
+	 * @return	the index of the record with the given code, or -(insertion point)-1 if not found
+	 */
+	public int findByCode(String c) {
+		int low = 0;
+		int high = size - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = getCode(mid).compareToIgnoreCase(c);
+
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+
+		return -(low + 1);
+	}
+
+	/** @return the number of records in the arena */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/** @return the number of off-heap bytes currently allocated by the arena */
+	public long getAllocatedBytes() {
+		return (long) records.capacity() + strings.capacity();
+	}
+
+	/**
+	 * Encodes a project into the record at a given position.
+	 * @param index	Integer representing the position of the record
+	 * @param p	the Project object to encode
+	 */
+	private void write(int index, Project p) {
+		int base = index * RECORD_SIZE;
+		records.putInt(base + CODE, writeString(p.getCode()));
+		records.putInt(base + NAME, writeString(p.getName()));
+		records.putInt(base + CLIENT, writeString(p.getClient()));
+		records.putInt(base + START, Project.toEpochDay(p.getStartDate()));
+
+		if (p instanceof OngoingProject) {
+			OngoingProject op = (OngoingProject) p;
+			records.put(base + TYPE, ONGOING);
+			records.putInt(base + DATE, Project.toEpochDay(op.getDeadline()));
+			records.putDouble(base + AMOUNT, op.getBudget());
+			records.putInt(base + COMPLETION, op.getCompletion());
+		} else {
+			FinishedProject fp = (FinishedProject) p;
+			records.put(base + TYPE, FINISHED);
+			records.putInt(base + DATE, Project.toEpochDay(fp.getEndDate()));
+			records.putDouble(base + AMOUNT, fp.getTotalCost());
+			records.putInt(base + COMPLETION, 0);
+		}
+	}
+
+	/**
+	 * Appends a String to the string buffer. It is stored after its length plus one, as ProjectWriter
+	 * does, so that a length of 0 stands for null.
+	 * @param s	the String to store, or null
+	 * @return	the offset of the String in the string buffer
+	 */
+	private int writeString(String s) {
+		byte[] bytes = s == null ? new byte[0] : s.getBytes(UTF8);
+		int needed = strings.position() + 4 + bytes.length;
+		if (needed > strings.capacity()) {
+			strings = grow(strings, (int) Math.max(needed, Math.min(Integer.MAX_VALUE, 2L * strings.capacity())));
+		}
+		int offset = strings.position();
+		strings.putInt(s == null ? 0 : bytes.length + 1);
+		strings.put(bytes);
+		return offset;
+	}
+
+	/**
+	 * Reads a String from the string buffer.
+	 * @param offset	Integer representing the offset of the String
+	 * @return	the decoded String, or null
+	 */
+	private String readString(int offset) {
+		int length = strings.getInt(offset) - 1;
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		ByteBuffer view = strings.duplicate();
+		view.position(offset + 4);
+		view.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * @param index	Integer representing the position of a record
+	 * @return	the byte offset of the record
+	 * @throws IndexOutOfBoundsException when the index is negative or not smaller than the arena size
+	 */
+	private int offset(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return index * RECORD_SIZE;
+	}
+
+	/**
+	 * Copies a buffer into a larger direct buffer.
+	 * @param buffer	the ByteBuffer to copy. Its position marks the end of the used bytes for the string buffer.
+	 * @param capacity	Integer representing the new capacity in bytes
+	 * @return	the new ByteBuffer, positioned after the copied bytes
+	 */
+	private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+		ByteBuffer bigger = ByteBuffer.allocateDirect(capacity);
+		ByteBuffer old = buffer.duplicate();
+		int used = old.position();
+		old.clear();
+		bigger.put(old);
+		bigger.position(used);
+		return bigger;
+	}
+}
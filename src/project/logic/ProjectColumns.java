@@ -0,0 +1,374 @@
+package project.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A ProjectColumns object stores the projects of a Portfolio column by column in primitive arrays,
+ * so that analytic scans (totals, averages, overdue checks) run over contiguous memory without
+ * touching Project objects, boxing values or checking types.<br>
+ * Dates are stored as epoch days, and codes and clients are dictionary encoded. The store is a copy:
+ * it must be reloaded to reflect later changes to the Portfolio.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see Portfolio
+ * @see Project#toEpochDay(java.util.Date)
+ */
+public class ProjectColumns {
+
+	/** Initial capacity of the column arrays */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** Number of rows in the store */
+	private int size;
+	/** Dictionary ids of the project codes */
+	private int[] codes;
+	/** Dictionary ids of the project clients */
+	private int[] clients;
+	/** true for OngoingProject rows; false for FinishedProject rows */
+	private boolean[] ongoing;
+	/** Budgets of the OngoingProject rows. 0 for FinishedProject rows */
+	private double[] budgets;
+	/** Total costs of the FinishedProject rows. 0 for OngoingProject rows */
+	private double[] costs;
+	/** Completion of the OngoingProject rows. 0 for FinishedProject rows */
+	private int[] completion;
+	/** Start dates as epoch days */
+	private int[] startDays;
+	/** Deadlines as epoch days. Project.NO_DATE for FinishedProject rows */
+	private int[] deadlineDays;
+	/** End dates as epoch days. Project.NO_DATE for OngoingProject rows */
+	private int[] endDays;
+	/** Dictionary of project codes */
+	private Dictionary codeDictionary = new Dictionary();
+	/** Dictionary of project clients */
+	private Dictionary clientDictionary = new Dictionary();
+
+	/** Default constructor. Creates an empty store */
+	public ProjectColumns() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Creates a store loaded with the projects of a Portfolio object.
+	 * @param p	the Portfolio object to load
+	 */
+	public ProjectColumns(Portfolio p) {
+		load(p.getPortfolio());
+	}
+
+	/**
+	 * Replaces the contents of the store with a list of projects, keeping their order.
+	 * @param projects	a List&#60;Project&#62; with the data to load
+	 */
+	public void load(List<Project> projects) {
+		allocate(Math.max(INITIAL_CAPACITY, projects.size()));
+		size = 0;
+		codeDictionary = new Dictionary();
+		clientDictionary = new Dictionary();
+		for (int i=0; i<projects.size(); i++) {
+			add(projects.get(i));
+		}
+	}
+
+	/**
+	 * Appends a project to the store.
+	 * @param p	the Project object to append
+	 */
+	public void add(Project p) {
+		if (size == codes.length) {
+			grow();
+		}
+		int row = size++;
+		codes[row] = codeDictionary.encode(p.getCode());
+		clients[row] = clientDictionary.encode(p.getClient());
+		startDays[row] = Project.toEpochDay(p.getStartDate());
+		if (p instanceof OngoingProject) {
+			OngoingProject op = (OngoingProject) p;
+			ongoing[row] = true;
+			budgets[row] = op.getBudget();
+			costs[row] = 0;
+			completion[row] = op.getCompletion();
+			deadlineDays[row] = Project.toEpochDay(op.getDeadline());
+			endDays[row] = Project.NO_DATE;
+		} else {
+			FinishedProject fp = (FinishedProject) p;
+			ongoing[row] = false;
+			budgets[row] = 0;
+			costs[row] = fp.getTotalCost();
+			completion[row] = 0;
+			deadlineDays[row] = Project.NO_DATE;
+			endDays[row] = Project.toEpochDay(fp.getEndDate());
+		}
+	}
+
+	/** @return the number of rows in the store */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param row	Integer representing the row
+	 * @return the project code of the row
+	 */
+	public String getCode(int row) {
+		checkRow(row);
+		return codeDictionary.decode(codes[row]);
+	}
+
+	/**
+	 * @param row	Integer representing the row
+	 * @return the client of the row
+	 */
+	public String getClient(int row) {
+		checkRow(row);
+		return clientDictionary.decode(clients[row]);
+	}
+
+	/**
+	 * @param row	Integer representing the row
+	 * @return true if the row holds an OngoingProject
+	 */
+	public boolean isOngoing(int row) {
+		checkRow(row);
+		return ongoing[row];
+	}
+
+	/**
+	 * @param row	Integer representing the row
+	 * @return the start date of the row as an epoch day
+	 */
+	public int getStartDay(int row) {
+		checkRow(row);
+		return startDays[row];
+	}
+
+	/**
+	 * @param row	Integer representing the row
+	 * @return the deadline of the row as an epoch day, or Project.NO_DATE
+	 */
+	public int getDeadlineDay(int row) {
+		checkRow(row);
+		return deadlineDays[row];
+	}
+
+	/**
+	 * @param row	Integer representing the row
+	 * @return the end date of the row as an epoch day, or Project.NO_DATE
+	 */
+	public int getEndDay(int row) {
+		checkRow(row);
+		return endDays[row];
+	}
+
+	/** @return the number of distinct clients in the store */
+	public int getClientCount() {
+		return clientDictionary.size();
+	}
+
+	/** @return the sum of the budgets of all the OngoingProjects */
+	public double totalBudget() {
+		double total = 0;
+		for (int i=0; i<size; i++) {
+			total += budgets[i];
+		}
+		return total;
+	}
+
+	/** @return the sum of the total costs of all the FinishedProjects */
+	public double totalCost() {
+		double total = 0;
+		for (int i=0; i<size; i++) {
+			total += costs[i];
+		}
+		return total;
+	}
+
+	/** @return the mean completion of the OngoingProjects, or 0 if there are none */
+	public double averageCompletion() {
+		long total = 0;
+		int count = 0;
+		for (int i=0; i<size; i++) {
+			if (ongoing[i]) {
+				total += completion[i];
+				count++;
+			}
+		}
+		return count == 0 ? 0 : (double) total / count;
+	}
+
+	/**
+	 * Counts the OngoingProjects whose deadline is before a given day.
+	 * @param today	an Integer representing the reference epoch day
+	 * @return the number of overdue projects
+	 */
+	public int countOverdue(int today) {
+		int count = 0;
+		for (int i=0; i<size; i++) {
+			int d = deadlineDays[i];
+			if (d != Project.NO_DATE && d < today) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the rows of the OngoingProjects whose deadline is before a given day.
+	 * @param today	an Integer representing the reference epoch day
+	 * @return an int array with the overdue rows, in store order
+	 */
+	public int[] overdueRows(int today) {
+		int[] rows = new int[countOverdue(today)];
+		int n = 0;
+		for (int i=0; i<size && n<rows.length; i++) {
+			int d = deadlineDays[i];
+			if (d != Project.NO_DATE && d < today) {
+				rows[n++] = i;
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Sums the budgets of the OngoingProjects of each client.
+	 * @return a double array indexed by client id. Use getClientName to decode the ids.
+	 */
+	public double[] budgetByClient() {
+		double[] totals = new double[clientDictionary.size()];
+		for (int i=0; i<size; i++) {
+			totals[clients[i]] += budgets[i];
+		}
+		return totals;
+	}
+
+	/**
+	 * Sums the total costs of the FinishedProjects of each client.
+	 * @return a double array indexed by client id. Use getClientName to decode the ids.
+	 */
+	public double[] costByClient() {
+		double[] totals = new double[clientDictionary.size()];
+		for (int i=0; i<size; i++) {
+			totals[clients[i]] += costs[i];
+		}
+		return totals;
+	}
+
+	/**
+	 * @param id	Integer representing a client id
+	 * @return the client name for the id
+	 */
+	public String getClientName(int id) {
+		return clientDictionary.decode(id);
+	}
+
+	/**
+	 * Sums the budgets of the OngoingProjects of one client.
+	 * @param client	String representing the client
+	 * @return the total budget, or 0 if the client is unknown
+	 */
+	public double budgetOf(String client) {
+		int id = clientDictionary.lookup(client);
+		if (id < 0) {
+			return 0;
+		}
+		double total = 0;
+		for (int i=0; i<size; i++) {
+			if (clients[i] == id) {
+				total += budgets[i];
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Allocates empty column arrays.
+	 * @param capacity	Integer representing the number of rows to allocate
+	 */
+	private void allocate(int capacity) {
+		codes = new int[capacity];
+		clients = new int[capacity];
+		ongoing = new boolean[capacity];
+		budgets = new double[capacity];
+		costs = new double[capacity];
+		completion = new int[capacity];
+		startDays = new int[capacity];
+		deadlineDays = new int[capacity];
+		endDays = new int[capacity];
+	}
+
+	/**
+	 * Doubles the capacity of the column arrays.
+	 */
+	private void grow() {
+		int capacity = codes.length * 2;
+		codes = Arrays.copyOf(codes, capacity);
+		clients = Arrays.copyOf(clients, capacity);
+		ongoing = Arrays.copyOf(ongoing, capacity);
+		budgets = Arrays.copyOf(budgets, capacity);
+		costs = Arrays.copyOf(costs, capacity);
+		completion = Arrays.copyOf(completion, capacity);
+		startDays = Arrays.copyOf(startDays, capacity);
+		deadlineDays = Arrays.copyOf(deadlineDays, capacity);
+		endDays = Arrays.copyOf(endDays, capacity);
+	}
+
+	/**
+	 * @param row	Integer representing the row
+	 * @throws IndexOutOfBoundsException when the row is negative or not smaller than the store size
+	 */
+	private void checkRow(int row) throws IndexOutOfBoundsException {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * Maps Strings to consecutive integer ids and back.
+	 */
+	private static class Dictionary {
+
+		/** Strings in id order */
+		private ArrayList<String> values = new ArrayList<String>();
+		/** Ids of the Strings */
+		private HashMap<String, Integer> ids = new HashMap<String, Integer>();
+
+		/**
+		 * @param s	a String to encode
+		 * @return the id of the String, adding it to the dictionary if needed
+		 */
+		int encode(String s) {
+			Integer id = ids.get(s);
+			if (id == null) {
+				id = values.size();
+				values.add(s);
+				ids.put(s, id);
+			}
+			return id;
+		}
+
+		/**
+		 * @param s	a String to look up
+		 * @return the id of the String, or -1 if it is not in the dictionary
+		 */
+		int lookup(String s) {
+			Integer id = ids.get(s);
+			return id == null ? -1 : id;
+		}
+
+		/**
+		 * @param id	an Integer id
+		 * @return the String with that id
+		 */
+		String decode(int id) {
+			return values.get(id);
+		}
+
+		/** @return the number of Strings in the dictionary */
+		int size() {
+			return values.size();
+		}
+	}
+}
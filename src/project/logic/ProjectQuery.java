@@ -0,0 +1,614 @@
+package project.logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * A ProjectQuery selects projects from a Portfolio object.<br>
+ * Criteria, ordering and paging are chained on the query and nothing is read until it is iterated:
+ * <pre>
+ * for (String code : portfolio.query().ongoing().client("Acme").offset(20).limit(10).select(ProjectQuery.CODE)) { ... }
+ * </pre>
+ * When iteration starts, a small planner picks the cheapest source for the criteria: the client index,
+ * the status partitions, the date index or the trigram index, and the whole portfolio only when none of
+ * them applies. The criteria the source does not answer are checked on each candidate as it is read, so
+ * results are produced one at a time without intermediate lists, unless an ordering other than by code
+ * was requested, which requires collecting the matches first. With a limit, only the first
+ * <i>offset + limit</i> matches are kept, in a bounded heap, instead of sorting them all.<br>
+ * Each criterion can be set once; setting it again replaces the previous value. Results are in code order
+ * unless <i>orderBy</i> is used. The Portfolio object must not be changed while the results of a plain
+ * Portfolio are being iterated; a ConcurrentPortfolio hands the query copies and can be changed freely.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see Portfolio#query()
+ */
+public class ProjectQuery implements Iterable<Project> {
+
+	/** Candidate counts below which the date and text indexes are not worth looking up */
+	private static final int SMALL = 32;
+	/** Sources of candidates the planner can choose from */
+	private static final int FROM_SCAN = 0, FROM_ONGOING = 1, FROM_FINISHED = 2, FROM_CLIENT = 3, FROM_DEADLINES = 4,
+		FROM_END_DATES = 5, FROM_ACTIVE = 6, FROM_TEXT = 7;
+	/** Names of the sources, used by <i>explain</i> */
+	private static final String[] SOURCES = {"portfolio", "ongoing", "finished", "client index", "deadline index",
+		"end date index", "active period index", "text index"};
+
+	/** Projection reading the code of each project */
+	public static final Projection<String> CODE = new Projection<String>() {
+		@Override
+		public String get(Project p) {
+			return p.getCode();
+		}
+	};
+	/** Projection reading the name of each project */
+	public static final Projection<String> NAME = new Projection<String>() {
+		@Override
+		public String get(Project p) {
+			return p.getName();
+		}
+	};
+	/** Projection reading the client of each project */
+	public static final Projection<String> CLIENT = new Projection<String>() {
+		@Override
+		public String get(Project p) {
+			return p.getClient();
+		}
+	};
+
+	/** The Portfolio object being queried */
+	private Portfolio portfolio;
+	/** Class the projects must belong to, or null for any */
+	private Class<? extends Project> type;
+	/** Client the projects must belong to, or null for any */
+	private String client;
+	/** Text the name or client must contain, or null for any */
+	private String text;
+	/** Window the projects must be active in, or null for any */
+	private Date activeFrom, activeTo;
+	/** Range the deadlines must be in, or null for any */
+	private Date deadlineFrom, deadlineTo;
+	/** Range the end dates must be in, or null for any */
+	private Date endFrom, endTo;
+	/** Additional conditions given by the caller */
+	private ArrayList<Filter> filters = new ArrayList<Filter>();
+	/** Order of the results, or null for code order */
+	private Comparator<Project> order;
+	/** Number of results skipped */
+	private int offset = 0;
+	/** Maximum number of results */
+	private int limit = Integer.MAX_VALUE;
+	/** Description of the last plan used */
+	private String plan;
+
+	/**
+	 * Creates a query returning every project of a Portfolio object.
+	 * @param p	the Portfolio object to query
+	 */
+	ProjectQuery(Portfolio p) {
+		portfolio = p;
+	}
+
+	/** Restricts the query to OngoingProjects.
+	 * @return this ProjectQuery object */
+	public ProjectQuery ongoing() {
+		type = OngoingProject.class;
+		return this;
+	}
+
+	/** Restricts the query to FinishedProjects.
+	 * @return this ProjectQuery object */
+	public ProjectQuery finished() {
+		type = FinishedProject.class;
+		return this;
+	}
+
+	/**
+	 * Restricts the query to the projects of a client. Client names are compared ignoring case and extra spaces.
+	 * @param c	String representing the client
+	 * @return this ProjectQuery object
+	 */
+	public ProjectQuery client(String c) {
+		client = c;
+		return this;
+	}
+
+	/**
+	 * Restricts the query to the projects whose name or client contains a text, ignoring case.
+	 * @param t	String to look for
+	 * @return this ProjectQuery object
+	 */
+	public ProjectQuery matching(String t) {
+		text = t;
+		return this;
+	}
+
+	/**
+	 * Restricts the query to the projects active at some point between two dates, both included.
+	 * @param from	a Date object representing the first day of the window, or null for no lower bound
+	 * @param to	a Date object representing the last day of the window, or null for no upper bound
+	 * @return this ProjectQuery object
+	 */
+	public ProjectQuery activeBetween(Date from, Date to) {
+		activeFrom = from;
+		activeTo = to;
+		return this;
+	}
+
+	/**
+	 * Restricts the query to the OngoingProjects with a deadline between two dates, both included.
+	 * @param from	a Date object representing the first day of the range, or null for no lower bound
+	 * @param to	a Date object representing the last day of the range, or null for no upper bound
+	 * @return this ProjectQuery object
+	 */
+	public ProjectQuery deadlineBetween(Date from, Date to) {
+		deadlineFrom = from;
+		deadlineTo = to;
+		return this;
+	}
+
+	/**
+	 * Restricts the query to the FinishedProjects with an end date between two dates, both included.
+	 * @param from	a Date object representing the first day of the range, or null for no lower bound
+	 * @param to	a Date object representing the last day of the range, or null for no upper bound
+	 * @return this ProjectQuery object
+	 */
+	public ProjectQuery finishedBetween(Date from, Date to) {
+		endFrom = from;
+		endTo = to;
+		return this;
+	}
+
+	/**
+	 * Adds a condition the projects must meet. Conditions are checked after the indexed criteria.
+	 * @param f	the Filter object to add
+	 * @return this ProjectQuery object
+	 */
+	public ProjectQuery where(Filter f) {
+		filters.add(f);
+		return this;
+	}
+
+	/**
+	 * Sorts the results.
+	 * @param c	the Comparator defining the order, or null for code order
+	 * @return this ProjectQuery object
+	 */
+	public ProjectQuery orderBy(Comparator<Project> c) {
+		order = c;
+		return this;
+	}
+
+	/**
+	 * Skips the first results.
+	 * @param n	an Integer representing the number of results to skip
+	 * @return this ProjectQuery object
+	 * @throws IllegalArgumentException when the number is negative
+	 */
+	public ProjectQuery offset(int n) throws IllegalArgumentException {
+		if (n < 0) {
+			throw new IllegalArgumentException("Negative offset: " + n);
+		}
+		offset = n;
+		return this;
+	}
+
+	/**
+	 * Limits the number of results.
+	 * @param n	an Integer representing the maximum number of results
+	 * @return this ProjectQuery object
+	 * @throws IllegalArgumentException when the number is negative
+	 */
+	public ProjectQuery limit(int n) throws IllegalArgumentException {
+		if (n < 0) {
+			throw new IllegalArgumentException("Negative limit: " + n);
+		}
+		limit = n;
+		return this;
+	}
+
+	/**
+	 * Restricts the results to one page. Pages past the largest offset are empty.
+	 * @param number	an Integer representing the page, starting at 0
+	 * @param size	an Integer representing the number of results per page
+	 * @return this ProjectQuery object
+	 * @throws IllegalArgumentException when the page or the size is negative
+	 */
+	public ProjectQuery page(int number, int size) throws IllegalArgumentException {
+		if (number < 0) {
+			throw new IllegalArgumentException("Negative page: " + number);
+		}
+		limit(size);
+		return offset((int) Math.min((long) number * size, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Runs the query. The projects are read as the iterator advances.
+	 * @return an Iterator over the matching projects
+	 */
+	@Override
+	public Iterator<Project> iterator() {
+		ArrayList<Filter> residual = new ArrayList<Filter>();
+		List<Project> source = plan(residual);
+		if (order == null) {
+			return new Results(source.iterator(), residual, offset, limit);
+		}
+		Iterator<Project> it = new Results(source.iterator(), residual, 0, Integer.MAX_VALUE);
+		List<Project> matches;
+		if (limit < Integer.MAX_VALUE - offset) {
+			// Only the first offset + limit matches are needed: keep them in a bounded heap
+			matches = TopK.select(it, offset + limit, order);
+		} else {
+			matches = new ArrayList<Project>();
+			while (it.hasNext()) {
+				matches.add(it.next());
+			}
+			Collections.sort(matches, order);
+		}
+		return new Results(matches.iterator(), new ArrayList<Filter>(), offset, limit);
+	}
+
+	/**
+	 * Runs the query reading a single field of each project.
+	 * @param f	the Projection reading the field
+	 * @return an Iterable over the field of the matching projects
+	 */
+	public <T> Iterable<T> select(final Projection<T> f) {
+		return new Iterable<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				final Iterator<Project> it = ProjectQuery.this.iterator();
+				return new Iterator<T>() {
+					@Override
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+
+					@Override
+					public T next() {
+						return f.get(it.next());
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Runs the query and collects the results.
+	 * @return a new List&#60;Project&#62; with the matching projects
+	 */
+	public List<Project> list() {
+		ArrayList<Project> result = new ArrayList<Project>();
+		for (Project p : this) {
+			result.add(p);
+		}
+		return result;
+	}
+
+	/**
+	 * Runs the query and counts the results, without collecting them.
+	 * @return the number of matching projects
+	 */
+	public int count() {
+		int n = 0;
+		Iterator<Project> it = iterator();
+		while (it.hasNext()) {
+			it.next();
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Runs the query until the first result.
+	 * @return the first matching Project object, or null if there is none
+	 */
+	public Project first() {
+		Iterator<Project> it = iterator();
+		return it.hasNext() ? it.next() : null;
+	}
+
+	/**
+	 * Describes how the query was last run.
+	 * @return a String naming the source and the criteria checked on each candidate, or null if the query has not run
+	 */
+	public String explain() {
+		return plan;
+	}
+
+	/**
+	 * Chooses the source of candidates for the query.
+	 * @param residual	receives the conditions the source does not answer
+	 * @return the candidate projects, in code order unless <i>orderBy</i> is used
+	 */
+	private List<Project> plan(List<Filter> residual) {
+		int source = FROM_SCAN;
+		int size = portfolio.getOngoingCount() + portfolio.getFinishedCount();
+		if (type == OngoingProject.class && portfolio.getOngoingCount() < size) {
+			source = FROM_ONGOING;
+			size = portfolio.getOngoingCount();
+		} else if (type == FinishedProject.class && portfolio.getFinishedCount() < size) {
+			source = FROM_FINISHED;
+			size = portfolio.getFinishedCount();
+		}
+		if (client != null && portfolio.getClientProjectCount(client) < size) {
+			source = FROM_CLIENT;
+			size = portfolio.getClientProjectCount(client);
+		}
+
+		// The date lookups are counted only up to the best size so far, and the text lookup is estimated
+		// from its rarest trigram; only the list of the chosen source is built
+		if (size > SMALL) {
+			if (deadlineFrom != null || deadlineTo != null) {
+				int n = portfolio.countDeadlinesBetween(deadlineFrom, deadlineTo, size);
+				if (n < size) {
+					source = FROM_DEADLINES;
+					size = n;
+				}
+			}
+			if (endFrom != null || endTo != null) {
+				int n = portfolio.countFinishedBetween(endFrom, endTo, size);
+				if (n < size) {
+					source = FROM_END_DATES;
+					size = n;
+				}
+			}
+			if (activeFrom != null || activeTo != null) {
+				int n = portfolio.countProjectsActiveBetween(activeFrom, activeTo, size);
+				if (n < size) {
+					source = FROM_ACTIVE;
+					size = n;
+				}
+			}
+			if (text != null) {
+				int n = portfolio.estimateSearch(text);
+				if (n < size) {
+					source = FROM_TEXT;
+					size = n;
+				}
+			}
+		}
+
+		List<Project> candidates;
+		switch (source) {
+		case FROM_ONGOING:
+			candidates = portfolio.getOngoingProjects();
+			break;
+		case FROM_FINISHED:
+			candidates = portfolio.getFinishedProjects();
+			break;
+		case FROM_CLIENT:
+			candidates = portfolio.getProjectsByClient(client);
+			break;
+		case FROM_DEADLINES:
+			candidates = portfolio.getDeadlinesBetween(deadlineFrom, deadlineTo);
+			break;
+		case FROM_END_DATES:
+			candidates = portfolio.getFinishedBetween(endFrom, endTo);
+			break;
+		case FROM_ACTIVE:
+			candidates = portfolio.getProjectsActiveBetween(activeFrom, activeTo);
+			break;
+		case FROM_TEXT:
+			candidates = portfolio.search(text);
+			break;
+		default:
+			candidates = portfolio.scan();
+		}
+		// Index lookups return new lists ordered by client insertion or by date
+		if (order == null && source != FROM_SCAN && source != FROM_ONGOING && source != FROM_FINISHED && source != FROM_TEXT) {
+			Collections.sort(candidates);
+		}
+
+		StringBuilder checks = new StringBuilder();
+		if (type != null && source != FROM_ONGOING && source != FROM_FINISHED) {
+			residual.add(new TypeFilter(type));
+			checks.append(" type");
+		}
+		if (client != null && source != FROM_CLIENT) {
+			residual.add(new ClientFilter(client));
+			checks.append(" client");
+		}
+		if ((deadlineFrom != null || deadlineTo != null) && source != FROM_DEADLINES) {
+			residual.add(new DateFilter(DateFilter.DEADLINE, deadlineFrom, deadlineTo));
+			checks.append(" deadline");
+		}
+		if ((endFrom != null || endTo != null) && source != FROM_END_DATES) {
+			residual.add(new DateFilter(DateFilter.END, endFrom, endTo));
+			checks.append(" end date");
+		}
+		if ((activeFrom != null || activeTo != null) && source != FROM_ACTIVE) {
+			residual.add(new DateFilter(DateFilter.ACTIVE, activeFrom, activeTo));
+			checks.append(" active");
+		}
+		if (text != null && source != FROM_TEXT) {
+			residual.add(new TextFilter(text));
+			checks.append(" text");
+		}
+		if (!filters.isEmpty()) {
+			residual.addAll(filters);
+			checks.append(" filters");
+		}
+		plan = SOURCES[source] + " (" + candidates.size() + " candidates)" + (checks.length() > 0 ? ", checking" + checks : "");
+		return candidates;
+	}
+
+	/**
+	 * A condition a project must meet to be part of the results.
+	 */
+	public interface Filter {
+		/**
+		 * @param p	the Project object to check
+		 * @return true if the project meets the condition
+		 */
+		boolean accept(Project p);
+	}
+
+	/**
+	 * Reads one field of a project, so that queries can return it instead of the whole project.
+	 */
+	public interface Projection<T> {
+		/**
+		 * @param p	the Project object to read
+		 * @return the value of the field
+		 */
+		T get(Project p);
+	}
+
+	/**
+	 * Iterator returning the candidates that meet every condition, after skipping and up to a limit.
+	 */
+	private static class Results implements Iterator<Project> {
+
+		private Iterator<Project> source;
+		private List<Filter> conditions;
+		private int skip;
+		private int remaining;
+		/** The next result, or null if it has not been looked for */
+		private Project next;
+
+		Results(Iterator<Project> s, List<Filter> c, int offset, int limit) {
+			source = s;
+			conditions = c;
+			skip = offset;
+			remaining = limit;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && remaining > 0 && source.hasNext()) {
+				Project p = source.next();
+				if (accept(p)) {
+					if (skip > 0) {
+						skip--;
+					} else {
+						next = p;
+					}
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public Project next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Project p = next;
+			next = null;
+			remaining--;
+			return p;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private boolean accept(Project p) {
+			for (int i=0; i<conditions.size(); i++) {
+				if (!conditions.get(i).accept(p)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static class TypeFilter implements Filter {
+		private Class<? extends Project> type;
+
+		TypeFilter(Class<? extends Project> t) {
+			type = t;
+		}
+
+		@Override
+		public boolean accept(Project p) {
+			return type.isInstance(p);
+		}
+	}
+
+	private static class ClientFilter implements Filter {
+		private String client;
+
+		ClientFilter(String c) {
+			client = ClientIndex.normalise(c);
+		}
+
+		@Override
+		public boolean accept(Project p) {
+			return client.equals(ClientIndex.normalise(p.getClient()));
+		}
+	}
+
+	private static class TextFilter implements Filter {
+		private String text;
+
+		TextFilter(String t) {
+			text = t.toLowerCase(Locale.ROOT);
+		}
+
+		@Override
+		public boolean accept(Project p) {
+			return contains(p.getName()) || contains(p.getClient());
+		}
+
+		private boolean contains(String s) {
+			return s != null && s.toLowerCase(Locale.ROOT).contains(text);
+		}
+	}
+
+	/**
+	 * Checks the same date ranges as the DateIndex, comparing epoch days with both bounds included.
+	 */
+	private static class DateFilter implements Filter {
+		static final int DEADLINE = 0, END = 1, ACTIVE = 2;
+
+		private int field;
+		private int from;
+		private int to;
+
+		DateFilter(int f, Date fromDate, Date toDate) {
+			field = f;
+			// A null bound is open. The lower one stops just after NO_DATE, which marks projects without a date
+			from = fromDate == null ? Project.NO_DATE + 1 : Project.toEpochDay(fromDate);
+			to = toDate == null ? Integer.MAX_VALUE : Project.toEpochDay(toDate);
+		}
+
+		@Override
+		public boolean accept(Project p) {
+			int day;
+			switch (field) {
+			case DEADLINE:
+				if (!(p instanceof OngoingProject)) {
+					return false;
+				}
+				day = Project.toEpochDay(((OngoingProject) p).getDeadline());
+				return day != Project.NO_DATE && day >= from && day <= to;
+			case END:
+				if (!(p instanceof FinishedProject)) {
+					return false;
+				}
+				day = Project.toEpochDay(((FinishedProject) p).getEndDate());
+				return day != Project.NO_DATE && day >= from && day <= to;
+			default:
+				int end = Integer.MAX_VALUE;
+				if (p instanceof FinishedProject) {
+					int e = Project.toEpochDay(((FinishedProject) p).getEndDate());
+					end = e == Project.NO_DATE ? end : e;
+				}
+				return from <= to && Project.toEpochDay(p.getStartDate()) <= to && end >= from;
+			}
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package project.logic;
+
+/**
+ * Interface for objects notified by a PortfolioSaver when a save they requested has been written.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see PortfolioSaver
+ */
+public interface SaveListener {
+
+	/**
+	 * Invoked on the thread of the PortfolioSaver once the file has been written, or has failed to be.
+	 * @param file	String containing the name of the file saved
+	 * @param success	true if the file was saved, false if there was an error
+	 */
+	void saveCompleted(String file, boolean success);
+}
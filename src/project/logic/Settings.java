@@ -3,6 +3,7 @@ package project.logic;
 import java.io.IOException;
 import java.io.Serializable;
 
+import project.io.BlockOutputStream;
 import project.io.ProjectIO;
 /**
  * An object of this class will store the user preferences and program defaults
@@ -24,6 +25,8 @@ public class Settings implements Serializable {
 	protected String defaultsFile;
 	/** a boolean flag. True if the back end DB should be updated dynamically; false if DB should not dynamically updated. <strong>Default: true</strong>*/
 	protected boolean updateDB;
+	/** a String storing the name of the codec the portfolio files are compressed with. <strong>Default: None</strong> */
+	protected String compression;
 	
 	/** Default constructor. Creates a new Settings object with default values */
 	public Settings() {
@@ -32,6 +35,7 @@ public class Settings implements Serializable {
 		workingFile = "portfolio.obj";
 		defaultsFile = "defaults.obj";
 		updateDB = true;
+		compression = BlockOutputStream.CODECS[BlockOutputStream.NONE];
 	}
 	/**
 	 * Creates a new settings object with the data from another Settings object.
@@ -43,6 +47,7 @@ public class Settings implements Serializable {
 		workingFile = s.getWorkingFile();
 		defaultsFile = s.getDefaultsFile();
 		updateDB = s.isUpdateDB();
+		compression = s.getCompression();
 	}
 	
 	/** @return a String representing the default date format for the application */
@@ -87,6 +92,16 @@ public class Settings implements Serializable {
 		this.updateDB = updateDB;
 	}
 	
+	/** @return a String representing the name of the codec the portfolio files are compressed with, as in BlockOutputStream.CODECS */
+	public String getCompression() {
+		// Settings saved by earlier versions have no compression
+		return compression == null ? BlockOutputStream.CODECS[BlockOutputStream.NONE] : compression;
+	}
+	/** @param compression a String representing the name of the codec the portfolio files are compressed with, as in BlockOutputStream.CODECS */
+	public void setCompression(String compression) {
+		this.compression = compression;
+	}
+	
 	/**
 	 * Saves the Settings object to the default settings file
 	 * @return true if settings successfully saved.
@@ -123,6 +138,7 @@ public class Settings implements Serializable {
 		workingFile = s.getWorkingFile();
 		defaultsFile = s.getDefaultsFile();
 		updateDB = s.isUpdateDB();
+		compression = s.getCompression();
 		
 		System.out.println("** Settings read **");		
 		System.out.println(toString());
@@ -138,7 +154,8 @@ public class Settings implements Serializable {
 				"\n GUI: " + GUI +
 				"\n Working file: " + workingFile +
 				"\n Defaults file: " + defaultsFile +
-				"\n Dynamic DB Update: " + updateDB;
+				"\n Dynamic DB Update: " + updateDB +
+				"\n Compression: " + getCompression();
 	}
 	
 }
@@ -0,0 +1,267 @@
+package project.logic;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Trigram inverted index of a Portfolio over the project names and clients.<br>
+ * Every lower-cased name and client is split into its three-character substrings, and each trigram points
+ * to the projects containing it. A substring search only verifies the projects that contain all the
+ * trigrams of the query, and a fuzzy search ranks projects by how many trigrams they share with it.
+ * Queries shorter than three characters cannot use trigrams and are answered by checking every project.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see Portfolio
+ */
+class TextIndex {
+
+	/** Projects containing each trigram */
+	private HashMap<String, LinkedHashSet<Project>> postings = new HashMap<String, LinkedHashSet<Project>>();
+	/** Text and trigrams each project was indexed with */
+	private IdentityHashMap<Project, Entry> entries = new IdentityHashMap<Project, Entry>();
+
+	/**
+	 * Adds a project to the index.
+	 * @param p	the Project object to index
+	 */
+	void add(Project p) {
+		if (entries.containsKey(p)) {
+			return;
+		}
+		Entry e = new Entry();
+		e.name = fold(p.getName());
+		e.client = fold(p.getClient());
+		LinkedHashSet<String> grams = new LinkedHashSet<String>();
+		trigrams(e.name, grams);
+		trigrams(e.client, grams);
+		e.trigrams = grams.toArray(new String[grams.size()]);
+		entries.put(p, e);
+
+		for (int i=0; i<e.trigrams.length; i++) {
+			LinkedHashSet<Project> set = postings.get(e.trigrams[i]);
+			if (set == null) {
+				set = new LinkedHashSet<Project>();
+				postings.put(e.trigrams[i], set);
+			}
+			set.add(p);
+		}
+	}
+
+	/**
+	 * Removes a project from the index.
+	 * @param p	the Project object to remove
+	 */
+	void remove(Project p) {
+		Entry e = entries.remove(p);
+		if (e == null) {
+			return;
+		}
+		for (int i=0; i<e.trigrams.length; i++) {
+			LinkedHashSet<Project> set = postings.get(e.trigrams[i]);
+			if (set != null) {
+				set.remove(p);
+				if (set.isEmpty()) {
+					postings.remove(e.trigrams[i]);
+				}
+			}
+		}
+	}
+
+	/** Removes every project from the index */
+	void clear() {
+		postings.clear();
+		entries.clear();
+	}
+
+	/**
+	 * Finds the projects whose name or client contains a text, ignoring case.
+	 * @param text	String to look for
+	 * @return a new List with the matching projects, in no particular order
+	 */
+	List<Project> search(String text) {
+		String query = fold(text);
+		ArrayList<Project> result = new ArrayList<Project>();
+		if (query.length() < 3) {
+			for (Map.Entry<Project, Entry> e : entries.entrySet()) {
+				if (e.getValue().contains(query)) {
+					result.add(e.getKey());
+				}
+			}
+			return result;
+		}
+
+		LinkedHashSet<String> grams = new LinkedHashSet<String>();
+		trigrams(query, grams);
+		// Walk the rarest trigram and check the rest of the query on each candidate
+		LinkedHashSet<Project> rarest = null;
+		for (String g : grams) {
+			LinkedHashSet<Project> set = postings.get(g);
+			if (set == null) {
+				return result;
+			}
+			if (rarest == null || set.size() < rarest.size()) {
+				rarest = set;
+			}
+		}
+		for (Project p : rarest) {
+			if (entries.get(p).contains(query)) {
+				result.add(p);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Estimates the number of projects <i>search</i> returns for a text without looking them up: the
+	 * number of candidates it checks, which is never less than the number of matches.
+	 * @param text	String to look for
+	 * @return an Integer representing the number of candidates
+	 */
+	int estimate(String text) {
+		String query = fold(text);
+		if (query.length() < 3) {
+			return entries.size();
+		}
+		LinkedHashSet<String> grams = new LinkedHashSet<String>();
+		trigrams(query, grams);
+		int rarest = entries.size();
+		for (String g : grams) {
+			LinkedHashSet<Project> set = postings.get(g);
+			if (set == null) {
+				return 0;
+			}
+			rarest = Math.min(rarest, set.size());
+		}
+		return rarest;
+	}
+
+	/**
+	 * Ranks the projects by similarity of their name and client to a text, so that misspelt or partial
+	 * queries still find them. Projects containing the text rank first, then projects sharing the
+	 * largest proportion of trigrams with it.<br>
+	 * Texts shorter than a trigram only find the projects containing them, ranked by where the text is
+	 * found: the whole name or client first, then the start of one, the start of a word, and anywhere.
+	 * Projects ranked alike are ordered by code.
+	 * @param text	String to look for
+	 * @param limit	Integer representing the maximum number of results
+	 * @return a new List with the best matching projects, best first
+	 */
+	List<Project> searchRanked(String text, int limit) {
+		String query = fold(text);
+		if (limit <= 0) {
+			return new ArrayList<Project>();
+		}
+		if (query.length() < 3) {
+			final String q = query;
+			return TopK.select(search(text).iterator(), limit, new Comparator<Project>() {
+				@Override
+				public int compare(Project a, Project b) {
+					int cmp = entries.get(a).rank(q) - entries.get(b).rank(q);
+					return cmp != 0 ? cmp : a.compareTo(b);
+				}
+			});
+		}
+
+		LinkedHashSet<String> grams = new LinkedHashSet<String>();
+		trigrams(query, grams);
+		IdentityHashMap<Project, int[]> shared = new IdentityHashMap<Project, int[]>();
+		for (String g : grams) {
+			LinkedHashSet<Project> set = postings.get(g);
+			if (set != null) {
+				for (Project p : set) {
+					int[] count = shared.get(p);
+					if (count == null) {
+						shared.put(p, new int[] {1});
+					} else {
+						count[0]++;
+					}
+				}
+			}
+		}
+
+		final IdentityHashMap<Project, Double> scores = new IdentityHashMap<Project, Double>();
+		for (Map.Entry<Project, int[]> e : shared.entrySet()) {
+			Entry entry = entries.get(e.getKey());
+			int common = e.getValue()[0];
+			double score = (double) common / (grams.size() + entry.trigrams.length - common);
+			if (entry.contains(query)) {
+				score += 1;
+			}
+			scores.put(e.getKey(), score);
+		}
+
+		// Only the best matches are ordered, in O(n log limit)
+		return TopK.select(scores.keySet().iterator(), limit, new Comparator<Project>() {
+			@Override
+			public int compare(Project a, Project b) {
+				int cmp = Double.compare(scores.get(b), scores.get(a));
+				return cmp != 0 ? cmp : a.compareTo(b);
+			}
+		});
+	}
+
+	/** @return the number of projects in the index */
+	int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @param s	a String, can be null
+	 * @return the String in lower case, or an empty String
+	 */
+	private static String fold(String s) {
+		return s == null ? "" : s.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Adds the trigrams of a text to a set.
+	 * @param s	the text to split
+	 * @param grams	the set receiving the trigrams
+	 */
+	private static void trigrams(String s, LinkedHashSet<String> grams) {
+		for (int i=0; i+3<=s.length(); i++) {
+			grams.add(s.substring(i, i+3));
+		}
+	}
+
+	/**
+	 * The folded text and trigrams a project was indexed with.
+	 */
+	private static class Entry {
+		String name;
+		String client;
+		String[] trigrams;
+
+		/**
+		 * @param query	a folded text
+		 * @return true if the name or the client contain the text
+		 */
+		boolean contains(String query) {
+			return name.contains(query) || client.contains(query);
+		}
+
+		/**
+		 * @param query	a folded text contained in the name or the client
+		 * @return 0 if the name or the client are the text, 1 if one starts with it, 2 if a word of one
+		 * starts with it, 3 otherwise
+		 */
+		int rank(String query) {
+			if (name.equals(query) || client.equals(query)) {
+				return 0;
+			}
+			if (name.startsWith(query) || client.startsWith(query)) {
+				return 1;
+			}
+			if (name.contains(" " + query) || client.contains(" " + query)) {
+				return 2;
+			}
+			return 3;
+		}
+	}
+}
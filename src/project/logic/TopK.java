@@ -0,0 +1,92 @@
+package project.logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Selects the first elements of a sequence in a given order without sorting all of it.<br>
+ * A heap holds the best <i>k</i> elements seen so far with the worst of them on top, so each element costs
+ * at most O(log k) and the selection O(n log k) time and O(k) memory. Elements that compare equal keep
+ * the order in which they were read, giving the same result as a stable sort followed by a cut.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ * @see Portfolio#getHighestTotalCosts(int)
+ * @see ProjectQuery
+ * @see TextIndex
+ */
+final class TopK {
+
+	private TopK() {
+	}
+
+	/**
+	 * Selects the first elements of a sequence.
+	 * @param elements	an Iterator over the elements
+	 * @param k	an Integer representing the number of elements to keep
+	 * @param order	the Comparator defining the order, first elements first
+	 * @return a new List with at most <i>k</i> elements, in order
+	 */
+	static <T> List<T> select(Iterator<? extends T> elements, int k, final Comparator<? super T> order) {
+		if (k <= 0) {
+			return new ArrayList<T>();
+		}
+		// Worst element on top: reverse order, and among equals the last one read
+		PriorityQueue<Entry<T>> heap = new PriorityQueue<Entry<T>>(Math.min(k, 1024) + 1, new Comparator<Entry<T>>() {
+			@Override
+			public int compare(Entry<T> a, Entry<T> b) {
+				return -compareEntries(a, b, order);
+			}
+		});
+		long seq = 0;
+		while (elements.hasNext()) {
+			Entry<T> e = new Entry<T>(elements.next(), seq++);
+			if (heap.size() < k) {
+				heap.add(e);
+			} else if (compareEntries(e, heap.peek(), order) < 0) {
+				heap.poll();
+				heap.add(e);
+			}
+		}
+
+		ArrayList<Entry<T>> best = new ArrayList<Entry<T>>(heap);
+		Collections.sort(best, new Comparator<Entry<T>>() {
+			@Override
+			public int compare(Entry<T> a, Entry<T> b) {
+				return compareEntries(a, b, order);
+			}
+		});
+		ArrayList<T> result = new ArrayList<T>(best.size());
+		for (int i=0; i<best.size(); i++) {
+			result.add(best.get(i).value);
+		}
+		return result;
+	}
+
+	/**
+	 * Compares two entries by the given order, then by the order they were read.
+	 */
+	private static <T> int compareEntries(Entry<T> a, Entry<T> b, Comparator<? super T> order) {
+		int cmp = order.compare(a.value, b.value);
+		if (cmp != 0) {
+			return cmp;
+		}
+		return a.seq < b.seq ? -1 : (a.seq == b.seq ? 0 : 1);
+	}
+
+	/**
+	 * An element with its position in the sequence.
+	 */
+	private static class Entry<T> {
+		final T value;
+		final long seq;
+
+		Entry(T v, long s) {
+			value = v;
+			seq = s;
+		}
+	}
+}
@@ -17,13 +17,17 @@ import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.AbstractAction;
 import javax.swing.BoxLayout;
 import javax.swing.DefaultCellEditor;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JDialog;
 import javax.swing.JFormattedTextField;
 import javax.swing.JFrame;
@@ -36,10 +40,12 @@ import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.KeyStroke;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableModel;
 
+import project.io.BlockOutputStream;
 import project.logic.*;
 /**
  * ProjectGUI provides a user interface to manage the projects' information.
@@ -74,6 +80,37 @@ public class ProjectGUI implements ProjectAbstractUI {
 	private static boolean saved=true;
 	/** Portfolio object to handle the application data */
 	private static Portfolio portfolio = new Portfolio();
+	/** PortfolioHistory object recording the changes made to the working Portfolio object, used to undo and redo them */
+	private static PortfolioHistory history = new PortfolioHistory(portfolio);
+	/** PortfolioSaver writing the working file in the background */
+	private static PortfolioSaver saver = new PortfolioSaver(portfolio);
+	/** Number of changes made, used to tell whether a save finished in the background covers the last one */
+	private static int edits = 0;
+	/** DeadlineMonitor refreshing the counters when deadlines pass, warning a week in advance */
+	private static DeadlineMonitor deadlines = new DeadlineMonitor(portfolio, 7);
+	/** true while a refresh of the counters asked by the DeadlineMonitor is waiting on the event thread */
+	private static AtomicBoolean countersPending = new AtomicBoolean(false);
+	static {
+		deadlines.addDeadlineListener(new DeadlineListener() {
+			/* Refreshes the overdue count shown in the counters, once for all the deadlines passed together */
+			public void deadlinePassed(OngoingProject p) {
+				if(!countersPending.compareAndSet(false, true)) {
+					return;
+				}
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						countersPending.set(false);
+						if(ongoingProjectsLabel != null) {
+							updateCounters();
+						}
+					}
+				});
+			}
+			
+			public void deadlineApproaching(OngoingProject p, int daysLeft) {
+			}
+		});
+	}
 	/** Settings object holding the values for the different application settings */
 	private static Settings config = new Settings();
 	/** Selection object to keep track of which projects have been selected by the user */
@@ -114,6 +151,7 @@ public class ProjectGUI implements ProjectAbstractUI {
 		WORKING_FILE = s.getWorkingFile();
 		DEFAULTS_FILE = s.getDefaultsFile();
 		DATE_FORMAT = s.getDefaultDateFormat();
+		portfolio.setCompression(BlockOutputStream.codecOf(s.getCompression()));
 		
 		if(s.isUpdateDB()) {
 			portfolio.initDB();
@@ -122,6 +160,7 @@ public class ProjectGUI implements ProjectAbstractUI {
 		}
 
 		sel.init(portfolio);
+		deadlines.start();
 		
 		dateFormat = new SimpleDateFormat(DATE_FORMAT);
 		
@@ -136,8 +175,8 @@ public class ProjectGUI implements ProjectAbstractUI {
 	 */
 	public static boolean mainWindow() {
 		
-		//Create and set up the window.
-		frame.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+		//Create and set up the window. It is disposed by checkSaveOnExit, once any unsaved changes are dealt with
+		frame.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
         frame.setPreferredSize(new Dimension(1024,600));
         frame.setModal(true);
         if(config.isUpdateDB()) {
@@ -165,18 +204,14 @@ public class ProjectGUI implements ProjectAbstractUI {
 			@Override
 			public void actionPerformed(ActionEvent e) {
 				int choice = JOptionPane.showConfirmDialog(frame, 
-						"Do you want to delete the selected projects?\nThis action cannot be undone!", 
+						"Do you want to delete the selected projects?\nIt can be undone with Undo.", 
 						"Delete Selected", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
 				if(choice == 0){
 					System.out.println("Delete");
-					String[] selected = sel.getSelected(); 
-					for(int i=0;i<selected.length;i++) {
-					
-						int index = portfolio.findByCode(selected[i]);
-						portfolio.remove(index, config.isUpdateDB());
-						sel.remove(index);
-					
-					}
+					portfolio.removeAll(Arrays.asList(sel.getSelected()), config.isUpdateDB());
+					sel = new Selection();
+					sel.init(portfolio);
+					updateCounters();
 					
 				}
 				
@@ -276,12 +311,24 @@ public class ProjectGUI implements ProjectAbstractUI {
 			    				JOptionPane.WARNING_MESSAGE, null, null, 0);
 			    		switch(option) {
 			    		case 0:
-			    			portfolio.save(WORKING_FILE);
+			    			saver.save(WORKING_FILE);
 			    		default:
 			    			break;        	    		
 			    		}
 					} else {
-						toggleSaved(portfolio.save(WORKING_FILE));
+						final int version = edits;
+						saver.save(WORKING_FILE, new SaveListener() {
+							/* Marks the changes as saved unless more were made while the file was written */
+							public void saveCompleted(String file, final boolean success) {
+								SwingUtilities.invokeLater(new Runnable() {
+									public void run() {
+										if(!success || edits == version) {
+											toggleSaved(success);
+										}
+									}
+								});
+							}
+						});
 					}
 				}
         	});
@@ -323,8 +370,57 @@ public class ProjectGUI implements ProjectAbstractUI {
         		
         	});
         	
+        	JButton btnUndo = new JButton("Undo");
+        	btnUndo.addActionListener(new ActionListener() {
+        		/* Reverts the last change made to the working Portfolio object */
+				public void actionPerformed(ActionEvent e) {
+					if(history.undo(config.isUpdateDB())) {
+						opTable.setModel((TableModel) new ProjectTableModel(portfolio.getOngoingProjects()));
+						fpTable.setModel((TableModel) new ProjectTableModel(portfolio.getFinishedProjects()));
+						sel = new Selection();
+						sel.init(portfolio);
+						updateCounters();
+						toggleSaved(false);
+					}
+				}
+        	});
+        	
+        	JButton btnRedo = new JButton("Redo");
+        	btnRedo.addActionListener(new ActionListener() {
+        		/* Applies again the last change undone */
+				public void actionPerformed(ActionEvent e) {
+					if(history.redo(config.isUpdateDB())) {
+						opTable.setModel((TableModel) new ProjectTableModel(portfolio.getOngoingProjects()));
+						fpTable.setModel((TableModel) new ProjectTableModel(portfolio.getFinishedProjects()));
+						sel = new Selection();
+						sel.init(portfolio);
+						updateCounters();
+						toggleSaved(false);
+					}
+				}
+        	});
+        	
+        	JButton btnFind = new JButton("Find");
+        	btnFind.addActionListener(new ActionListener() {
+        		/* Asks for a text and lists the projects whose name or client best match it */
+				public void actionPerformed(ActionEvent e) {
+					String text = JOptionPane.showInputDialog(frame, "Text to find:", "Find projects", JOptionPane.QUESTION_MESSAGE);
+					if(text != null) {
+						List<Project> found = portfolio.searchRanked(text, 10);
+						String msg = found.isEmpty() ? "No projects found." : "";
+						for(Project p : found) {
+							msg += p.getCode() + "  " + p.getName() + "  (" + p.getClient() + ")\n";
+						}
+						JOptionPane.showMessageDialog(frame, msg, "Find projects", JOptionPane.INFORMATION_MESSAGE);
+					}
+				}
+        	});
+        	
         	menuOptions.add(btnAdd);
         	menuOptions.add(btnDel);
+        	menuOptions.add(btnFind);
+        	menuOptions.add(btnUndo);
+        	menuOptions.add(btnRedo);
         	menuOptions.add(btnSave);
         	menuOptions.add(btnRestore);
         	menuOptions.add(btnSet);
@@ -348,10 +444,14 @@ public class ProjectGUI implements ProjectAbstractUI {
 				checkSaveOnExit();
 			}
 
+			/* Saves still queued or being written are finished before the application can end */
 			@Override
 			public void windowClosed(WindowEvent e) {
-				
-				
+				try {
+					saver.flush();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
 			}
 
 			@Override
@@ -397,10 +497,10 @@ public class ProjectGUI implements ProjectAbstractUI {
 		final JDialog settingsDialog = new JDialog(frame, "Change settings");
 		
 		settingsDialog.getContentPane().setLayout(new BorderLayout());
-		settingsDialog.setPreferredSize(new Dimension(350,150));
+		settingsDialog.setPreferredSize(new Dimension(350,175));
 		
 		JPanel settings = new JPanel();
-		settings.setLayout(new GridLayout(3,2));
+		settings.setLayout(new GridLayout(4,2));
 		
 		JLabel lblDB = new JLabel("Update DB dynamically");
 		JRadioButton rbDB = new JRadioButton();
@@ -434,6 +534,10 @@ public class ProjectGUI implements ProjectAbstractUI {
 		
 		JLabel lblFile = new JLabel("Working file");
 		final JTextField tfFile = new JTextField(sett.getWorkingFile());
+		
+		JLabel lblCompression = new JLabel("File compression");
+		final JComboBox<String> cbCompression = new JComboBox<String>(BlockOutputStream.CODECS);
+		cbCompression.setSelectedIndex(BlockOutputStream.codecOf(sett.getCompression()));
 				
 		settings.add(lblDB);
 		settings.add(rbDB);
@@ -441,6 +545,8 @@ public class ProjectGUI implements ProjectAbstractUI {
 		settings.add(rbGUI);
 		settings.add(lblFile);
 		settings.add(tfFile);
+		settings.add(lblCompression);
+		settings.add(cbCompression);
 		
 		JButton btnSave = new JButton("Save settings");
 		btnSave.addActionListener(new ActionListener() {
@@ -455,16 +561,23 @@ public class ProjectGUI implements ProjectAbstractUI {
 		    				JOptionPane.WARNING_MESSAGE, null, null, 0);
 		    		switch(option) {
 		    		case 0:
-		    			toggleSaved(portfolio.save(WORKING_FILE));
+		    			// The portfolio is reloaded below, so the file must be written first
+		    			try {
+		    				toggleSaved(saver.save(WORKING_FILE).get());
+		    			} catch (InterruptedException | ExecutionException ex) {
+		    				toggleSaved(false);
+		    			}
 		    		default:
 		    			break;        	    		
 		    		}
 				}
 				
 				sett.setWorkingFile(tfFile.getText());
+				sett.setCompression((String) cbCompression.getSelectedItem());
 				
 				sett.save();
 				config = new Settings(sett);
+				portfolio.setCompression(BlockOutputStream.codecOf(config.getCompression()));
 				settingsDialog.dispose();
 				
 				if(!sett.isGUI()){
@@ -509,9 +622,25 @@ public class ProjectGUI implements ProjectAbstractUI {
     				JOptionPane.WARNING_MESSAGE, null, null, 0);
     		switch(option) {
     		case 0:
-    			portfolio.save(WORKING_FILE);
+    			// The window stays open, and usable, until the file has been written; if the save fails
+    			// the user can save again or cancel
+    			saver.save(WORKING_FILE, new SaveListener() {
+    				public void saveCompleted(String file, final boolean success) {
+    					SwingUtilities.invokeLater(new Runnable() {
+    						public void run() {
+    							if(success) {
+    								frame.dispose();
+    							} else {
+    								JOptionPane.showMessageDialog(frame, "The changes could not be saved", "File error", JOptionPane.ERROR_MESSAGE);
+    							}
+    						}
+    					});
+    				}
+    			});
+    			break;
     		case 1:
     			frame.dispose();
+    			break;
     		default:
     			break;        	    		
     		}
@@ -540,6 +669,7 @@ public class ProjectGUI implements ProjectAbstractUI {
 	private static void toggleSaved(boolean s) {
 		if(!config.isUpdateDB()) {
 			if(!s) {
+				edits++;
 				frame.setTitle("JProject v."+VERSION+" ** Unsaved Changes **");
 			} else {
 				frame.setTitle("JProject v."+VERSION);
@@ -579,8 +709,11 @@ public class ProjectGUI implements ProjectAbstractUI {
 	 * Updates the project counters on the main window.
 	 */
 	private static void updateCounters() {
-		ongoingProjectsLabel.setText("Ongoing Projects (" + portfolio.getOngoingCount() + ")");
-		finishedProjectsLabel.setText("Finished Projects (" + portfolio.getFinishedCount() + ")");
+		PortfolioStatistics stats = portfolio.getStatistics();
+		ongoingProjectsLabel.setText("Ongoing Projects (" + stats.getOngoingCount() + ", " + stats.getOverdueCount() + " overdue)"
+				+ String.format(" - Budget: $ %.2f - Average completion: %.0f%%", stats.getTotalBudget(), stats.getAverageCompletion()));
+		finishedProjectsLabel.setText("Finished Projects (" + stats.getFinishedCount() + ")"
+				+ String.format(" - Total cost: $ %.2f", stats.getTotalCost()));
 	}
 	
 	/**
@@ -973,9 +1106,9 @@ public class ProjectGUI implements ProjectAbstractUI {
 		/** Constant String array with the widths of the columns for the FinishedProjects table */
 		private static final int[] FINISHED_COL_WIDTHS = {15, 150, 150, 45, 45, 45, 15 };
 		
-		/** This constructor builds a ProjectTableModel from the data of an ArrayList&#60;Project&#62; 
-		 * @param prjs	An ArrayList&#60;Project&#62; object with the information for the table*/
-		public ProjectTableModel(ArrayList<Project> prjs) {
+		/** This constructor builds a ProjectTableModel from the data of a List&#60;Project&#62; 
+		 * @param prjs	A List&#60;Project&#62; object with the information for the table*/
+		public ProjectTableModel(List<Project> prjs) {
 			int rows = prjs.size();
 			
 			Object[][] data = null;
@@ -1064,6 +1197,13 @@ public class ProjectGUI implements ProjectAbstractUI {
 			int index = portfolio.findByCode(code);
 			Project p = portfolio.get(index);
 			
+			// Edit a copy so the history keeps the previous state of the project
+			if(p instanceof OngoingProject) {
+				p = new OngoingProject(p);
+			} else {
+				p = new FinishedProject(p);
+			}
+			
 			if(c==1) {
 				p.setName((String) value);
 			} else if(c==2) {
@@ -1106,6 +1246,7 @@ public class ProjectGUI implements ProjectAbstractUI {
 			}
 			
 			portfolio.replaceProject(p, index, config.isUpdateDB());
+			updateCounters();
 			toggleSaved(false);
 		}
 		
@@ -12,9 +12,12 @@ package project.ui;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Scanner;
 
+import project.io.BlockOutputStream;
 import project.logic.FinishedProject;
+import project.logic.MappedPortfolio;
 import project.logic.OngoingProject;
 import project.logic.Portfolio;
 import project.logic.Project;
@@ -43,8 +46,8 @@ public class ProjectUI implements ProjectAbstractUI {
 	private static int choice;
 	/** Integer representing the index location of a project within the working Portfolio object*/
 	private static int index;
-	/** Working Portfolio object */
-	private static Portfolio portfolio = new Portfolio();
+	/** Working Portfolio object. Mapped, so that the console starts without reading the whole file */
+	private static Portfolio portfolio = new MappedPortfolio();
 	private static Settings config = new Settings();
 	/** Project object used across this class to temporarily store Project information*/
 	private static Project p = null;
@@ -59,6 +62,7 @@ public class ProjectUI implements ProjectAbstractUI {
 		"2. Add project",
 		"3. Modify existing project",
 		"4. Delete project",
+		"F. Find projects",
 		"--------------------------",
 		"S. Save current status",
 		"R. Restore to default data set",
@@ -66,7 +70,7 @@ public class ProjectUI implements ProjectAbstractUI {
 		"Q. Quit"};
 	
 	/** A String array containing all the menu options' values */
-	private static final  String[] MENU_VALUE = {"1","2","3","4","S","R","Q","T"};
+	private static final  String[] MENU_VALUE = {"1","2","3","4","S","R","Q","T","F"};
 	/** A String representing the name of the working file */
 	private static final String WORKING_FILE = "portfolio.obj";
 	/** A String representing the name of the default dataset file */
@@ -82,6 +86,7 @@ public class ProjectUI implements ProjectAbstractUI {
 	public boolean start(Settings s) {
 		
 		config = s;
+		portfolio.setCompression(BlockOutputStream.codecOf(config.getCompression()));
 		
 		if(config.isUpdateDB()) {
 			portfolio.initDB();
@@ -90,7 +95,8 @@ public class ProjectUI implements ProjectAbstractUI {
 		}
 		splash();
 		
-		portfolio.listProjects();
+		// The counts are read from the mapped file; listing the projects would load all of them
+		System.out.println("There are " + portfolio.getOngoingCount() + " Ongoing Projects and " + portfolio.getFinishedCount() + " Finished Projects.");
 		
 		do {
 			
@@ -106,6 +112,7 @@ public class ProjectUI implements ProjectAbstractUI {
 			 * 5 = Restore
 			 * 6 = Quit
 			 * 7 = Settings
+			 * 8 = Find projects
 			 */
 			
 			switch (choice){
@@ -200,6 +207,17 @@ public class ProjectUI implements ProjectAbstractUI {
 					}
 				}
 				break;
+			case 8: //Find projects
+				System.out.print("Text to find: ");
+				String text = input.nextLine();
+				List<Project> found = portfolio.searchRanked(text, 10);
+				if (found.isEmpty()) {
+					System.out.println("No projects found.");
+				}
+				for (Project f : found) {
+					System.out.println(f.getCode() + "\t" + f.getName() + "\t" + f.getClient());
+				}
+				break;
 			}
 			
 		} while (choice != -1);
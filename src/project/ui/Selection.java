@@ -3,6 +3,7 @@ package project.ui;
 import java.util.ArrayList;
 
 import project.logic.Portfolio;
+import project.logic.ProjectQuery;
 
 /**
  * Uses an ArrayList to keep track of projects selected by the user
@@ -37,8 +38,8 @@ public class Selection {
 	 * @param p	the Portfolio object represented in the GUI
 	 */
 	public void init(Portfolio p) {
-		for(int i=0;i<p.getPortfolio().size();i++) {
-			sel.add(new SelectionEntry(p.get(i).getCode(), false));
+		for(String code : p.query().select(ProjectQuery.CODE)) {
+			sel.add(new SelectionEntry(code, false));
 		}
 	}
 	
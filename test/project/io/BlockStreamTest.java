@@ -0,0 +1,160 @@
+package project.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import project.logic.*;
+
+public class BlockStreamTest {
+
+	private static byte[] sample(int n) {
+		Random r = new Random(42);
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < n) {
+			// Text that repeats, with runs that do not
+			sb.append("Project ").append(r.nextInt(1000)).append(" for Client ").append(r.nextInt(20));
+			if (r.nextInt(10) == 0) {
+				for (int i=0; i<40; i++) {
+					sb.append((char) ('!' + r.nextInt(90)));
+				}
+			}
+			if (r.nextInt(50) == 0) {
+				for (int i=0; i<300; i++) {
+					sb.append('x');
+				}
+			}
+		}
+		return sb.substring(0, n).getBytes(ProjectWriter.UTF8);
+	}
+
+	private static byte[] compress(byte[] data, int codec, int blockSize) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BlockOutputStream out = new BlockOutputStream(bytes, codec, blockSize);
+		// Writes in uneven pieces, and single bytes
+		int i = 0;
+		while (i < data.length) {
+			if (i % 7 == 0) {
+				out.write(data[i++]);
+			} else {
+				int n = Math.min(data.length - i, 1 + i % 5000);
+				out.write(data, i, n);
+				i += n;
+			}
+		}
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] b = new byte[3000];
+		int n = in.read(b);
+		while (n >= 0) {
+			bytes.write(b, 0, n);
+			n = in.read(b);
+		}
+		in.close();
+		return bytes.toByteArray();
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		for (int codec=BlockOutputStream.DEFLATE; codec<=BlockOutputStream.LZ; codec++) {
+			for (int size : new int[] {0, 1, 5, 100000}) {
+				byte[] data = sample(size);
+				byte[] compressed = compress(data, codec, 16 * 1024);
+				if (size == 100000) {
+					assertTrue(compressed.length < data.length / 2);
+				}
+				assertArrayEquals(data, readAll(new BlockInputStream(new ByteArrayInputStream(compressed))));
+			}
+			// Data that does not compress is stored as it is
+			byte[] noise = new byte[50000];
+			new Random(7).nextBytes(noise);
+			byte[] compressed = compress(noise, codec, 8192);
+			assertTrue(compressed.length < noise.length + 200);
+			assertArrayEquals(noise, readAll(new BlockInputStream(new ByteArrayInputStream(compressed))));
+		}
+	}
+
+	@Test
+	public void testLongMatches() throws IOException {
+		byte[] data = new byte[70000];
+		for (int i=0; i<data.length; i++) {
+			data[i] = (byte) (i % 3);
+		}
+		byte[] compressed = compress(data, BlockOutputStream.LZ, data.length);
+		assertTrue(compressed.length < 1000);
+		assertArrayEquals(data, readAll(new BlockInputStream(new ByteArrayInputStream(compressed))));
+	}
+
+	@Test
+	public void testRejectsCorruptBlocks() throws IOException {
+		byte[] compressed = compress(sample(50000), BlockOutputStream.LZ, 8192);
+		compressed[compressed.length / 2] ^= 0x55;
+		try {
+			readAll(new BlockInputStream(new ByteArrayInputStream(compressed)));
+			fail("Corrupt block read");
+		} catch (IOException e) {
+			// Expected
+		}
+		byte[] deflated = compress(sample(50000), BlockOutputStream.DEFLATE, 8192);
+		byte[] truncated = new byte[deflated.length - 20];
+		System.arraycopy(deflated, 0, truncated, 0, truncated.length);
+		try {
+			readAll(new BlockInputStream(new ByteArrayInputStream(truncated)));
+			fail("Truncated stream read");
+		} catch (IOException e) {
+			// Expected
+		}
+		assertEquals(BlockOutputStream.LZ, BlockOutputStream.codecOf("lz"));
+		assertEquals(BlockOutputStream.NONE, BlockOutputStream.codecOf(null));
+	}
+
+	@Test
+	public void testCompressedPortfolio() throws Exception {
+		File f = File.createTempFile("compressed", ".obj");
+		try {
+			ArrayList<Project> projects = new ArrayList<Project>();
+			for (int i=0; i<3000; i++) {
+				projects.add(new OngoingProject(String.format("P%04d", i), "Project " + i, Project.fromEpochDay(i), "Client " + (i % 9), null, i, i % 101));
+			}
+			ProjectIO.save(f.getPath(), projects, BlockOutputStream.DEFLATE);
+			long compressed = f.length();
+			ArrayList<Project> read = ProjectIO.open(f.getPath());
+			assertEquals(3000, read.size());
+			assertEquals("Project 2999", read.get(2999).getName());
+			ProjectIO.save(f.getPath(), projects);
+			assertTrue(compressed < f.length() / 2);
+
+			// Snapshots written through the journal are compressed too, and keep their tag
+			Portfolio port = new MappedPortfolio();
+			port.setCompression(BlockOutputStream.LZ);
+			port.init(f.getPath());
+			port.save(f.getPath());
+			assertTrue(f.length() < compressed * 2);
+			assertTrue(ProjectReader.readTag(f) != 0);
+			port.remove(0, false);
+			port.save(f.getPath());
+
+			MappedPortfolio reopened = new MappedPortfolio();
+			reopened.init(f.getPath());
+			assertFalse(reopened.isMapped());
+			assertEquals(2999, reopened.getPortfolio().size());
+			assertEquals("P0001", reopened.get(0).getCode());
+		} finally {
+			f.delete();
+			new File(f.getPath() + ".seq").delete();
+			ProjectJournal.journalFile(f).delete();
+		}
+	}
+}
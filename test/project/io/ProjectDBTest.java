@@ -0,0 +1,44 @@
+package project.io;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import project.logic.*;
+
+public class ProjectDBTest {
+
+	private static OngoingProject ongoing() {
+		return new OngoingProject("P0001", "Bridge", Project.fromEpochDay(16000), "Client 1", Project.fromEpochDay(16400), 1500, 40);
+	}
+
+	private static FinishedProject finished() {
+		return new FinishedProject("P0001", "Bridge", Project.fromEpochDay(16000), "Client 1", Project.fromEpochDay(16300), 1400);
+	}
+
+	@Test
+	public void testUpdateQueryKeepsTable() {
+		String query = ProjectDB.updateQuery(ongoing(), false);
+		assertTrue(query.contains("UPDATE ONGOING_PROJECT"));
+		assertFalse(query.contains("FINISHED_PROJECT"));
+
+		query = ProjectDB.updateQuery(finished(), false);
+		assertTrue(query.contains("UPDATE FINISHED_PROJECT"));
+		assertFalse(query.contains("ONGOING_PROJECT"));
+	}
+
+	@Test
+	public void testUpdateQueryMovesTable() {
+		String query = ProjectDB.updateQuery(finished(), true);
+		assertTrue(query.contains("ProjectStatus = 'F'"));
+		assertTrue(query.contains("INSERT INTO FINISHED_PROJECT"));
+		assertTrue(query.contains("DELETE FROM ONGOING_PROJECT"));
+
+		// Undoing the conversion moves the record back
+		query = ProjectDB.updateQuery(ongoing(), true);
+		assertTrue(query.contains("ProjectStatus = 'O'"));
+		assertTrue(query.contains("INSERT INTO ONGOING_PROJECT"));
+		assertTrue(query.contains("DELETE FROM FINISHED_PROJECT"));
+		assertFalse(query.contains("UPDATE ONGOING_PROJECT"));
+	}
+}
@@ -0,0 +1,221 @@
+package project.io;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import project.logic.*;
+
+public class ProjectJournalTest {
+
+	private static ArrayList<Project> sample(int n) {
+		ArrayList<Project> projects = new ArrayList<Project>();
+		for (int i=0; i<n; i++) {
+			if (i % 3 == 0) {
+				projects.add(new FinishedProject(String.format("P%04d", i), "Project " + i, Project.fromEpochDay(i), "Client " + (i % 7), Project.fromEpochDay(i + 10), i));
+			} else {
+				projects.add(new OngoingProject(String.format("P%04d", i), "Project " + i, Project.fromEpochDay(i), "Client " + (i % 7), Project.fromEpochDay(i + 20), i, i % 101));
+			}
+		}
+		return projects;
+	}
+
+	private static void delete(File f) {
+		f.delete();
+		new File(f.getPath() + ".seq").delete();
+		ProjectJournal.journalFile(f).delete();
+	}
+
+	private static void rename(Portfolio port, String code, String name) {
+		int index = port.findByCode(code);
+		Project p = port.get(index);
+		p = p instanceof OngoingProject ? new OngoingProject(p) : new FinishedProject(p);
+		p.setName(name);
+		port.replaceProject(p, index, false);
+	}
+
+	@Test
+	public void testSaveAppendsChanges() throws IOException {
+		File f = File.createTempFile("journal", ".obj");
+		File journal = ProjectJournal.journalFile(f);
+		try {
+			ProjectIO.save(f.getPath(), sample(100));
+			Portfolio port = new Portfolio();
+			port.init(f.getPath());
+			// The first save writes a tagged snapshot and an empty journal
+			assertTrue(port.save(f.getPath()));
+			long snapshot = f.length();
+			assertTrue(ProjectReader.readTag(f) != 0);
+			assertEquals(ProjectJournal.HEADER, journal.length());
+
+			rename(port, "P0001", "Renamed");
+			port.add(new FinishedProject("P0500", "Added", null, "Client", null, 5), false);
+			port.remove(port.findByCode("P0003"), false);
+			assertTrue(port.save(f.getPath()));
+			assertEquals(snapshot, f.length());
+			assertTrue(journal.length() > ProjectJournal.HEADER);
+			assertTrue(journal.length() < 200);
+
+			// Changes that are not saved are discarded
+			rename(port, "P0002", "Not saved");
+
+			Portfolio reopened = new Portfolio();
+			reopened.init(f.getPath());
+			assertEquals(100, reopened.getPortfolio().size());
+			assertEquals("Renamed", reopened.get(reopened.findByCode("P0001")).getName());
+			assertEquals("Project 2", reopened.get(reopened.findByCode("P0002")).getName());
+			assertEquals("Added", reopened.get(reopened.findByCode("P0500")).getName());
+			assertTrue(reopened.findByCode("P0003") < 0);
+			assertEquals("P0002", reopened.getOngoingProjects().get(1).getCode());
+			assertEquals(100, reopened.getStatistics().getOngoingCount() + reopened.getStatistics().getFinishedCount());
+
+			// The journal is kept and appended to after it is replayed
+			reopened.remove(reopened.findByCode("P0500"), false);
+			assertTrue(reopened.save(f.getPath()));
+			reopened = new Portfolio();
+			reopened.init(f.getPath());
+			assertEquals(99, reopened.getPortfolio().size());
+
+			// A snapshot saved without the journal makes it obsolete
+			ProjectIO.save(f.getPath(), sample(10));
+			reopened = new Portfolio();
+			reopened.init(f.getPath());
+			assertEquals(10, reopened.getPortfolio().size());
+			assertEquals("Project 1", reopened.get(1).getName());
+		} finally {
+			delete(f);
+		}
+	}
+
+	@Test
+	public void testTornRecord() throws IOException {
+		File f = File.createTempFile("journal", ".obj");
+		try {
+			ProjectIO.save(f.getPath(), sample(20));
+			Portfolio port = new Portfolio();
+			port.init(f.getPath());
+			port.save(f.getPath());
+			rename(port, "P0001", "First");
+			port.save(f.getPath());
+			rename(port, "P0002", "Second");
+			port.save(f.getPath());
+
+			// Cuts the last record short, as a crash while appending it would
+			File journal = ProjectJournal.journalFile(f);
+			long length = journal.length();
+			FileOutputStream out = new FileOutputStream(journal, true);
+			out.getChannel().truncate(length - 3);
+			out.close();
+
+			Portfolio reopened = new Portfolio();
+			reopened.init(f.getPath());
+			assertEquals("First", reopened.get(1).getName());
+			assertEquals("Project 2", reopened.get(2).getName());
+
+			// The torn record is overwritten by the next append
+			rename(reopened, "P0004", "Third");
+			reopened.save(f.getPath());
+			reopened = new Portfolio();
+			reopened.init(f.getPath());
+			assertEquals("First", reopened.get(1).getName());
+			assertEquals("Third", reopened.get(4).getName());
+		} finally {
+			delete(f);
+		}
+	}
+
+	@Test
+	public void testDuplicateCodesWriteSnapshot() throws IOException {
+		File f = File.createTempFile("journal", ".obj");
+		try {
+			ProjectIO.save(f.getPath(), sample(20));
+			Portfolio port = new Portfolio();
+			port.init(f.getPath());
+			port.save(f.getPath());
+			long tag = ProjectReader.readTag(f);
+			port.add(new FinishedProject("p0005", "Twin", null, null, null, 0), false);
+			port.save(f.getPath());
+			assertTrue(ProjectReader.readTag(f) != tag);
+
+			Portfolio reopened = new Portfolio();
+			reopened.init(f.getPath());
+			assertEquals(21, reopened.getPortfolio().size());
+		} finally {
+			delete(f);
+		}
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		File f = File.createTempFile("journal", ".obj");
+		File journalFile = ProjectJournal.journalFile(f);
+		try {
+			ProjectIO.save(f.getPath(), sample(200));
+			Portfolio port = new Portfolio();
+			port.init(sample(200));
+			ProjectJournal journal = ProjectJournal.open(f.getPath());
+			port.addPortfolioListener(journal);
+			journal.save(port);
+			long tag = ProjectReader.readTag(f);
+
+			for (int i=0; i<3000; i++) {
+				rename(port, String.format("P%04d", (i * 7) % 200 | 1), "Edit " + i);
+				if (i % 100 == 99) {
+					journal.save(port);
+				}
+			}
+			journal.awaitCompaction();
+			// The snapshot was rewritten with the same tag, and the journal only holds the records after it
+			assertEquals(tag, ProjectReader.readTag(f));
+			assertTrue(journalFile.length() < ProjectJournal.COMPACT_MIN);
+			journal.close();
+
+			ArrayList<Project> expected = port.getPortfolio();
+			Portfolio reopened = new Portfolio();
+			reopened.init(f.getPath());
+			assertEquals(expected.size(), reopened.getPortfolio().size());
+			for (int i=0; i<expected.size(); i++) {
+				assertEquals(expected.get(i).getName(), reopened.get(i).getName());
+			}
+		} finally {
+			delete(f);
+		}
+	}
+
+	@Test
+	public void testHeaderChecks() throws Exception {
+		File f = File.createTempFile("journal", ".obj");
+		try {
+			ProjectIO.save(f.getPath(), sample(20));
+			assertFalse(ProjectJournal.hasRecords(f.getPath()));
+			Portfolio port = new Portfolio();
+			port.init(f.getPath());
+			port.save(f.getPath());
+			assertFalse(ProjectJournal.hasRecords(f.getPath()));
+			rename(port, "P0001", "First");
+			port.save(f.getPath());
+			assertTrue(ProjectJournal.hasRecords(f.getPath()));
+
+			// A journal that was never appended to does not compact the records of another one
+			ProjectJournal journal = ProjectJournal.open(f.getPath());
+			long tag = ProjectReader.readTag(f);
+			long length = ProjectJournal.journalFile(f).length();
+			journal.compact(sample(20), ProjectJournal.HEADER, tag);
+			assertEquals(length, ProjectJournal.journalFile(f).length());
+			assertTrue(journal.isCurrent());
+
+			// Replacing the file, as a compaction does, is noticed
+			ProjectIO.save(f.getPath(), sample(5));
+			assertFalse(journal.isCurrent());
+			assertFalse(ProjectJournal.hasRecords(f.getPath()));
+			journal.close();
+		} finally {
+			delete(f);
+		}
+	}
+}
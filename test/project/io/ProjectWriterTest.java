@@ -0,0 +1,118 @@
+package project.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+import project.logic.*;
+
+public class ProjectWriterTest {
+
+	private static ArrayList<Project> sample() {
+		ArrayList<Project> projects = new ArrayList<Project>();
+		projects.add(new OngoingProject("P0001", "Bridge", Project.fromEpochDay(16000), "Client 1", Project.fromEpochDay(16400), 1500.5, 40));
+		projects.add(new FinishedProject("P0002", "Túnel", new Date(1400000000123L), "Client 1", Project.fromEpochDay(-20), 99.25));
+		projects.add(new OngoingProject("P0003", null, null, null, null, 0, 0));
+		projects.add(new FinishedProject("P0004", "", Project.fromEpochDay(16001), null, null, -1));
+		projects.add(new OngoingProject("P0005", "Road", Project.fromEpochDay(16002), "Client 2", Project.fromEpochDay(16500), 7, 100));
+		return projects;
+	}
+
+	private static byte[] write(ArrayList<Project> projects) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ProjectWriter out = new ProjectWriter(bytes);
+		out.writeAll(projects);
+		assertEquals(projects.size(), out.getCount());
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		ArrayList<Project> projects = sample();
+		ProjectReader in = new ProjectReader(new ByteArrayInputStream(write(projects)));
+		assertEquals(2, in.getVersion());
+		ArrayList<Project> read = in.readAll();
+		assertNull(in.read());
+		in.close();
+
+		assertEquals(projects.size(), read.size());
+		for (int i=0; i<projects.size(); i++) {
+			Project a = projects.get(i);
+			Project b = read.get(i);
+			assertEquals(a.getClass(), b.getClass());
+			assertEquals(a.getCode(), b.getCode());
+			assertEquals(a.getName(), b.getName());
+			assertEquals(a.getClient(), b.getClient());
+			assertEquals(a.getStartDate(), b.getStartDate());
+			if (a instanceof OngoingProject) {
+				assertEquals(((OngoingProject) a).getDeadline(), ((OngoingProject) b).getDeadline());
+				assertEquals(((OngoingProject) a).getBudget(), ((OngoingProject) b).getBudget(), 0);
+				assertEquals(((OngoingProject) a).getCompletion(), ((OngoingProject) b).getCompletion());
+			} else {
+				assertEquals(((FinishedProject) a).getEndDate(), ((FinishedProject) b).getEndDate());
+				assertEquals(((FinishedProject) a).getTotalCost(), ((FinishedProject) b).getTotalCost(), 0);
+			}
+		}
+		// Clients are shared through the dictionary
+		assertSame(read.get(0).getClient(), read.get(1).getClient());
+	}
+
+	@Test
+	public void testRejectsCorruptFiles() throws IOException {
+		byte[] bytes = write(sample());
+		try {
+			new ProjectReader(new ByteArrayInputStream(Arrays.copyOf(bytes, 40))).readAll();
+			fail("Truncated file read");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().startsWith("Corrupt"));
+		}
+		byte[] newer = bytes.clone();
+		newer[4] = 99;
+		try {
+			new ProjectReader(new ByteArrayInputStream(newer));
+			fail("Unknown version read");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("version"));
+		}
+		assertFalse(ProjectReader.isProjectFile(new ByteArrayInputStream(new byte[] {(byte) 0xAC, (byte) 0xED})));
+		assertTrue(ProjectReader.isProjectFile(new ByteArrayInputStream(bytes)));
+	}
+
+	@Test
+	public void testOpenDetectsFormat() throws IOException, ClassNotFoundException {
+		ArrayList<Project> projects = sample();
+		File legacy = File.createTempFile("legacy", ".obj");
+		File compact = File.createTempFile("compact", ".obj");
+		try {
+			ObjectOutputStream objOut = new ObjectOutputStream(new FileOutputStream(legacy));
+			objOut.writeObject(projects);
+			objOut.close();
+			ProjectIO.save(compact.getPath(), projects);
+			assertTrue(compact.length() < legacy.length() / 2);
+
+			ArrayList<Project> fromLegacy = ProjectIO.open(legacy.getPath());
+			ArrayList<Project> fromCompact = ProjectIO.open(compact.getPath());
+			assertEquals(projects.size(), fromLegacy.size());
+			assertEquals(projects.size(), fromCompact.size());
+			for (int i=0; i<projects.size(); i++) {
+				assertEquals(fromLegacy.get(i).getCode(), fromCompact.get(i).getCode());
+				assertEquals(fromLegacy.get(i).getStartDate(), fromCompact.get(i).getStartDate());
+				assertEquals(fromLegacy.get(i).getClass(), fromCompact.get(i).getClass());
+			}
+		} finally {
+			legacy.delete();
+			compact.delete();
+		}
+	}
+}
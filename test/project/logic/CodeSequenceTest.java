@@ -0,0 +1,72 @@
+package project.logic;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class CodeSequenceTest {
+
+	@Test
+	public void testEmptyPortfolio() throws Exception {
+		Portfolio port = new Portfolio();
+		assertEquals("P0001", port.getNewCode());
+		assertEquals("P0002", port.getNewCode());
+
+		// A code added by hand inside the reserved block is skipped
+		port.add(new FinishedProject("P0003", "", null, "", null, 0), false);
+		assertEquals("P0004", port.getNewCode());
+		port.add(new FinishedProject("P0100", "", null, "", null, 0), false);
+		assertEquals("P0101", port.getNewCode());
+	}
+
+	@Test
+	public void testConcurrentCallers() throws Exception {
+		final CodeSequence seq = new CodeSequence();
+		final Set<String> codes = Collections.synchronizedSet(new HashSet<String>());
+		Thread[] threads = new Thread[4];
+		for (int t=0; t<threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i=0; i<10000; i++) {
+						codes.add(seq.next());
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		assertEquals(40000, codes.size());
+		assertTrue(seq.getHighWater() >= 40000);
+	}
+
+	@Test
+	public void testSharedFile() throws Exception {
+		File f = File.createTempFile("codes", ".seq");
+		f.delete();
+		try {
+			CodeSequence a = new CodeSequence("P", 4, 10);
+			CodeSequence b = new CodeSequence("P", 4, 10);
+			a.bind(f);
+			b.bind(f);
+			assertEquals("P0001", a.next());
+			assertEquals("P0011", b.next());
+			assertEquals("P0002", a.next());
+			assertEquals(21, a.reserve(5));
+
+			CodeSequence c = new CodeSequence();
+			c.bind(f);
+			assertEquals(25, c.getHighWater());
+			assertEquals("P0026", c.next());
+		} finally {
+			f.delete();
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package project.logic;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import project.io.ProjectJournal;
+
+public class ConcurrentPortfolioTest {
+
+	private static final int WRITERS = 4;
+	private static final int READERS = 4;
+	private static final int PROJECTS_PER_WRITER = 2000;
+
+	@Test
+	public void testConcurrentAddAndRead() throws Exception {
+		final ConcurrentPortfolio port = new ConcurrentPortfolio();
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger errors = new AtomicInteger();
+		final AtomicInteger writersDone = new AtomicInteger();
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+
+		for (int w=0; w<WRITERS; w++) {
+			final int writer = w;
+			threads.add(new Thread() {
+				public void run() {
+					try {
+						start.await();
+						for (int i=0; i<PROJECTS_PER_WRITER; i++) {
+							String code = "P" + writer + String.format("%05d", i);
+							port.add(new OngoingProject(code, "Project", new Date(), "Client", new Date(), 100, 10), false);
+						}
+					} catch (Exception e) {
+						errors.incrementAndGet();
+					} finally {
+						writersDone.incrementAndGet();
+					}
+				}
+			});
+		}
+		for (int r=0; r<READERS; r++) {
+			threads.add(new Thread() {
+				public void run() {
+					try {
+						start.await();
+						while (writersDone.get() < WRITERS) {
+							List<Project> snapshot = port.getPortfolio();
+							for (int i=1; i<snapshot.size(); i++) {
+								if (snapshot.get(i-1).compareTo(snapshot.get(i)) > 0) {
+									errors.incrementAndGet();
+								}
+							}
+							if (port.getOngoingProjects().size() > port.getOngoingCount()) {
+								errors.incrementAndGet();
+							}
+							if (port.findByCode("P000000") >= 0 && port.findByCode("P000000", -1) < 0) {
+								errors.incrementAndGet();
+							}
+						}
+					} catch (Exception e) {
+						errors.incrementAndGet();
+					}
+				}
+			});
+		}
+
+		for (Thread t : threads) {
+			t.start();
+		}
+		start.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		assertEquals(0, errors.get());
+		int expected = WRITERS * PROJECTS_PER_WRITER;
+		assertEquals(expected, port.getPortfolio().size());
+		assertEquals(expected, port.getOngoingCount());
+		assertTrue(port.findByCode("P100001") >= 0);
+		assertTrue(port.findByCode("P900000") < 0);
+	}
+
+	@Test
+	public void testConcurrentQueriesAndSaves() throws Exception {
+		final File f = File.createTempFile("concurrent", ".obj");
+		final ConcurrentPortfolio port = new ConcurrentPortfolio();
+		ArrayList<Project> initial = new ArrayList<Project>();
+		for (int i=0; i<500; i++) {
+			initial.add(new OngoingProject(String.format("Q%05d", i), "Project " + i, new Date(), "Client " + (i % 5), new Date(), 100, 10));
+		}
+		port.init(initial);
+		assertTrue(port.save(f.getPath()));
+		port.init(f.getPath());
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger errors = new AtomicInteger();
+		final AtomicInteger writersDone = new AtomicInteger();
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		threads.add(new Thread() {
+			public void run() {
+				try {
+					start.await();
+					for (int i=0; i<PROJECTS_PER_WRITER; i++) {
+						port.add(new OngoingProject(String.format("R%05d", i), "Project", new Date(), "Client " + (i % 5), new Date(), 100, 10), false);
+						if (i % 2 == 1) {
+							port.remove(port.findByCode(String.format("R%05d", i - 1)), false);
+						}
+					}
+				} catch (Exception e) {
+					errors.incrementAndGet();
+				} finally {
+					writersDone.incrementAndGet();
+				}
+			}
+		});
+		for (int r=0; r<2; r++) {
+			threads.add(new Thread() {
+				public void run() {
+					try {
+						start.await();
+						while (writersDone.get() < 1) {
+							// The writer keeps up to 200 more projects for client 1, and one more on the way out
+							int count = port.query().client("client 1").count();
+							if (count < 100 || count > 301) {
+								errors.incrementAndGet();
+							}
+							if (!port.save(f.getPath())) {
+								errors.incrementAndGet();
+							}
+						}
+					} catch (Exception e) {
+						errors.incrementAndGet();
+					}
+				}
+			});
+		}
+
+		try {
+			for (Thread t : threads) {
+				t.start();
+			}
+			start.countDown();
+			for (Thread t : threads) {
+				t.join();
+			}
+			assertEquals(0, errors.get());
+			assertTrue(port.save(f.getPath()));
+
+			Portfolio saved = new Portfolio();
+			saved.init(f.getPath());
+			assertEquals(500 + PROJECTS_PER_WRITER / 2, saved.getPortfolio().size());
+			assertEquals(port.getStatistics().getOngoingCount(), saved.getStatistics().getOngoingCount());
+		} finally {
+			f.delete();
+			new File(f.getPath() + ".seq").delete();
+			ProjectJournal.journalFile(f).delete();
+		}
+	}
+}
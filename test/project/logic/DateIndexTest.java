@@ -0,0 +1,109 @@
+package project.logic;
+
+import static org.junit.Assert.*;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DateIndexTest {
+
+	private static SimpleDateFormat df = new SimpleDateFormat("dd-MM-yyyy");
+
+	@Test
+	public void testPortfolioDateQueries() throws Exception {
+		Portfolio port = new Portfolio();
+		OngoingProject o1 = new OngoingProject("P0001","Project 1", df.parse("01-01-2014"),"Client 1",df.parse("10-02-2014"), 100,10);
+		OngoingProject o2 = new OngoingProject("P0002","Project 2", df.parse("01-06-2014"),"Client 1",df.parse("01-03-2014"), 100,10);
+		FinishedProject f1 = new FinishedProject("P0003","Project 3", df.parse("01-01-2013"),"Client 2",df.parse("31-03-2013"), 100);
+		port.add(o1, false);
+		port.add(o2, false);
+		port.add(f1, false);
+
+		List<Project> deadlines = port.getDeadlinesBetween(df.parse("10-02-2014"), df.parse("01-03-2014"));
+		assertEquals(2, deadlines.size());
+		assertSame(o1, deadlines.get(0));
+
+		assertEquals(1, port.getFinishedBetween(df.parse("01-01-2013"), df.parse("31-03-2013")).size());
+		assertEquals(0, port.getFinishedBetween(df.parse("01-04-2013"), df.parse("30-06-2013")).size());
+
+		List<Project> active = port.getProjectsActiveBetween(df.parse("01-03-2013"), df.parse("01-02-2014"));
+		assertEquals(2, active.size());
+		assertSame(f1, active.get(0));
+		assertSame(o1, active.get(1));
+
+		FinishedProject closed = new FinishedProject(o1);
+		closed.setEndDate(df.parse("15-01-2014"));
+		port.replaceProject(closed, port.indexOf(o1), false);
+		assertEquals(1, port.getDeadlinesBetween(df.parse("01-01-2014"), df.parse("31-12-2014")).size());
+		assertEquals(1, port.getProjectsActiveBetween(df.parse("16-01-2014"), df.parse("01-06-2014")).size());
+	}
+
+	@Test
+	public void testPortfolioOpenDateRanges() throws Exception {
+		Portfolio port = new Portfolio();
+		OngoingProject o1 = new OngoingProject("P0001","Project 1", df.parse("01-01-2014"),"Client 1",df.parse("10-02-2014"), 100,10);
+		OngoingProject undated = new OngoingProject("P0002","Project 2", null,"Client 1",null, 100,10);
+		FinishedProject f1 = new FinishedProject("P0003","Project 3", df.parse("01-01-2013"),"Client 2",df.parse("31-03-2013"), 100);
+		port.add(o1, false);
+		port.add(undated, false);
+		port.add(f1, false);
+
+		// A null bound leaves its end of the range open, and projects without a deadline or end date are never returned by those lookups
+		assertEquals(1, port.getDeadlinesBetween(null, df.parse("01-03-2014")).size());
+		assertEquals(1, port.getDeadlinesBetween(df.parse("01-01-2014"), null).size());
+		assertEquals(1, port.getDeadlinesBetween(null, null).size());
+		assertEquals(0, port.getDeadlinesBetween(df.parse("11-02-2014"), null).size());
+		assertEquals(1, port.getFinishedBetween(null, df.parse("31-03-2013")).size());
+		assertEquals(0, port.getFinishedBetween(df.parse("01-04-2013"), null).size());
+		assertEquals(3, port.getProjectsActiveBetween(null, null).size());
+		assertEquals(2, port.getProjectsActiveBetween(df.parse("01-04-2013"), null).size());
+		assertEquals(2, port.getProjectsActiveBetween(null, df.parse("31-12-2013")).size());
+	}
+
+	@Test
+	public void testActiveBetweenMatchesScan() {
+		Random r = new Random(42);
+		DateIndex index = new DateIndex();
+		ArrayList<Project> projects = new ArrayList<Project>();
+		for (int i=0; i<2000; i++) {
+			int start = r.nextInt(1000);
+			Project p;
+			if (r.nextBoolean()) {
+				p = new OngoingProject("P"+i, "", Project.fromEpochDay(start), "", Project.fromEpochDay(start + r.nextInt(100)), 0, 0);
+			} else {
+				p = new FinishedProject("P"+i, "", Project.fromEpochDay(start), "", Project.fromEpochDay(start + r.nextInt(100)), 0);
+			}
+			projects.add(p);
+			index.add(p);
+		}
+		for (int i=0; i<500; i++) {
+			index.remove(projects.remove(r.nextInt(projects.size())));
+		}
+
+		for (int q=0; q<50; q++) {
+			int from = r.nextInt(1100);
+			int to = from + r.nextInt(60);
+			IdentityHashMap<Project, Boolean> expected = new IdentityHashMap<Project, Boolean>();
+			for (Project p : projects) {
+				int start = Project.toEpochDay(p.getStartDate());
+				Date endDate = p instanceof FinishedProject ? ((FinishedProject) p).getEndDate() : null;
+				int end = endDate == null ? Integer.MAX_VALUE : Project.toEpochDay(endDate);
+				if (start <= to && end >= from) {
+					expected.put(p, true);
+				}
+			}
+			List<Project> active = index.activeBetween(from, to);
+			assertEquals(expected.size(), active.size());
+			for (Project p : active) {
+				assertTrue(expected.containsKey(p));
+			}
+		}
+		assertEquals(1500, index.size());
+	}
+}
@@ -0,0 +1,118 @@
+package project.logic;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class DeadlineMonitorTest {
+
+	/** Records the events received, as "A:code:days" and "P:code" */
+	private static class Recorder implements DeadlineListener {
+		ArrayList<String> events = new ArrayList<String>();
+
+		@Override
+		public void deadlineApproaching(OngoingProject p, int daysLeft) {
+			events.add("A:" + p.getCode() + ":" + daysLeft);
+		}
+
+		@Override
+		public void deadlinePassed(OngoingProject p) {
+			events.add("P:" + p.getCode());
+		}
+	}
+
+	private static OngoingProject project(String code, int deadline) {
+		return new OngoingProject(code, "", Project.fromEpochDay(0), "", Project.fromEpochDay(deadline), 0, 0);
+	}
+
+	@Test
+	public void testEventsAndRescheduling() {
+		Portfolio port = new Portfolio();
+		OngoingProject o1 = project("P0001", 110);
+		OngoingProject o2 = project("P0002", 2000);
+		port.add(o1, false);
+		port.add(o2, false);
+
+		DeadlineMonitor monitor = new DeadlineMonitor(port, 5, 100);
+		Recorder r = new Recorder();
+		monitor.addDeadlineListener(r);
+		assertEquals(4, monitor.getPendingCount());
+
+		monitor.advanceTo(104);
+		assertTrue(r.events.isEmpty());
+		monitor.advanceTo(105);
+		assertEquals("[A:P0001:5]", r.events.toString());
+		monitor.advanceTo(111);
+		assertEquals("[A:P0001:5, P:P0001]", r.events.toString());
+		assertEquals(2, monitor.getPendingCount());
+
+		// Moving the deadline reschedules, removing cancels
+		OngoingProject moved = new OngoingProject(o2);
+		moved.setDeadline(Project.fromEpochDay(120));
+		port.replaceProject(moved, port.indexOf(o2), false);
+		OngoingProject o3 = project("P0003", 112);
+		port.add(o3, false);
+		port.remove(port.indexOf(o3), false);
+		r.events.clear();
+		monitor.advanceTo(115);
+		monitor.advanceTo(121);
+		assertEquals("[A:P0002:5, P:P0002]", r.events.toString());
+		assertEquals(0, monitor.getPendingCount());
+
+		// Deadlines already passed when added fire on the next advance
+		port.add(project("P0004", 50), false);
+		monitor.advanceTo(121);
+		assertEquals("P:P0004", r.events.get(2));
+	}
+
+	@Test
+	public void testManyDeadlines() {
+		ArrayList<Project> projects = new ArrayList<Project>();
+		for (int i=0; i<100000; i++) {
+			projects.add(project(String.format("P%06d", i), 1 + i % 5000));
+		}
+		Portfolio port = new Portfolio();
+		port.init(projects);
+		DeadlineMonitor monitor = new DeadlineMonitor(port, 0, 0);
+		final int[] passed = new int[1];
+		monitor.addDeadlineListener(new DeadlineListener() {
+			@Override
+			public void deadlineApproaching(OngoingProject p, int daysLeft) {
+			}
+
+			@Override
+			public void deadlinePassed(OngoingProject p) {
+				passed[0]++;
+			}
+		});
+		monitor.advanceTo(1000);
+		assertEquals(100000 / 5000 * 999, passed[0]);
+		monitor.advanceTo(10000);
+		assertEquals(100000, passed[0]);
+		assertEquals(0, monitor.getPendingCount());
+	}
+
+	@Test
+	public void testTicksFollowLocalMidnight() {
+		TimeZone zone = TimeZone.getDefault();
+		try {
+			TimeZone.setDefault(TimeZone.getTimeZone("Europe/Madrid"));
+			Calendar c = Calendar.getInstance();
+			c.clear();
+			c.set(2014, Calendar.MARCH, 29, 12, 0, 0);
+			assertEquals((12 * 3600 + 1) * 1000L, DeadlineMonitor.untilMidnight(c.getTimeInMillis()));
+			// The clocks go forward on the 30th, so that day is 23 hours long
+			c.set(2014, Calendar.MARCH, 30, 0, 0, 1);
+			assertEquals(23 * 3600 * 1000L, DeadlineMonitor.untilMidnight(c.getTimeInMillis()));
+			// and back on the 26th of October, which is 25 hours long
+			c.set(2014, Calendar.OCTOBER, 26, 0, 0, 1);
+			assertEquals(25 * 3600 * 1000L, DeadlineMonitor.untilMidnight(c.getTimeInMillis()));
+		} finally {
+			TimeZone.setDefault(zone);
+		}
+	}
+}
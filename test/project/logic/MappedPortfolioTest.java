@@ -0,0 +1,150 @@
+package project.logic;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import project.io.MappedProjectFile;
+import project.io.ProjectIO;
+
+public class MappedPortfolioTest {
+
+	private static ArrayList<Project> sample(int n) {
+		ArrayList<Project> projects = new ArrayList<Project>();
+		for (int i=n-1; i>=0; i--) {
+			if (i % 3 == 0) {
+				projects.add(new FinishedProject(String.format("P%05d", i), "Project " + i, Project.fromEpochDay(i), "Client " + (i % 7), Project.fromEpochDay(i + 10), i));
+			} else {
+				projects.add(new OngoingProject(String.format("P%05d", i), "Project " + i, Project.fromEpochDay(i), "Client " + (i % 7), Project.fromEpochDay(i + 20), i, i % 101));
+			}
+		}
+		return projects;
+	}
+
+	@Test
+	public void testLazyFile() throws IOException {
+		File f = File.createTempFile("mapped", ".obj");
+		try {
+			// Written out of order: the file index is sorted by code
+			ProjectIO.save(f.getPath(), sample(5000));
+			MappedProjectFile m = MappedProjectFile.open(f);
+			assertEquals(5000, m.size());
+			assertEquals(0, m.getDecodedCount());
+			assertEquals(1667, m.getFinishedProjects().size());
+			assertEquals(3333, m.getOngoingProjects().size());
+
+			assertEquals(1234, m.indexOf("p01234"));
+			assertTrue(m.indexOf("P99999") < 0);
+			assertEquals(-1, m.indexOf("P"));
+			assertEquals(0, m.getDecodedCount());
+
+			Project p = m.get(1234);
+			assertEquals("Project 1234", p.getName());
+			assertEquals("Client 2", p.getClient());
+			assertEquals(Project.fromEpochDay(1254), ((OngoingProject) p).getDeadline());
+			assertSame(p, m.get(1234));
+			assertEquals(1, m.getDecodedCount());
+			Project f3 = m.getFinishedProjects().get(1);
+			assertEquals("P00003", f3.getCode());
+			assertEquals(3, ((FinishedProject) f3).getTotalCost(), 0);
+			assertEquals(2, m.getDecodedCount());
+
+			m.loadAll();
+			assertEquals(5000, m.getDecodedCount());
+			assertSame(p, m.get(1234));
+			assertSame(f3, m.getFinishedProjects().get(1));
+			assertEquals(1234, m.indexOf("P01234"));
+		} finally {
+			f.delete();
+		}
+	}
+
+	@Test
+	public void testMappedPortfolio() throws IOException {
+		File f = File.createTempFile("mapped", ".obj");
+		try {
+			ProjectIO.save(f.getPath(), sample(300));
+			MappedPortfolio port = new MappedPortfolio();
+			port.init(f.getPath());
+			assertTrue(port.isMapped());
+			assertEquals(200, port.getOngoingCount());
+			assertEquals(100, port.getFinishedCount());
+			assertEquals(42, port.findByCode("P00042"));
+			assertEquals(-1, port.findByCode("P00042", 42));
+			Project p = port.get(42);
+			assertEquals(42, port.indexOf(p));
+			List<Project> ongoing = port.getOngoingProjects();
+			assertEquals("P00001", ongoing.get(0).getCode());
+			assertEquals(300, port.query().count());
+			assertTrue(port.isMapped());
+
+			// Changes load the whole file, keeping the projects already read
+			port.remove(port.findByCode("P00001"), false);
+			assertFalse(port.isMapped());
+			assertEquals(299, port.getPortfolio().size());
+			assertSame(p, port.get(port.findByCode("P00042")));
+			assertEquals(199, ongoing.size());
+			assertEquals("P00002", ongoing.get(0).getCode());
+			assertEquals(199, port.getStatistics().getOngoingCount());
+			assertEquals(43, port.getClientProjectCount("Client 0"));
+			assertEquals("P0300", port.getNewCode());
+		} finally {
+			f.delete();
+			new File(f.getPath() + ".seq").delete();
+		}
+	}
+
+	@Test
+	public void testListenersAndOldFiles() throws IOException {
+		File f = File.createTempFile("mapped", ".obj");
+		try {
+			ProjectIO.save(f.getPath(), sample(30));
+			MappedPortfolio port = new MappedPortfolio();
+			PortfolioHistory history = new PortfolioHistory(port);
+			port.init(f.getPath());
+			assertFalse(port.isMapped());
+			assertEquals(0, history.getVersion());
+
+			ObjectOutputStream objOut = new ObjectOutputStream(new FileOutputStream(f));
+			objOut.writeObject(sample(30));
+			objOut.close();
+			MappedPortfolio old = new MappedPortfolio();
+			old.init(f.getPath());
+			assertFalse(old.isMapped());
+			assertEquals(30, old.getPortfolio().size());
+			assertEquals("P00000", old.get(0).getCode());
+		} finally {
+			f.delete();
+			new File(f.getPath() + ".seq").delete();
+		}
+	}
+
+	@Test
+	public void testNewCodesWithoutLoading() throws IOException {
+		File f = File.createTempFile("mapped", ".obj");
+		try {
+			ArrayList<Project> projects = sample(300);
+			// Sorts before P9999, so it is not the last code of the file
+			projects.add(new OngoingProject("P10000", "Project 10000", null, "Client 1", null, 1, 1));
+			projects.add(new OngoingProject("P9999", "Project 9999", null, "Client 1", null, 1, 1));
+			projects.add(new OngoingProject("PT001", "Project T", null, "Client 1", null, 1, 1));
+			ProjectIO.save(f.getPath(), projects);
+			new File(f.getPath() + ".seq").delete();
+			MappedPortfolio port = new MappedPortfolio();
+			port.init(f.getPath());
+			assertEquals("P10001", port.getNewCode());
+			assertEquals("P10002", port.getNewCode());
+			assertTrue(port.isMapped());
+		} finally {
+			f.delete();
+			new File(f.getPath() + ".seq").delete();
+		}
+	}
+}
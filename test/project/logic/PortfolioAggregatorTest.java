@@ -0,0 +1,69 @@
+package project.logic;
+
+import static org.junit.Assert.*;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class PortfolioAggregatorTest {
+
+	private static SimpleDateFormat df = new SimpleDateFormat("dd-MM-yyyy");
+
+	@Test
+	public void testFinancials() throws Exception {
+		Portfolio port = new Portfolio();
+		port.add(new OngoingProject("P0001","Project 1", df.parse("01-01-2014"),"Client 1",df.parse("10-02-2014"), 100, 10), false);
+		port.add(new OngoingProject("P0002","Project 2", df.parse("01-06-2014")," client  1",df.parse("01-03-2015"), 300, 50), false);
+		port.add(new OngoingProject("P0003","Project 3", df.parse("01-06-2014"),"Client 2",df.parse("01-03-2015"), 600, 80), false);
+		port.add(new FinishedProject("P0004","Project 4", df.parse("01-01-2013"),"Client 2",df.parse("31-03-2013"), 1000), false);
+		port.add(new FinishedProject("P0005","Project 5", df.parse("01-01-2013"),"Client 2",df.parse("31-12-2013"), 500), false);
+		port.add(new FinishedProject("P0006","Project 6", df.parse("01-01-2013"),"Client 3",df.parse("01-01-2014"), 200), false);
+
+		PortfolioAggregator agg = new PortfolioAggregator(port);
+		Map<String, PortfolioAggregator.Stats> budgets = agg.budgetByClient();
+		// Client names differing in case and spacing share a group
+		assertEquals(2, budgets.size());
+		assertEquals(400, budgets.get("CLIENT 1").getSum(), 0.001);
+		assertEquals(600, budgets.get("CLIENT 2").getMax(), 0.001);
+
+		Map<Integer, PortfolioAggregator.Stats> costs = agg.totalCostByYear();
+		assertEquals(1500, costs.get(2013).getSum(), 0.001);
+		assertEquals(750, costs.get(2013).getMean(), 0.001);
+		assertEquals(200, costs.get(2014).getSum(), 0.001);
+
+		assertEquals((10*100 + 50*300 + 80*600) / 1000.0, agg.weightedCompletion(), 0.001);
+
+		PortfolioAggregator.Stats completion = agg.aggregate(PortfolioAggregator.COMPLETION, null);
+		assertEquals(3, completion.getCount());
+		assertEquals(50, completion.getPercentile(50), 0.001);
+		assertEquals(30, completion.getPercentile(25), 0.001);
+	}
+
+	@Test
+	public void testParallelMatchesSequential() {
+		ArrayList<Project> projects = new ArrayList<Project>();
+		double total = 0;
+		for (int i=0; i<50000; i++) {
+			projects.add(new FinishedProject(String.format("P%06d", i), "", null, "Client " + (i % 7), null, i));
+			total += i;
+		}
+		Portfolio port = new Portfolio();
+		port.init(projects);
+
+		PortfolioAggregator agg = new PortfolioAggregator(port, new ForkJoinPool(4));
+		PortfolioAggregator.Stats all = agg.aggregate(PortfolioAggregator.TOTAL_COST, null);
+		assertEquals(50000, all.getCount());
+		assertEquals(total, all.getSum(), 0.001);
+		assertEquals(0, all.getMin(), 0.001);
+		assertEquals(49999, all.getMax(), 0.001);
+		assertEquals(24999.5, all.getPercentile(50), 0.001);
+
+		Map<String, PortfolioAggregator.Stats> byClient = agg.groupBy(PortfolioAggregator.CLIENT, PortfolioAggregator.TOTAL_COST, null);
+		assertEquals(7, byClient.size());
+		assertEquals(7143, byClient.get("CLIENT 0").getCount());
+	}
+}
@@ -0,0 +1,181 @@
+package project.logic;
+
+import static org.junit.Assert.*;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PortfolioHistoryTest {
+
+	private static SimpleDateFormat df = new SimpleDateFormat("dd-MM-yyyy");
+	private Portfolio port;
+	private PortfolioHistory history;
+	private OngoingProject op;
+	private FinishedProject fp;
+
+	@Before
+	public void setUp() throws Exception {
+		ArrayList<Project> data = new ArrayList<Project>();
+		op = new OngoingProject("P0001","Project 1", df.parse("15-08-2010"),"Client 1",df.parse("15-10-2010"), 5000,50);
+		fp = new FinishedProject("P0002","Project 2", df.parse("15-08-2010"),"Client 2",df.parse("15-10-2010"), 5000);
+		data.add(op);
+		data.add(fp);
+		port = new Portfolio();
+		port.init(data);
+		history = new PortfolioHistory(port);
+	}
+
+	@Test
+	public void testHistoryUndoRedo() {
+		OngoingProject edited = new OngoingProject(op);
+		edited.setCompletion(90);
+		port.replaceProject(edited, port.indexOf(op), false);
+		port.remove(port.indexOf(fp), false);
+		assertEquals(2, history.getVersion());
+
+		assertTrue(history.undo(false));
+		assertEquals(2, port.getPortfolio().size());
+		assertEquals(1, port.getFinishedCount());
+		assertTrue(history.undo(false));
+		assertEquals(50, ((OngoingProject) port.get(0)).getCompletion());
+		assertFalse(history.undo(false));
+
+		assertTrue(history.redo(false));
+		assertEquals(90, ((OngoingProject) port.get(0)).getCompletion());
+		assertTrue(history.redo(false));
+		assertEquals(1, port.getPortfolio().size());
+		assertFalse(history.canRedo());
+	}
+
+	@Test
+	public void testHistoryNewEditDropsRedo() {
+		port.remove(port.indexOf(fp), false);
+		history.undo(false);
+		assertTrue(history.canRedo());
+
+		port.add(new FinishedProject(fp), false);
+		assertFalse(history.canRedo());
+		assertEquals(1, history.getVersion());
+	}
+
+	@Test
+	public void testHistoryDiff() {
+		OngoingProject edited = new OngoingProject(op);
+		edited.setBudget(1);
+		port.replaceProject(edited, port.indexOf(op), false);
+		port.remove(port.indexOf(fp), false);
+
+		List<PortfolioHistory.Change> changes = history.diff(0);
+		assertEquals(2, changes.size());
+		assertSame(op, changes.get(0).getBefore());
+		assertSame(edited, changes.get(0).getAfter());
+		assertNull(changes.get(1).getAfter());
+
+		history.undo(false);
+		history.undo(false);
+		changes = history.diff(2);
+		assertEquals(2, changes.size());
+		assertSame(fp, changes.get(0).getAfter());
+		assertNull(changes.get(0).getBefore());
+	}
+
+	@Test
+	public void testHistoryClearedOnReset() {
+		port.remove(0, false);
+		port.init(new ArrayList<Project>());
+		assertFalse(history.canUndo());
+		assertEquals(0, history.getVersion());
+	}
+
+	@Test
+	public void testHistoryBatchIsOneEntry() {
+		ArrayList<String> codes = new ArrayList<String>();
+		codes.add("P0001");
+		codes.add("P0002");
+		port.removeAll(codes, false);
+		assertEquals(0, port.getPortfolio().size());
+		assertEquals(1, history.getVersion());
+		assertEquals(2, history.diff(0).size());
+
+		assertTrue(history.undo(false));
+		assertEquals(2, port.getPortfolio().size());
+		assertFalse(history.canUndo());
+		assertTrue(history.redo(false));
+		assertEquals(0, port.getPortfolio().size());
+	}
+
+	@Test
+	public void testHistoryUndoesConversion() throws Exception {
+		FinishedProject done = new FinishedProject(op.getCode(), op.getName(), op.getStartDate(), op.getClient(), df.parse("20-10-2010"), 4800);
+		port.replaceProject(done, port.indexOf(op), false);
+		assertEquals(0, port.getOngoingCount());
+
+		assertTrue(history.undo(false));
+		assertSame(op, port.get(0));
+		assertEquals(1, port.getOngoingCount());
+		assertEquals(1, port.getFinishedCount());
+		assertTrue(history.redo(false));
+		assertSame(done, port.get(0));
+		assertEquals(2, port.getFinishedCount());
+	}
+
+	@Test
+	public void testHistoryBatchReplayedAsBatch() throws Exception {
+		// Shares its code with a project of the batch, but is not part of it
+		OngoingProject twin = new OngoingProject(op);
+		port.add(twin, false);
+		ArrayList<Project> batch = new ArrayList<Project>();
+		batch.add(new OngoingProject("P0003","Project 3", df.parse("15-08-2010"),"Client 3",df.parse("15-10-2010"), 100,10));
+		batch.add(new OngoingProject(op));
+		port.addAll(batch, false);
+		assertEquals(5, port.getPortfolio().size());
+
+		final int[] events = new int[2];
+		port.addPortfolioListener(new PortfolioListener() {
+			public void projectAdded(Project p) {
+				events[1]++;
+			}
+			public void projectReplaced(Project oldP, Project p) {
+				events[1]++;
+			}
+			public void projectRemoved(Project p) {
+				events[1]++;
+			}
+			public void batchStarted(Portfolio p) {
+				events[0]++;
+			}
+			public void batchFinished(Portfolio p) {
+			}
+			public void portfolioReset(Portfolio p) {
+			}
+		});
+		assertTrue(history.undo(false));
+		assertEquals(3, port.getPortfolio().size());
+		assertTrue(port.indexOf(twin) >= 0);
+		assertTrue(port.indexOf(op) >= 0);
+		assertEquals(1, events[0]);
+		assertEquals(2, events[1]);
+
+		assertTrue(history.redo(false));
+		assertEquals(5, port.getPortfolio().size());
+		assertEquals(2, events[0]);
+	}
+
+	@Test
+	public void testHistorySkipsMissingProjects() {
+		port.remove(port.indexOf(fp), false);
+		history.undo(false);
+		// The restored project is removed without being recorded
+		port.removePortfolioListener(history);
+		port.remove(port.indexOf(fp), false);
+		port.addPortfolioListener(history);
+
+		assertTrue(history.redo(false));
+		assertEquals(1, port.getPortfolio().size());
+		assertSame(op, port.get(0));
+	}
+}
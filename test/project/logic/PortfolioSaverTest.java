@@ -0,0 +1,178 @@
+package project.logic;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import project.io.ProjectIO;
+import project.io.ProjectJournal;
+
+public class PortfolioSaverTest {
+
+	private static ArrayList<Project> sample(int n) {
+		ArrayList<Project> projects = new ArrayList<Project>();
+		for (int i=0; i<n; i++) {
+			projects.add(new OngoingProject(String.format("P%04d", i), "Project " + i, Project.fromEpochDay(i), "Client", Project.fromEpochDay(i + 20), i, 0));
+		}
+		return projects;
+	}
+
+	private static void delete(File f) {
+		f.delete();
+		new File(f.getPath() + ".seq").delete();
+		ProjectJournal.journalFile(f).delete();
+	}
+
+	private static void rename(Portfolio port, int index, String name) {
+		Project p = new OngoingProject(port.get(index));
+		p.setName(name);
+		port.replaceProject(p, index, false);
+	}
+
+	private static Portfolio reopen(File f) {
+		Portfolio port = new Portfolio();
+		port.init(f.getPath());
+		return port;
+	}
+
+	@Test
+	public void testSaveTaskKeepsState() throws Exception {
+		File f = File.createTempFile("saver", ".obj");
+		try {
+			ProjectIO.save(f.getPath(), sample(50));
+			Portfolio port = new Portfolio();
+			port.init(f.getPath());
+
+			// The first save writes a snapshot, the second one appends to the journal
+			for (int round=0; round<2; round++) {
+				rename(port, 1, "Saved " + round);
+				Callable<Boolean> task = port.saveTask(f.getPath());
+				rename(port, 2, "Not saved " + round);
+				port.remove(3, false);
+				assertTrue(task.call());
+
+				Portfolio saved = reopen(f);
+				assertEquals(50 - round, saved.getPortfolio().size());
+				assertEquals("Saved " + round, saved.get(1).getName());
+				assertEquals(round == 0 ? "Project 2" : "Not saved 0", saved.get(2).getName());
+			}
+
+			// Changes made after a save are written by the next one
+			assertTrue(port.save(f.getPath()));
+			Portfolio saved = reopen(f);
+			assertEquals(48, saved.getPortfolio().size());
+			assertEquals("Not saved 1", saved.get(2).getName());
+		} finally {
+			delete(f);
+		}
+	}
+
+	@Test
+	public void testCoalescedSaves() throws Exception {
+		File f = File.createTempFile("saver", ".obj");
+		try {
+			Portfolio port = new Portfolio();
+			port.init(sample(20));
+			PortfolioSaver saver = new PortfolioSaver(port, 300);
+			final AtomicInteger completed = new AtomicInteger();
+			SaveListener l = new SaveListener() {
+				public void saveCompleted(String file, boolean success) {
+					if (success) {
+						completed.incrementAndGet();
+					}
+				}
+			};
+			Future<Boolean> first = saver.save(f.getPath(), l);
+			for (int i=0; i<5; i++) {
+				rename(port, i, "Burst " + i);
+				assertSame(first, saver.save(f.getPath(), l));
+			}
+			assertTrue(first.get());
+			assertEquals(6, completed.get());
+			assertEquals("Burst 4", reopen(f).get(4).getName());
+
+			// Once written, a new save is scheduled
+			port.remove(0, false);
+			Future<Boolean> second = saver.save(f.getPath());
+			assertNotSame(first, second);
+			saver.flush();
+			assertTrue(second.isDone());
+			assertEquals(19, reopen(f).getPortfolio().size());
+			saver.shutdown();
+		} finally {
+			delete(f);
+		}
+	}
+
+	@Test
+	public void testFailedSave() throws Exception {
+		Portfolio port = new Portfolio();
+		port.init(sample(5));
+		PortfolioSaver saver = new PortfolioSaver(port);
+		File dir = new File(System.getProperty("java.io.tmpdir"), "missing-" + System.nanoTime());
+		assertFalse(saver.save(new File(dir, "p.obj").getPath()).get());
+		saver.shutdown();
+	}
+
+	@Test
+	public void testSavesFinishingOutOfOrder() throws Exception {
+		File f = File.createTempFile("saver", ".obj");
+		try {
+			ProjectIO.save(f.getPath(), sample(30));
+			Portfolio port = new Portfolio();
+			port.init(f.getPath());
+
+			// Both saves write a snapshot: the older one must not replace the newer one
+			Callable<Boolean> older = port.saveTask(f.getPath());
+			rename(port, 1, "Newer");
+			Callable<Boolean> newer = port.saveTask(f.getPath());
+			assertTrue(newer.call());
+			assertTrue(older.call());
+			assertEquals("Newer", reopen(f).get(1).getName());
+		} finally {
+			delete(f);
+		}
+	}
+
+	@Test
+	public void testConcurrentFileSaves() throws Exception {
+		final File f = File.createTempFile("saver", ".obj");
+		final ArrayList<Project> projects = sample(2000);
+		final AtomicInteger errors = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		try {
+			for (int t=0; t<threads.length; t++) {
+				threads[t] = new Thread() {
+					public void run() {
+						try {
+							for (int i=0; i<10; i++) {
+								ProjectIO.save(f.getPath(), projects);
+							}
+						} catch (Exception e) {
+							errors.incrementAndGet();
+						}
+					}
+				};
+				threads[t].start();
+			}
+			for (Thread t : threads) {
+				t.join();
+			}
+			assertEquals(0, errors.get());
+			assertEquals(2000, ProjectIO.open(f.getPath()).size());
+			// Every temporary file was renamed or removed
+			File[] left = f.getAbsoluteFile().getParentFile().listFiles();
+			for (File l : left) {
+				assertFalse(l.getName().startsWith(f.getName() + ".") && l.getName().endsWith(".tmp"));
+			}
+		} finally {
+			delete(f);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package project.logic;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PortfolioStatisticsTest {
+
+	@Test
+	public void testLiveStatistics() {
+		Portfolio port = new Portfolio();
+		PortfolioStatistics stats = port.getStatistics();
+		OngoingProject o1 = new OngoingProject("P0001","Project 1", Project.fromEpochDay(100),"Client 1", Project.fromEpochDay(200), 100, 15);
+		OngoingProject o2 = new OngoingProject("P0002","Project 2", Project.fromEpochDay(100),"client  1", Project.fromEpochDay(300), 300, 100);
+		FinishedProject f1 = new FinishedProject("P0003","Project 3", Project.fromEpochDay(100),"Client 2", Project.fromEpochDay(150), 700);
+		port.add(o1, false);
+		port.add(o2, false);
+		port.add(f1, false);
+
+		assertEquals(2, stats.getOngoingCount());
+		assertEquals(1, stats.getFinishedCount());
+		assertEquals(400, stats.getTotalBudget(), 0.001);
+		assertEquals(700, stats.getTotalCost(), 0.001);
+		assertEquals(57.5, stats.getAverageCompletion(), 0.001);
+		assertEquals(1, stats.getCompletionHistogram()[1]);
+		assertEquals(1, stats.getCompletionHistogram()[10]);
+		assertEquals(2, stats.getClientCount("CLIENT 1"));
+		assertEquals(400, stats.getClientBudget("Client 1"), 0.001);
+		assertEquals(700, stats.getClientTotalCost("Client 2"), 0.001);
+
+		assertEquals(0, stats.getOverdueCount(200));
+		assertEquals(1, stats.getOverdueCount(201));
+		assertEquals(2, stats.getOverdueCount(1000000));
+		assertEquals(0, stats.getOverdueCount(150));
+
+		FinishedProject closed = new FinishedProject(o1);
+		closed.setTotalCost(120);
+		port.replaceProject(closed, port.indexOf(o1), false);
+		assertEquals(1, stats.getOngoingCount());
+		assertEquals(300, stats.getTotalBudget(), 0.001);
+		assertEquals(820, stats.getTotalCost(), 0.001);
+		assertEquals(0, stats.getOverdueCount(250));
+
+		port.remove(port.indexOf(f1), false);
+		assertEquals(0, stats.getClientCount("Client 2"));
+		assertEquals(120, stats.getTotalCost(), 0.001);
+	}
+
+	@Test
+	public void testMatchesRescan() {
+		Random r = new Random(3);
+		ArrayList<Project> projects = new ArrayList<Project>();
+		for (int i=0; i<500; i++) {
+			projects.add(new OngoingProject(String.format("P%04d", i), "", null, "C" + r.nextInt(5),
+					Project.fromEpochDay(r.nextInt(100)), r.nextInt(1000), r.nextInt(101)));
+		}
+		Portfolio port = new Portfolio();
+		port.init(projects);
+		for (int i=0; i<200; i++) {
+			port.remove(r.nextInt(port.getOngoingCount()), false);
+		}
+
+		PortfolioStatistics stats = port.getStatistics();
+		PortfolioStatistics fresh = new PortfolioStatistics(port);
+		int overdue = 0;
+		double budget = 0;
+		for (Project p : port.getPortfolio()) {
+			if (Project.toEpochDay(((OngoingProject) p).getDeadline()) < 50) {
+				overdue++;
+			}
+			budget += ((OngoingProject) p).getBudget();
+		}
+		assertEquals(overdue, stats.getOverdueCount(50));
+		assertEquals(budget, stats.getTotalBudget(), 0.001);
+		assertEquals(fresh.getClientBudget("C3"), stats.getClientBudget("c3"), 0.001);
+		assertArrayEquals(fresh.getCompletionHistogram(), stats.getCompletionHistogram());
+	}
+}
@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -39,7 +40,7 @@ public class PortfolioTest {
 	public void testPortfolioGetOngoingProjects() {
 		port.init(testData);
 		Collections.sort(testData);
-		ArrayList<Project> ongoing = port.getOngoingProjects();
+		List<Project> ongoing = port.getOngoingProjects();
 		assertEquals(testData.get(1), ongoing.get(0));
 		assertEquals(testData.get(4), ongoing.get(1));
 	}
@@ -48,7 +49,7 @@ public class PortfolioTest {
 	public void testPortfolioGetFinishedProjects() {
 		port.init(testData);
 		Collections.sort(testData);
-		ArrayList<Project> finished = port.getFinishedProjects();
+		List<Project> finished = port.getFinishedProjects();
 		assertEquals(testData.get(0), finished.get(0));
 		assertEquals(testData.get(2), finished.get(1));
 		assertEquals(testData.get(3), finished.get(2));
@@ -68,6 +69,25 @@ public class PortfolioTest {
 		assertTrue(port.findByCode("P0002",index+1)>0);
 	}
 	
+	@Test
+	public void testPortfolioFindByCodeDuplicates() {
+		Portfolio dup = new Portfolio();
+		dup.add(new OngoingProject(op), false);
+		dup.add(new FinishedProject(fp), false);
+		
+		int index = dup.findByCode(op.getCode().toLowerCase());
+		assertTrue(index>=0);
+		assertEquals(-1, dup.findByCode(op.getCode().toLowerCase(), index));
+		
+		Project copy = new OngoingProject(op);
+		copy.setCode(op.getCode().toLowerCase());
+		dup.add(copy, false);
+		assertTrue(dup.findByCode(op.getCode(), index)>=0);
+		
+		dup.remove(dup.findByCode(copy.getCode(), -1), false);
+		assertEquals(-1, dup.findByCode(op.getCode(), dup.findByCode(op.getCode())));
+	}
+	
 	@Test
 	public void testPortfolioSort() {
 		assertEquals("P0001", port.get(0).getCode());
@@ -87,6 +107,30 @@ public class PortfolioTest {
 		assertTrue(port.findByCode("P9999")<0);
 	}
 	
+	@Test
+	public void testPortfolioFindByCodeLookup() {
+		Portfolio codes = new Portfolio();
+		for (int i=1; i<=9; i+=2) {
+			codes.add(new FinishedProject(String.format("P%04d", i), "Project " + i, null, "Client", null, i), false);
+		}
+		// Hits, on the first, middle and last projects
+		assertEquals(0, codes.findByCode("P0001"));
+		assertEquals(2, codes.findByCode("P0005"));
+		assertEquals(4, codes.findByCode("P0009"));
+		// Misses give -(insertion point)-1
+		assertEquals(-1, codes.findByCode("P0000"));
+		assertEquals(-3, codes.findByCode("P0004"));
+		assertEquals(-6, codes.findByCode("P9999"));
+		assertTrue(new Portfolio().findByCode("P0001")<0);
+		// Codes are compared ignoring case
+		assertEquals(2, codes.findByCode("p0005"));
+		assertEquals(-1, codes.findByCode("p0005", 2));
+		// Indexes outside the portfolio exclude nothing
+		assertEquals(2, codes.findByCode("p0005", -1));
+		assertEquals(2, codes.findByCode("P0005", 99));
+		assertEquals(-1, codes.findByCode("P0004", -1));
+	}
+	
 	@Test
 	public void testPortfolioAddRemove() {
 		fp.setCode(port.getNewCode());
@@ -120,14 +164,133 @@ public class PortfolioTest {
 		port.replaceProject(fp, 1, false);
 		
 		assertFalse(originalProject.equals(port.get(1)));
-		assertTrue(fp.equals(port.get(1)));
+		assertTrue(fp.equals(port.get(port.findByCode(fp.getCode()))));
 		
-		port.replaceProject(op, 1, false);
+		port.replaceProject(op, port.findByCode(fp.getCode()), false);
 		
-		assertFalse(fp.equals(port.get(1)));
-		assertTrue(op.equals(port.get(1)));
+		assertTrue(port.findByCode(fp.getCode()) < 0);
+		assertTrue(op.equals(port.get(port.findByCode(op.getCode()))));
 		
-		port.replaceProject(originalProject, 1, false);
+		port.replaceProject(originalProject, port.findByCode(op.getCode()), false);
+		assertTrue(originalProject.equals(port.get(1)));
+	}
+	
+	@Test
+	public void testPortfolioReplaceCode() {
+		Portfolio codes = new Portfolio();
+		for (int i=1; i<=5; i++) {
+			codes.add(new OngoingProject("P000" + i, "Project " + i, null, "Client", null, 100, 0), false);
+		}
+		codes.add(new FinishedProject("PT002", "Project Test 2", null, "Client", null, 100), false);
+		
+		// Renaming the code of the first project moves it after the other ongoing ones
+		Project renamed = new OngoingProject(codes.get(0));
+		renamed.setCode("P0009");
+		codes.replaceProject(renamed, 0, false);
+		assertEquals(4, codes.findByCode("P0009"));
+		assertSame(renamed, codes.get(4));
+		assertTrue(codes.findByCode("P0001") < 0);
+		assertEquals(-1, codes.findByCode("P0009", 4));
+		assertEquals("P0009", codes.getOngoingProjects().get(4).getCode());
+		for (int i=1; i<codes.getPortfolio().size(); i++) {
+			assertTrue(codes.get(i - 1).compareTo(codes.get(i)) < 0);
+		}
+		
+		// Later additions and batch removals still find their place
+		codes.add(new OngoingProject("P0006", "Project 6", null, "Client", null, 100, 0), false);
+		assertEquals(4, codes.findByCode("P0006"));
+		assertEquals(2, codes.removeAll(java.util.Arrays.asList("P0009", "P0002"), false));
+		assertEquals(4, codes.getOngoingCount());
+		assertTrue(codes.findByCode("P0009") < 0);
+	}
+	
+	@Test
+	public void testPortfolioPartitions() {
+		Portfolio part = new Portfolio();
+		part.add(new OngoingProject(op), false);
+		part.add(new FinishedProject(fp), false);
+		List<Project> ongoing = part.getOngoingProjects();
+		assertEquals(1, ongoing.size());
+		
+		int index = part.findByCode(op.getCode());
+		part.replaceProject(new FinishedProject(part.get(index)), index, false);
+		assertEquals(0, part.getOngoingCount());
+		assertEquals(2, part.getFinishedCount());
+		assertTrue(ongoing.isEmpty());
+		
+		part.remove(index, false);
+		assertEquals(1, part.getFinishedProjects().size());
+	}
+	
+	@Test
+	public void testPortfolioSnapshot() {
+		Portfolio snap = new Portfolio();
+		snap.add(new OngoingProject(op), false);
+		List<Project> before = snap.snapshot();
+		
+		snap.add(new FinishedProject(fp), false);
+		List<Project> after = snap.snapshot();
+		snap.remove(0, false);
+		
+		assertEquals(1, before.size());
+		assertEquals(2, after.size());
+		assertEquals(1, snap.getPortfolio().size());
+		try {
+			before.remove(0);
+			fail();
+		} catch (UnsupportedOperationException e) {
+			assertEquals(1, before.size());
+		}
+		
+		// Scans made by queries and aggregations do not make the next change copy the list
+		ArrayList<Project> working = snap.getPortfolio();
+		assertEquals(1, snap.query().count());
+		new PortfolioAggregator(snap).aggregate(PortfolioAggregator.BUDGET, null);
+		snap.add(new OngoingProject(op), false);
+		assertSame(working, snap.getPortfolio());
+	}
+	
+	@Test
+	public void testPortfolioClientIndex() {
+		Portfolio clients = new Portfolio();
+		OngoingProject o = new OngoingProject(op);
+		FinishedProject f = new FinishedProject(fp);
+		f.setCode("PT003");
+		clients.add(o, false);
+		clients.add(f, false);
+		
+		assertEquals(2, clients.getClientProjectCount("  client   1 "));
+		assertEquals(o.getBudget(), clients.getClientBudget("CLIENT 1"), 0.001);
+		assertEquals(f.getTotalCost(), clients.getClientTotalCost("Client 1"), 0.001);
+		
+		FinishedProject moved = new FinishedProject(f);
+		moved.setClient("Client 9");
+		clients.replaceProject(moved, clients.indexOf(f), false);
+		assertEquals(1, clients.getProjectsByClient("Client 1").size());
+		assertSame(moved, clients.getProjectsByClient("client 9").get(0));
+		
+		clients.remove(clients.indexOf(o), false);
+		assertEquals(0, clients.getClientProjectCount("Client 1"));
+		assertEquals(0, clients.getClientBudget("Client 1"), 0.001);
+	}
+	
+	@Test
+	public void testPortfolioClientIndexEditedInPlace() {
+		Portfolio clients = new Portfolio();
+		OngoingProject o = new OngoingProject(op);
+		OngoingProject other = new OngoingProject(op);
+		other.setCode("P0009");
+		clients.add(o, false);
+		clients.add(other, false);
+		
+		// The project is edited in place before being replaced, so its indexed state is stale
+		o.setBudget(o.getBudget() + 1000);
+		o.setClient("Client 9");
+		OngoingProject edited = new OngoingProject(o);
+		clients.replaceProject(edited, clients.indexOf(o), false);
+		assertEquals(other.getBudget(), clients.getClientBudget("Client 1"), 0.001);
+		assertEquals(1, clients.getClientProjectCount("Client 1"));
+		assertEquals(edited.getBudget(), clients.getClientBudget("Client 9"), 0.001);
 	}
 	
 	@Test
@@ -163,6 +326,58 @@ public class PortfolioTest {
 		}
 	}
 	
+	@Test
+	public void testPortfolioBatch() {
+		Portfolio batch = new Portfolio();
+		ArrayList<Project> projects = new ArrayList<Project>();
+		for (int i=0; i<100; i+=2) {
+			projects.add(new OngoingProject(String.format("P%04d", i), "Project " + i, null, "Client " + (i % 3), null, i, 10));
+		}
+		batch.add(new FinishedProject("P0001", "Project 1", null, "Client 1", null, 5), false);
+		PortfolioHistory history = new PortfolioHistory(batch);
+		
+		assertEquals(50, batch.addAll(projects, false));
+		assertEquals(51, batch.getPortfolio().size());
+		assertEquals(50, batch.getOngoingCount());
+		assertEquals(1, batch.getFinishedCount());
+		for (int i=1; i<batch.getPortfolio().size(); i++) {
+			assertTrue(batch.get(i-1).compareTo(batch.get(i)) < 0);
+		}
+		assertEquals("P0001", batch.get(1).getCode());
+		assertEquals(17, batch.getClientProjectCount("client 0"));
+		
+		FinishedProject closed = new FinishedProject((OngoingProject) batch.get(batch.findByCode("P0010")));
+		OngoingProject renamed = new OngoingProject("p0020", "Renamed", null, "Client 9", null, 1, 1);
+		OngoingProject missing = new OngoingProject("P9999", "Missing", null, "Client 9", null, 1, 1);
+		List<Project> before = batch.snapshot();
+		assertEquals(2, batch.replaceAll(java.util.Arrays.asList(closed, renamed, missing), false));
+		assertSame(closed, batch.get(batch.findByCode("P0010")));
+		assertSame(renamed, batch.get(batch.findByCode("P0020")));
+		assertEquals(2, batch.getFinishedCount());
+		assertEquals(1, batch.getClientProjectCount("Client 9"));
+		assertTrue(batch.findByCode("P9999") < 0);
+		assertEquals(51, before.size());
+		assertEquals("Project 20", before.get(batch.findByCode("P0020")).getName());
+		
+		assertEquals(3, batch.removeAll(java.util.Arrays.asList("P0001", "p0010", "P0020", "P0003", null), false));
+		assertEquals(48, batch.getPortfolio().size());
+		assertEquals(48, batch.getOngoingCount());
+		assertEquals(0, batch.getFinishedCount());
+		assertTrue(batch.findByCode("P0010") < 0);
+		assertEquals(48, batch.getStatistics().getOngoingCount());
+		assertEquals(0, batch.search("Renamed").size());
+		assertEquals(0, batch.removeAll(java.util.Arrays.asList("P0001"), false));
+		
+		// Listeners hear about each project, and the history undoes each batch in one step
+		assertEquals(3, history.getVersion());
+		assertTrue(history.undo(false));
+		assertEquals(51, batch.getPortfolio().size());
+		assertEquals(2, batch.getFinishedCount());
+		assertTrue(history.undo(false));
+		assertTrue(history.undo(false));
+		assertEquals(1, batch.getPortfolio().size());
+	}
+	
 	@Test
 	public void testPortfolioListProjects() {
 		port.listProjects();
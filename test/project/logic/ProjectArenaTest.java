@@ -0,0 +1,103 @@
+package project.logic;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import project.io.BlockOutputStream;
+import project.io.ProjectIO;
+
+public class ProjectArenaTest {
+
+	private static SimpleDateFormat df = new SimpleDateFormat("dd-MM-yyyy");
+	private static ArrayList<Project> data = new ArrayList<Project>();
+
+	@BeforeClass
+	public static void setUp() {
+		try {
+			for (int i=1; i<=3000; i++) {
+				String code = "P"+String.format("%04d", i);
+				if (i % 2 == 0) {
+					data.add(new OngoingProject(code, "Project "+i, df.parse("15-08-2010"), "Cl\u00efent "+(i%7), df.parse("15-10-2010"), 10.5*i, i%100));
+				} else {
+					data.add(new FinishedProject(code, "Project "+i, df.parse("15-08-2010"), "Cl\u00efent "+(i%7), df.parse("15-10-2010"), 20.5*i));
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Test
+	public void testArenaRoundTrip() {
+		ProjectArena arena = new ProjectArena(data);
+		assertEquals(data.size(), arena.size());
+		for (int i=0; i<data.size(); i++) {
+			assertTrue(data.get(i).equals(arena.get(i)));
+		}
+	}
+
+	@Test
+	public void testArenaFindByCode() {
+		ProjectArena arena = new ProjectArena(data);
+		assertEquals(41, arena.findByCode("p0042"));
+		assertEquals("P0042", arena.getCode(41));
+		assertTrue(arena.findByCode("P9999") < 0);
+	}
+
+	@Test
+	public void testArenaSet() {
+		ProjectArena arena = new ProjectArena();
+		arena.add(data.get(0));
+		arena.add(data.get(1));
+		Project old = arena.set(0, data.get(2));
+		assertTrue(data.get(0).equals(old));
+		assertTrue(data.get(2).equals(arena.get(0)));
+		assertTrue(data.get(1).equals(arena.get(1)));
+	}
+
+	@Test
+	public void testArenaIndexOutOfBounds() {
+		ProjectArena arena = new ProjectArena();
+		try {
+			arena.get(0);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			assertEquals(0, arena.size());
+		}
+	}
+
+	@Test
+	public void testArenaNullStrings() {
+		ProjectArena arena = new ProjectArena();
+		arena.add(new OngoingProject("P0001", null, null, null, null, 10, 5));
+		arena.add(new FinishedProject("P0002", "", null, "Client", null, 20));
+		assertNull(arena.get(0).getName());
+		assertNull(arena.get(0).getClient());
+		assertNull(arena.get(0).getStartDate());
+		assertEquals("", arena.get(1).getName());
+		assertEquals("Client", arena.get(1).getClient());
+	}
+
+	@Test
+	public void testArenaOpenFile() throws Exception {
+		File f = File.createTempFile("arena", ".obj");
+		try {
+			for (int codec=BlockOutputStream.NONE; codec<=BlockOutputStream.LZ; codec++) {
+				ProjectIO.save(f.getPath(), data, codec);
+				ProjectArena arena = ProjectIO.openArena(f.getPath());
+				assertEquals(data.size(), arena.size());
+				for (int i=0; i<data.size(); i+=7) {
+					assertTrue(data.get(i).equals(arena.get(i)));
+				}
+			}
+		} finally {
+			f.delete();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package project.logic;
+
+import static org.junit.Assert.*;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ProjectColumnsTest {
+
+	private static SimpleDateFormat df = new SimpleDateFormat("dd-MM-yyyy");
+	private static Portfolio port = new Portfolio();
+	private static ProjectColumns cols;
+
+	@BeforeClass
+	public static void setUp() {
+		ArrayList<Project> data = new ArrayList<Project>();
+		try {
+			data.add(new OngoingProject("P0001","Project 1", df.parse("15-08-2010"),"Client 1",df.parse("15-10-2010"), 1000,20));
+			data.add(new OngoingProject("P0002","Project 2", df.parse("15-08-2010"),"Client 2",df.parse("15-10-2014"), 3000,60));
+			data.add(new FinishedProject("P0003","Project 3", df.parse("15-08-2010"),"Client 1",df.parse("15-10-2010"), 500));
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		port.init(data);
+		cols = new ProjectColumns(port);
+	}
+
+	@Test
+	public void testColumnsLoad() {
+		assertEquals(3, cols.size());
+		assertEquals("P0002", cols.getCode(1));
+		assertEquals("Client 1", cols.getClient(2));
+		assertEquals(2, cols.getClientCount());
+		assertFalse(cols.isOngoing(2));
+		assertEquals(Project.NO_DATE, cols.getDeadlineDay(2));
+	}
+
+	@Test
+	public void testColumnsAggregates() throws Exception {
+		assertEquals(4000, cols.totalBudget(), 0.001);
+		assertEquals(500, cols.totalCost(), 0.001);
+		assertEquals(40, cols.averageCompletion(), 0.001);
+		assertEquals(1000, cols.budgetOf("Client 1"), 0.001);
+		assertEquals(0, cols.budgetOf("Unknown"), 0.001);
+
+		int today = Project.toEpochDay(df.parse("01-01-2012"));
+		assertEquals(1, cols.countOverdue(today));
+		assertEquals(0, cols.overdueRows(today)[0]);
+	}
+
+	@Test
+	public void testEpochDayRoundTrip() throws Exception {
+		java.util.Date d = df.parse("29-02-2012");
+		assertEquals(d, Project.fromEpochDay(Project.toEpochDay(d)));
+		assertEquals(0, Project.toEpochDay(df.parse("01-01-1970")));
+		assertEquals(-1, Project.toEpochDay(df.parse("31-12-1969")));
+		assertNull(Project.fromEpochDay(Project.NO_DATE));
+	}
+}
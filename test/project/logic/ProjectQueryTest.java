@@ -0,0 +1,119 @@
+package project.logic;
+
+import static org.junit.Assert.*;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProjectQueryTest {
+
+	private static SimpleDateFormat df = new SimpleDateFormat("dd-MM-yyyy");
+	private Portfolio port;
+
+	@Before
+	public void setUp() {
+		ArrayList<Project> projects = new ArrayList<Project>();
+		for (int i=0; i<200; i++) {
+			String code = String.format("P%04d", i);
+			if (i % 2 == 0) {
+				projects.add(new OngoingProject(code, "Project " + i, Project.fromEpochDay(16000 + i), "Client " + (i % 10),
+						Project.fromEpochDay(16100 + i), i * 10, i % 100));
+			} else {
+				projects.add(new FinishedProject(code, "Project " + i, Project.fromEpochDay(16000 + i), "Client " + (i % 10),
+						Project.fromEpochDay(16050 + i), i * 10));
+			}
+		}
+		port = new Portfolio();
+		port.init(projects);
+	}
+
+	@Test
+	public void testFilterAndPaging() {
+		List<Project> page = port.query().ongoing().client("client 4").page(1, 5).list();
+		assertEquals(5, page.size());
+		assertEquals("P0054", page.get(0).getCode());
+		assertEquals("P0094", page.get(4).getCode());
+		assertNull(port.query().ongoing().client("client 4").explain());
+
+		ProjectQuery q = port.query().finished().client("CLIENT  3");
+		assertEquals(20, q.count());
+		assertTrue(q.explain().startsWith("client index"));
+		assertEquals(0, port.query().finished().client("Client 4").count());
+	}
+
+	@Test
+	public void testLargePages() {
+		// The offset is clamped instead of overflowing
+		assertEquals(0, port.query().page(Integer.MAX_VALUE / 2, 10).count());
+		assertEquals(10, port.query().page(19, 10).count());
+		try {
+			port.query().page(-1, 10);
+			fail("Negative page accepted");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testIndexedCriteria() throws Exception {
+		ProjectQuery q = port.query().deadlineBetween(Project.fromEpochDay(16110), Project.fromEpochDay(16119));
+		assertEquals(5, q.count());
+		assertTrue(q.explain().startsWith("deadline index"));
+		assertEquals("P0010", q.first().getCode());
+
+		q = port.query().matching("project 19").finished();
+		assertEquals(6, q.count());
+		assertTrue(q.explain().startsWith("text index"));
+
+		assertEquals(1, port.query().activeBetween(Project.fromEpochDay(16000), Project.fromEpochDay(16000)).count());
+		assertEquals(port.getFinishedBetween(df.parse("01-01-2000"), df.parse("01-01-2100")).size(),
+				port.query().finishedBetween(df.parse("01-01-2000"), df.parse("01-01-2100")).count());
+	}
+
+	@Test
+	public void testOpenDateBounds() {
+		// Checked by the residual date filter, as the client index is smaller
+		ProjectQuery q = port.query().client("client 4").deadlineBetween(null, Project.fromEpochDay(16134));
+		assertEquals(4, q.count());
+		assertTrue(q.explain().startsWith("client index"));
+		assertEquals(2, port.query().client("client 4").deadlineBetween(Project.fromEpochDay(16284), null).count());
+		assertEquals(3, port.query().client("client 3").finishedBetween(null, Project.fromEpochDay(16073)).count());
+		assertEquals(2, port.query().client("client 3").finishedBetween(Project.fromEpochDay(16233), null).count());
+		assertEquals(20, port.query().client("client 3").activeBetween(null, null).count());
+
+		// Looked up in the date index
+		q = port.query().deadlineBetween(null, Project.fromEpochDay(16104));
+		assertEquals(3, q.count());
+		assertTrue(q.explain().startsWith("deadline index"));
+		assertEquals(5, port.query().deadlineBetween(Project.fromEpochDay(16290), null).count());
+	}
+
+	@Test
+	public void testOrderAndProjection() {
+		Comparator<Project> byBudget = new Comparator<Project>() {
+			@Override
+			public int compare(Project a, Project b) {
+				return Double.compare(((OngoingProject) b).getBudget(), ((OngoingProject) a).getBudget());
+			}
+		};
+		List<Project> top = port.query().ongoing().where(new ProjectQuery.Filter() {
+			@Override
+			public boolean accept(Project p) {
+				return ((OngoingProject) p).getCompletion() < 50;
+			}
+		}).orderBy(byBudget).limit(3).list();
+		assertEquals(3, top.size());
+		assertEquals("P0148", top.get(0).getCode());
+
+		ArrayList<String> codes = new ArrayList<String>();
+		for (String c : port.query().offset(198).select(ProjectQuery.CODE)) {
+			codes.add(c);
+		}
+		assertEquals(2, codes.size());
+		assertEquals("P0199", codes.get(1));
+	}
+}
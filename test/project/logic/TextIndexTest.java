@@ -0,0 +1,95 @@
+package project.logic;
+
+import static org.junit.Assert.*;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TextIndexTest {
+
+	private static SimpleDateFormat df = new SimpleDateFormat("dd-MM-yyyy");
+
+	@Test
+	public void testPortfolioSearch() throws Exception {
+		Portfolio port = new Portfolio();
+		OngoingProject o1 = new OngoingProject("P0002","Bridge Repair", df.parse("01-01-2014"),"Acme Corp",df.parse("10-02-2014"), 100,10);
+		OngoingProject o2 = new OngoingProject("P0001","Website", df.parse("01-06-2014"),"Bridgewater Ltd",df.parse("01-03-2014"), 100,10);
+		FinishedProject f1 = new FinishedProject("P0003","Warehouse", df.parse("01-01-2013"),"Acme Corp",df.parse("31-03-2013"), 100);
+		port.add(o1, false);
+		port.add(o2, false);
+		port.add(f1, false);
+
+		List<Project> found = port.search("BRIDGE");
+		assertEquals(2, found.size());
+		assertSame(o2, found.get(0));
+		assertSame(o1, found.get(1));
+		assertEquals(2, port.search("me").size());
+		assertEquals(0, port.search("tunnel").size());
+
+		List<Project> ranked = port.searchRanked("Warehose", 5);
+		assertSame(f1, ranked.get(0));
+		assertEquals(1, port.searchRanked("acme", 1).size());
+
+		OngoingProject renamed = new OngoingProject(o1);
+		renamed.setName("Tunnel Repair");
+		port.replaceProject(renamed, port.indexOf(o1), false);
+		assertEquals(1, port.search("bridge").size());
+		assertSame(renamed, port.search("tunnel").get(0));
+
+		port.remove(port.indexOf(f1), false);
+		assertEquals(0, port.search("warehouse").size());
+	}
+
+	@Test
+	public void testShortQueriesRanked() {
+		TextIndex index = new TextIndex();
+		Project inside = new FinishedProject("P0001", "Bay Road", null, "City", null, 0);
+		Project word = new FinishedProject("P0002", "Old Road", null, "City", null, 0);
+		Project prefix = new FinishedProject("P0003", "Roadworks", null, "City", null, 0);
+		Project whole = new FinishedProject("P0004", "Depot", null, "Ro", null, 0);
+		Project other = new FinishedProject("P0005", "Depot", null, "Council", null, 0);
+		index.add(other);
+		index.add(inside);
+		index.add(whole);
+		index.add(word);
+		index.add(prefix);
+
+		List<Project> ranked = index.searchRanked("ro", 10);
+		assertEquals(4, ranked.size());
+		assertSame(whole, ranked.get(0));
+		assertSame(prefix, ranked.get(1));
+		// Both have a word starting with the text: ordered by code
+		assertSame(inside, ranked.get(2));
+		assertSame(word, ranked.get(3));
+		assertEquals(2, index.searchRanked("RO", 2).size());
+		assertSame(prefix, index.searchRanked("RO", 2).get(1));
+	}
+
+	@Test
+	public void testSearchMatchesScan() {
+		Random r = new Random(7);
+		String[] words = {"alpha", "beta", "gamma", "delta", "omega", "Sigma", "Theta"};
+		TextIndex index = new TextIndex();
+		ArrayList<Project> projects = new ArrayList<Project>();
+		for (int i=0; i<1000; i++) {
+			String name = words[r.nextInt(words.length)] + " " + words[r.nextInt(words.length)];
+			Project p = new FinishedProject("P"+i, name, null, words[r.nextInt(words.length)], null, 0);
+			projects.add(p);
+			index.add(p);
+		}
+		String[] queries = {"ma", "gam", "a d", "ETA", "sigma theta", "zeta", "a"};
+		for (String q : queries) {
+			int expected = 0;
+			for (Project p : projects) {
+				if (p.getName().toLowerCase().contains(q.toLowerCase()) || p.getClient().toLowerCase().contains(q.toLowerCase())) {
+					expected++;
+				}
+			}
+			assertEquals(q, expected, index.search(q).size());
+		}
+	}
+}
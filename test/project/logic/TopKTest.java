@@ -0,0 +1,78 @@
+package project.logic;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TopKTest {
+
+	@Test
+	public void testSelectMatchesStableSort() {
+		Random r = new Random(11);
+		ArrayList<int[]> values = new ArrayList<int[]>();
+		for (int i=0; i<5000; i++) {
+			values.add(new int[] {r.nextInt(100), i});
+		}
+		Comparator<int[]> byValue = new Comparator<int[]>() {
+			@Override
+			public int compare(int[] a, int[] b) {
+				return a[0] - b[0];
+			}
+		};
+		ArrayList<int[]> sorted = new ArrayList<int[]>(values);
+		Collections.sort(sorted, byValue);
+		for (int k : new int[] {0, 1, 20, 5000, 6000}) {
+			List<int[]> top = TopK.select(values.iterator(), k, byValue);
+			assertEquals(Math.min(k, 5000), top.size());
+			for (int i=0; i<top.size(); i++) {
+				assertSame(sorted.get(i), top.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void testPortfolioTopK() {
+		ArrayList<Project> projects = new ArrayList<Project>();
+		for (int i=0; i<100; i++) {
+			String code = String.format("P%04d", i);
+			if (i % 2 == 0) {
+				projects.add(new OngoingProject(code, "", null, "", Project.fromEpochDay(1000 - i), 0, 0));
+			} else {
+				projects.add(new FinishedProject(code, "", null, "", null, i % 10));
+			}
+		}
+		Portfolio port = new Portfolio();
+		port.init(projects);
+
+		List<Project> closest = port.getClosestDeadlines(null, 3);
+		assertEquals(3, closest.size());
+		assertEquals("P0098", closest.get(0).getCode());
+		assertEquals("P0094", closest.get(2).getCode());
+		assertTrue(port.getClosestDeadlines(null, 0).isEmpty());
+		assertTrue(port.getClosestDeadlines(null, -1).isEmpty());
+		closest = port.getClosestDeadlines(Project.fromEpochDay(990), 20);
+		assertEquals(6, closest.size());
+		assertEquals("P0010", closest.get(0).getCode());
+
+		List<Project> costly = port.getHighestTotalCosts(3);
+		assertEquals(3, costly.size());
+		assertEquals("P0009", costly.get(0).getCode());
+		assertEquals("P0019", costly.get(1).getCode());
+
+		List<Project> page = port.query().finished().orderBy(new Comparator<Project>() {
+			@Override
+			public int compare(Project a, Project b) {
+				return Double.compare(((FinishedProject) b).getTotalCost(), ((FinishedProject) a).getTotalCost());
+			}
+		}).page(1, 5).list();
+		assertEquals(5, page.size());
+		assertEquals("P0059", page.get(0).getCode());
+		assertEquals("P0099", page.get(4).getCode());
+	}
+}
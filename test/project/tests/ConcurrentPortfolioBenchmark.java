@@ -0,0 +1,93 @@
+package project.tests;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import project.logic.ConcurrentPortfolio;
+import project.logic.OngoingProject;
+import project.logic.Project;
+
+/**
+ * Measures the throughput of a ConcurrentPortfolio shared by several threads, each running lookups
+ * and client totals with one replacement in every hundred operations. Not part of the test suite,
+ * run it on its own with
+ * <pre>
+ * java project.tests.ConcurrentPortfolioBenchmark [projects] [seconds]
+ * </pre>
+ * @author Gabriel Skoropada
+ * @version 1.0
+ */
+public class ConcurrentPortfolioBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int projects = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		long millis = (args.length > 1 ? Integer.parseInt(args[1]) : 2) * 1000L;
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.println(projects + " projects, " + cores + " processors");
+		// Warms up the JIT compiler
+		run(projects, 1, millis);
+		for (int threads=1; threads<=Math.max(8, 2 * cores); threads*=2) {
+			long ops = run(projects, threads, millis);
+			System.out.printf("%2d threads: %,12d operations/s%n", threads, ops * 1000 / millis);
+		}
+	}
+
+	/**
+	 * Runs the threads for a while and counts the operations they made.
+	 */
+	private static long run(int projects, int threads, final long millis) throws InterruptedException {
+		final ConcurrentPortfolio port = new ConcurrentPortfolio();
+		ArrayList<Project> list = new ArrayList<Project>();
+		for (int i=0; i<projects; i++) {
+			list.add(new OngoingProject(String.format("P%07d", i), "Project " + i, new Date(), "Client " + (i % 100), new Date(), i, i % 101));
+		}
+		port.init(list);
+		final int size = projects;
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicLong total = new AtomicLong();
+		Thread[] workers = new Thread[threads];
+		for (int t=0; t<threads; t++) {
+			final int seed = t;
+			workers[t] = new Thread() {
+				public void run() {
+					long ops = 0;
+					int next = seed * 7919;
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					long end = System.currentTimeMillis() + millis;
+					while (System.currentTimeMillis() < end) {
+						for (int i=0; i<100; i++) {
+							next = (next * 1103515245 + 12345) & Integer.MAX_VALUE;
+							String code = String.format("P%07d", next % size);
+							if (i == 0) {
+								int index = port.findByCode(code);
+								if (index >= 0) {
+									Project p = new OngoingProject(port.get(index));
+									p.setName("Edited " + next);
+									port.replaceProject(p, index, false);
+								}
+							} else if (i % 10 == 0) {
+								port.getClientBudget("Client " + (next % 100));
+							} else {
+								port.findByCode(code);
+							}
+							ops++;
+						}
+					}
+					total.addAndGet(ops);
+				}
+			};
+			workers[t].start();
+		}
+		start.countDown();
+		for (Thread w : workers) {
+			w.join();
+		}
+		return total.get();
+	}
+}
@@ -0,0 +1,122 @@
+package project.tests;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+import project.logic.FinishedProject;
+import project.logic.OngoingProject;
+import project.logic.Portfolio;
+import project.logic.Project;
+
+/**
+ * Checks that Portfolio.findByCode allocates nothing, and measures how long it takes. Hits, misses
+ * and codes in another case are looked up on a portfolio of the given size, and the bytes allocated by
+ * the thread are read before and after each round, less those of an empty round. The harness fails
+ * with an AssertionError if any lookup allocated. Not part of the test suite, run it on its own with
+ * <pre>
+ * java project.tests.FindByCodeBenchmark [portfolio size] [lookups per round]
+ * </pre>
+ * It needs a JVM that can count the bytes allocated by a thread, as HotSpot does.
+ * @author Gabriel Skoropada
+ * @version 1.0
+ */
+public class FindByCodeBenchmark {
+
+	/** Results of the lookups, kept so that they are not optimised away */
+	private static long sink;
+
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			System.out.println("Counting the bytes allocated by a thread is not supported");
+			return;
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+		Portfolio port = portfolio(size);
+
+		// Every code is built before measuring: only the lookups are counted
+		String[] hits = new String[1024];
+		String[] misses = new String[1024];
+		String[] folded = new String[1024];
+		for (int i=0; i<hits.length; i++) {
+			int n = (int) ((long) i * size / hits.length);
+			hits[i] = code(n * 2);
+			misses[i] = code(n * 2 + 1);
+			folded[i] = hits[i].toLowerCase();
+		}
+
+		// Warms up the JIT compiler
+		for (int r=0; r<5; r++) {
+			sink += round(port, hits, lookups) + round(port, misses, lookups) + round(port, folded, lookups);
+		}
+		long overhead = allocated(threads, null, hits, lookups);
+		check(threads, port, "hits", hits, lookups, overhead);
+		check(threads, port, "misses", misses, lookups, overhead);
+		check(threads, port, "folded", folded, lookups, overhead);
+		System.out.println("checksum " + sink);
+	}
+
+	/**
+	 * Times a round of lookups and fails if it allocated anything.
+	 */
+	private static void check(com.sun.management.ThreadMXBean threads, Portfolio port, String name, String[] codes,
+			int lookups, long overhead) {
+		long start = System.nanoTime();
+		long bytes = allocated(threads, port, codes, lookups) - overhead;
+		long time = System.nanoTime() - start;
+		System.out.printf("%-7s %,12d lookups: %,6d ns per lookup, %,d bytes allocated%n",
+				name, lookups, time / lookups, Math.max(bytes, 0));
+		if (bytes > 0) {
+			throw new AssertionError("findByCode allocated " + bytes + " bytes looking up " + name);
+		}
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread during a round of lookups, or during an empty
+	 * round if the portfolio is null
+	 */
+	private static long allocated(com.sun.management.ThreadMXBean threads, Portfolio port, String[] codes, int lookups) {
+		long id = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(id);
+		if (port != null) {
+			sink += round(port, codes, lookups);
+		}
+		return threads.getThreadAllocatedBytes(id) - before;
+	}
+
+	/**
+	 * Looks up codes in turn.
+	 * @return a sum of the results
+	 */
+	private static long round(Portfolio port, String[] codes, int lookups) {
+		long sum = 0;
+		for (int i=0; i<lookups; i++) {
+			sum += port.findByCode(codes[i & (codes.length - 1)]);
+		}
+		return sum;
+	}
+
+	/**
+	 * Builds a portfolio with as many OngoingProjects as FinishedProjects and even codes only, so odd
+	 * codes miss.
+	 */
+	private static Portfolio portfolio(int size) {
+		ArrayList<Project> list = new ArrayList<Project>();
+		for (int i=0; i<size; i++) {
+			if (i % 2 == 0) {
+				list.add(new OngoingProject(code(i * 2), "Project " + i, null, "Client " + (i % 100), null, i, i % 101));
+			} else {
+				list.add(new FinishedProject(code(i * 2), "Project " + i, null, "Client " + (i % 100), null, i));
+			}
+		}
+		Portfolio port = new Portfolio();
+		port.init(list);
+		return port;
+	}
+
+	private static String code(int n) {
+		return String.format("P%07d", n);
+	}
+}
@@ -8,7 +8,25 @@ import org.junit.runners.Suite;
 	project.logic.PortfolioTest.class,
 	project.logic.ProjectTest.class,
 	project.logic.SettingsTest.class,
-	project.logic.PortfolioDBTest.class
+	project.logic.PortfolioDBTest.class,
+	project.logic.ProjectColumnsTest.class,
+	project.logic.ProjectArenaTest.class,
+	project.logic.ConcurrentPortfolioTest.class,
+	project.logic.PortfolioHistoryTest.class,
+	project.logic.DateIndexTest.class,
+	project.logic.TextIndexTest.class,
+	project.logic.ProjectQueryTest.class,
+	project.logic.PortfolioAggregatorTest.class,
+	project.logic.PortfolioStatisticsTest.class,
+	project.logic.TopKTest.class,
+	project.logic.DeadlineMonitorTest.class,
+	project.logic.CodeSequenceTest.class,
+	project.io.ProjectWriterTest.class,
+	project.logic.MappedPortfolioTest.class,
+	project.io.ProjectJournalTest.class,
+	project.logic.PortfolioSaverTest.class,
+	project.io.BlockStreamTest.class,
+	project.io.ProjectDBTest.class
 })
 public class JProjectTestSuite {
 
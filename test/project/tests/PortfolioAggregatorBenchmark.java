@@ -0,0 +1,111 @@
+package project.tests;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import project.logic.FinishedProject;
+import project.logic.OngoingProject;
+import project.logic.Portfolio;
+import project.logic.PortfolioAggregator;
+import project.logic.Project;
+
+/**
+ * Measures what a PortfolioAggregator pays to split its work, to check the number of projects below
+ * which a range is summarised without splitting it. It prints the cost of forking and joining a task
+ * and the time taken to summarise the budgets by client on portfolios of growing size, once on a pool
+ * with a single thread and once on a pool with one thread per processor. Not part of the test suite,
+ * run it on its own with
+ * <pre>
+ * java project.tests.PortfolioAggregatorBenchmark [largest portfolio] [rounds]
+ * </pre>
+ * @author Gabriel Skoropada
+ * @version 1.0
+ */
+public class PortfolioAggregatorBenchmark {
+
+	public static void main(String[] args) {
+		int largest = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 18;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		int cores = Runtime.getRuntime().availableProcessors();
+		ForkJoinPool single = new ForkJoinPool(1);
+		ForkJoinPool all = new ForkJoinPool(cores);
+		System.out.println(cores + " processors");
+		System.out.printf("fork and join: %,8d ns per task%n", forkCost(all, 1 << 16));
+
+		// Warms up the JIT compiler
+		time(portfolio(1 << 16), single, rounds);
+		time(portfolio(1 << 16), all, rounds);
+		for (int size=1024; size<=largest; size*=4) {
+			Portfolio port = portfolio(size);
+			long one = time(port, single, rounds);
+			long many = time(port, all, rounds);
+			System.out.printf("%,9d projects: %,12d ns on 1 thread (%,5d ns per project), %,12d ns on %d threads%n",
+					size, one, one / size, many, cores);
+		}
+		single.shutdown();
+		all.shutdown();
+	}
+
+	/**
+	 * Builds a portfolio with as many OngoingProjects as FinishedProjects, spread over 100 clients.
+	 */
+	private static Portfolio portfolio(int size) {
+		ArrayList<Project> list = new ArrayList<Project>();
+		for (int i=0; i<size; i++) {
+			String code = String.format("P%07d", i);
+			if (i % 2 == 0) {
+				list.add(new OngoingProject(code, "Project " + i, null, "Client " + (i % 100), null, i, i % 101));
+			} else {
+				list.add(new FinishedProject(code, "Project " + i, null, "Client " + (i % 100), null, i));
+			}
+		}
+		Portfolio port = new Portfolio();
+		port.init(list);
+		return port;
+	}
+
+	/**
+	 * @return the best time, in nanoseconds, taken to summarise the budgets by client
+	 */
+	private static long time(Portfolio port, ForkJoinPool pool, int rounds) {
+		PortfolioAggregator agg = new PortfolioAggregator(port, pool);
+		long best = Long.MAX_VALUE;
+		for (int r=0; r<rounds; r++) {
+			long start = System.nanoTime();
+			agg.groupBy(PortfolioAggregator.CLIENT, PortfolioAggregator.BUDGET, null);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	/**
+	 * @return the mean time, in nanoseconds, taken to fork and join a task that does nothing
+	 */
+	private static long forkCost(ForkJoinPool pool, final int tasks) {
+		RecursiveAction run = new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				for (int i=0; i<tasks; i++) {
+					RecursiveAction empty = new RecursiveAction() {
+						private static final long serialVersionUID = 1L;
+
+						@Override
+						protected void compute() {
+						}
+					};
+					empty.fork();
+					empty.join();
+				}
+			}
+		};
+		// The first run warms up the JIT compiler
+		pool.invoke(run);
+		run.reinitialize();
+		long start = System.nanoTime();
+		pool.invoke(run);
+		return (System.nanoTime() - start) / tasks;
+	}
+}
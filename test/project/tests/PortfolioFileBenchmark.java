@@ -0,0 +1,123 @@
+package project.tests;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+
+import project.io.BlockOutputStream;
+import project.io.ProjectIO;
+import project.logic.FinishedProject;
+import project.logic.OngoingProject;
+import project.logic.Project;
+
+/**
+ * Compares the formats a portfolio can be saved in: the serialized .obj files of earlier versions, and
+ * the binary format of ProjectWriter uncompressed and compressed with each codec of BlockOutputStream.
+ * For each format it prints the size of the file, the best time taken to save and to load it, and the
+ * speed of both in MB/s, measured on the size of the .obj file so that the formats compare on the same
+ * amount of data. Files are written to the system temporary directory and deleted afterwards. Not part
+ * of the test suite, run it on its own with
+ * <pre>
+ * java project.tests.PortfolioFileBenchmark [projects] [rounds]
+ * </pre>
+ * @author Gabriel Skoropada
+ * @version 1.0
+ */
+public class PortfolioFileBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		ArrayList<Project> projects = portfolio(size);
+		System.out.println(size + " projects, " + Runtime.getRuntime().availableProcessors() + " processors");
+		System.out.println("format              size        save                 load");
+
+		File obj = File.createTempFile("benchmark.", ".obj");
+		File bin = File.createTempFile("benchmark.", ".bin");
+		try {
+			long[] save = new long[rounds];
+			long[] load = new long[rounds];
+			for (int r=0; r<rounds; r++) {
+				long start = System.nanoTime();
+				serialize(obj, projects);
+				save[r] = System.nanoTime() - start;
+				start = System.nanoTime();
+				check(ProjectIO.open(obj.getPath()), size);
+				load[r] = System.nanoTime() - start;
+			}
+			long base = obj.length();
+			report("serialized .obj", base, best(save), best(load), base);
+
+			for (int codec=0; codec<BlockOutputStream.CODECS.length; codec++) {
+				for (int r=0; r<rounds; r++) {
+					long start = System.nanoTime();
+					ProjectIO.save(bin.getPath(), projects, codec);
+					save[r] = System.nanoTime() - start;
+					start = System.nanoTime();
+					check(ProjectIO.open(bin.getPath()), size);
+					load[r] = System.nanoTime() - start;
+				}
+				report("binary, " + BlockOutputStream.CODECS[codec], bin.length(), best(save), best(load), base);
+			}
+		} finally {
+			obj.delete();
+			bin.delete();
+		}
+	}
+
+	/**
+	 * Builds a portfolio with as many OngoingProjects as FinishedProjects, spread over 100 clients.
+	 */
+	private static ArrayList<Project> portfolio(int size) {
+		ArrayList<Project> list = new ArrayList<Project>();
+		for (int i=0; i<size; i++) {
+			String code = String.format("P%07d", i);
+			if (i % 2 == 0) {
+				list.add(new OngoingProject(code, "Project " + i, Project.fromEpochDay(15000 + i % 2000), "Client " + (i % 100),
+						Project.fromEpochDay(16000 + i % 3000), i * 10.5, i % 101));
+			} else {
+				list.add(new FinishedProject(code, "Project " + i, Project.fromEpochDay(15000 + i % 2000), "Client " + (i % 100),
+						Project.fromEpochDay(15500 + i % 2500), i * 9.25));
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Writes projects as earlier versions saved them, by serializing the ArrayList.
+	 */
+	private static void serialize(File f, ArrayList<Project> projects) throws IOException {
+		ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
+		try {
+			out.writeObject(projects);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void check(ArrayList<Project> read, int size) {
+		if (read.size() != size) {
+			throw new AssertionError("Read " + read.size() + " projects instead of " + size);
+		}
+	}
+
+	private static long best(long[] times) {
+		long best = Long.MAX_VALUE;
+		for (long t : times) {
+			best = Math.min(best, t);
+		}
+		return best;
+	}
+
+	/**
+	 * Prints the size, times and speeds of a format.
+	 * @param base	the size of the .obj file, in bytes, on which the speeds are measured
+	 */
+	private static void report(String format, long length, long save, long load, long base) {
+		System.out.printf("%-17s %6.1f MB  %,6d ms %6.1f MB/s  %,6d ms %6.1f MB/s%n", format, length / 1e6,
+				save / 1000000, base / 1e6 / (save / 1e9), load / 1000000, base / 1e6 / (load / 1e9));
+	}
+}